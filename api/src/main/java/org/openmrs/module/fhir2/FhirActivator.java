@@ -29,16 +29,20 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleException;
 import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.fhir2.api.FhirService;
+import org.openmrs.module.fhir2.api.cache.FhirConceptTranslationCache;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
 import org.openmrs.module.fhir2.api.spi.ServiceClassLoader;
 import org.openmrs.module.fhir2.api.translators.FhirTranslator;
 import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.openmrs.module.fhir2.model.GroupMember;
+import org.openmrs.scheduler.tasks.Daemon;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
@@ -50,7 +54,7 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware {
+public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware, DaemonTokenAware {
 	
 	@Getter
 	private static ConfigurableApplicationContext applicationContext;
@@ -63,6 +67,8 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 	
 	private boolean started = false;
 	
+	private DaemonToken daemonToken = null;
+	
 	@Override
 	public void started() {
 		if (applicationContext == null) {
@@ -73,6 +79,8 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		started = true;
 		log.info("Started FHIR");
 		
+		warmUpCaches();
+		
 		lifecycleListeners.forEach(ModuleLifecycleListener::started);
 	}
 	
@@ -120,6 +128,11 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		log.info("Shutdown FHIR");
 	}
 	
+	@Override
+	public void setDaemonToken(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+	}
+	
 	public void addModuleLifecycleListener(@Nonnull ModuleLifecycleListener lifecycleListener) {
 		Objects.requireNonNull(lifecycleListener);
 		lifecycleListeners.add(lifecycleListener);
@@ -137,6 +150,16 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		}
 	}
 	
+	protected void warmUpCaches() {
+		if (daemonToken == null) {
+			log.debug("Not warming up caches as no daemon token has been supplied");
+			return;
+		}
+		
+		// warming up the concept translation cache scans the obs table, so it must not delay the start of the module
+		Daemon.runInDaemonThread(applicationContext.getBean(FhirConceptTranslationCache.class)::warmUp, daemonToken);
+	}
+	
 	protected void loadModules() {
 		ModuleFactory.getLoadedModules().stream()
 		        // only try to load services from modules that have the FHIR2 module available on their ModuleClasspath
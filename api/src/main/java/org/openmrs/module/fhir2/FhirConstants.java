@@ -281,6 +281,50 @@ public final class FhirConstants {
 	
 	public static final String NARRATIVES_OVERRIDE_PROPERTY_FILE = "fhir2.narrativesOverridePropertyFile";
 	
+	public static final String NARRATIVE_RESOURCE_TYPES = "fhir2.narrativeResourceTypes";
+	
+	public static final String OBS_VALUE_TEXT_INDEX_ENABLED = "fhir2.obsValueTextIndexEnabled";
+	
+	public static final String CONCEPT_TRANSLATION_CACHE_SIZE = "fhir2.conceptTranslationCacheSize";
+	
+	public static final String CONCEPT_TRANSLATION_CACHE_WARM_UP_SIZE = "fhir2.conceptTranslationCacheWarmUpSize";
+	
+	public static final String REFERENCE_DISPLAY_CACHE_SECONDS = "fhir2.referenceDisplayCacheSeconds";
+	
+	public static final String TRANSLATED_RESOURCE_CACHE_SIZE = "fhir2.translatedResourceCacheSize";
+	
+	public static final String READ_CACHE_CONTROL = "fhir2.readCacheControl";
+	
+	public static final String SEARCH_CACHE_CONTROL = "fhir2.searchCacheControl";
+	
+	public static final String STREAMING_BUNDLE_THRESHOLD = "fhir2.streamingBundleThreshold";
+	
+	public static final String CREDENTIAL_CACHE_SECONDS = "fhir2.credentialCacheSeconds";
+	
+	public static final String CREDENTIAL_CACHE_SIZE = "fhir2.credentialCacheSize";
+	
+	public static final String LONG_RUNNING_REQUEST_CONCURRENCY = "fhir2.longRunningRequestConcurrency";
+	
+	public static final String LONG_RUNNING_REQUEST_QUEUE_SIZE = "fhir2.longRunningRequestQueueSize";
+	
+	public static final String LONG_RUNNING_REQUEST_VIRTUAL_THREADS = "fhir2.longRunningRequestVirtualThreads";
+	
+	public static final String METRICS_ENABLED = "fhir2.metricsEnabled";
+	
+	public static final String SLOW_SEARCH_THRESHOLD_MILLIS = "fhir2.slowSearchThresholdMillis";
+	
+	public static final String SEARCH_COST_BUDGET = "fhir2.searchCostBudget";
+	
+	public static final String SEARCH_COST_POLICY = "fhir2.searchCostPolicy";
+	
+	public static final String SEARCH_COST_THROTTLE_CONCURRENCY = "fhir2.searchCostThrottleConcurrency";
+	
+	public static final String PAGING_MEMORY_LIMIT_MEGABYTES = "fhir2.pagingMemoryLimitMegabytes";
+	
+	public static final String PAGING_DISK_LIMIT_MEGABYTES = "fhir2.pagingDiskLimitMegabytes";
+	
+	public static final String PAGING_EXPIRY_MINUTES = "fhir2.pagingExpiryMinutes";
+	
 	public static final String ALLERGEN_SEARCH_HANDLER = "allergen.search.handler";
 	
 	public static final String SEVERITY_SEARCH_HANDLER = "severity.search.handler";
@@ -25,6 +25,12 @@ public interface FhirConceptSourceService extends FhirHelperService {
 	
 	Optional<FhirConceptSource> getFhirConceptSource(@Nonnull ConceptSource conceptSource);
 	
+	/**
+	 * @param conceptSource the concept source to look up
+	 * @return the URL the concept source is mapped to in the fhir_concept_source table, if any
+	 */
+	Optional<String> getFhirConceptSourceUrl(@Nonnull ConceptSource conceptSource);
+	
 	String getUrlForConceptSource(@Nonnull ConceptSource conceptSource);
 	
 	Optional<ConceptSource> getConceptSourceByUrl(@Nonnull String url);
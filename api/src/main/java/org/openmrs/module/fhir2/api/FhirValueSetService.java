@@ -20,4 +20,16 @@ public interface FhirValueSetService extends FhirService<ValueSet> {
 	ValueSet get(@Nonnull String uuid);
 	
 	IBundleProvider searchForValueSets(StringAndListParam title);
+	
+	/**
+	 * Expands the value set with the given uuid, i.e., lists every code it contains, including those of
+	 * nested value sets
+	 *
+	 * @param uuid the uuid of the value set to expand
+	 * @param filter if not null, only codes whose display or code contains this text are included
+	 * @param offset the number of matching codes to skip; defaults to 0
+	 * @param count the maximum number of codes to include; if null, all matching codes are included
+	 * @return the value set with its expansion
+	 */
+	ValueSet expand(@Nonnull String uuid, String filter, Integer offset, Integer count);
 }
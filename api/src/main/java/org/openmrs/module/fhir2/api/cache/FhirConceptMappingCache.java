@@ -0,0 +1,191 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static lombok.AccessLevel.PROTECTED;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.module.fhir2.api.dao.FhirConceptDao;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the concept resolved for a code in a code system, which is used when translating incoming
+ * resources. Only the id of the concept is cached, so that a concept is never shared between
+ * sessions, and codes which do not resolve to any concept are cached as well. <br/>
+ * Entries for a code are discarded when a mapping or reference term with that code changes and
+ * entries for a concept are discarded when that concept changes. As map types and sources may be
+ * shared by any number of mappings, a change to any of those discards every entry.
+ */
+@Component
+public class FhirConceptMappingCache implements FhirEntityChangeListener {
+	
+	private static final int MAXIMUM_SIZE = 10_000;
+	
+	private static final String SYSTEM_URL = "url";
+	
+	private static final String SOURCE_NAME = "name";
+	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptDao conceptDao;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private final Cache<Triple<String, String, String>, Optional<Integer>> conceptIds = CacheBuilder.newBuilder()
+	        .maximumSize(MAXIMUM_SIZE).recordStats().build();
+	
+	/**
+	 * Gets the concept mapped to a code in the code system identified by the supplied URL
+	 *
+	 * @param systemUrl the URL of the code system
+	 * @param code the code
+	 * @param loader used to resolve the concept if the code is not cached
+	 * @return the concept for the code, if any
+	 */
+	public Optional<Concept> getConcept(@Nonnull String systemUrl, @Nonnull String code,
+	        @Nonnull Supplier<Concept> loader) {
+		return getConcept(Triple.of(SYSTEM_URL, systemUrl, code), loader);
+	}
+	
+	/**
+	 * Gets the concept mapped to a code in the concept source with the supplied name
+	 *
+	 * @param sourceName the name of the concept source
+	 * @param code the code
+	 * @param loader used to resolve the concept if the code is not cached
+	 * @return the concept for the code, if any
+	 */
+	public Optional<Concept> getConceptBySourceName(@Nonnull String sourceName, @Nonnull String code,
+	        @Nonnull Supplier<Concept> loader) {
+		return getConcept(Triple.of(SOURCE_NAME, sourceName, code), loader);
+	}
+	
+	/**
+	 * @return the hit, miss and eviction statistics of the cache
+	 */
+	public CacheStats getStatistics() {
+		return conceptIds.stats();
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Concept.class.isAssignableFrom(entityClass) || ConceptMap.class.isAssignableFrom(entityClass)
+		        || ConceptReferenceTerm.class.isAssignableFrom(entityClass)
+		        || ConceptMapType.class.isAssignableFrom(entityClass) || ConceptSource.class.isAssignableFrom(entityClass)
+		        || FhirConceptSource.class.isAssignableFrom(entityClass);
+	}
+	
+	/**
+	 * @return the id of the changed concept and the code of the changed reference term, either of which
+	 *         may be null, or null if the change may affect any mapping
+	 */
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		if (entity instanceof Concept) {
+			// new mappings of the concept are reported as changed mappings
+			return Pair.of(((Concept) entity).getConceptId(), null);
+		}
+		
+		Integer conceptId = null;
+		ConceptReferenceTerm term = null;
+		if (entity instanceof ConceptMap) {
+			ConceptMap mapping = (ConceptMap) entity;
+			term = mapping.getConceptReferenceTerm();
+			if (mapping.getConcept() != null) {
+				conceptId = mapping.getConcept().getConceptId();
+			}
+		} else if (entity instanceof ConceptReferenceTerm) {
+			term = (ConceptReferenceTerm) entity;
+		}
+		
+		return term == null || term.getCode() == null ? null : Pair.of(conceptId, term.getCode());
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		Set<Integer> changedConceptIds = new HashSet<>();
+		Set<String> changedCodes = new HashSet<>();
+		for (Object change : changes) {
+			if (change == null) {
+				reset();
+				return;
+			}
+			
+			Pair<?, ?> changedMapping = (Pair<?, ?>) change;
+			if (changedMapping.getLeft() != null) {
+				changedConceptIds.add((Integer) changedMapping.getLeft());
+			}
+			
+			if (changedMapping.getRight() != null) {
+				changedCodes.add((String) changedMapping.getRight());
+			}
+		}
+		
+		generation.incrementAndGet();
+		conceptIds.asMap().entrySet()
+		        .removeIf(entry -> changedCodes.stream().anyMatch(code -> code.equalsIgnoreCase(entry.getKey().getRight()))
+		                || entry.getValue().map(changedConceptIds::contains).orElse(false));
+	}
+	
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		conceptIds.invalidateAll();
+	}
+	
+	private Optional<Concept> getConcept(Triple<String, String, String> key, Supplier<Concept> loader) {
+		Optional<Integer> conceptId = conceptIds.getIfPresent(key);
+		if (conceptId != null) {
+			if (!conceptId.isPresent()) {
+				return Optional.empty();
+			}
+			
+			Concept concept = conceptDao.get(conceptId.get());
+			if (concept != null) {
+				return Optional.of(concept);
+			}
+			
+			// the concept has been deleted
+			conceptIds.invalidate(key);
+		}
+		
+		long expectedGeneration = generation.get();
+		Concept result = loader.get();
+		
+		// if a mapping changed while we were loading, our result may already be stale
+		if (generation.get() == expectedGeneration && (result == null || result.getConceptId() != null)) {
+			conceptIds.put(key, Optional.ofNullable(result).map(Concept::getConceptId));
+		}
+		
+		return Optional.ofNullable(result);
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static lombok.AccessLevel.PROTECTED;
+import static org.openmrs.module.fhir2.FhirConstants.CONCEPT_TRANSLATION_CACHE_SIZE;
+import static org.openmrs.module.fhir2.FhirConstants.CONCEPT_TRANSLATION_CACHE_WARM_UP_SIZE;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.dao.FhirConceptDao;
+import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the {@link CodeableConcept}s produced by the {@link ConceptTranslator}. Entries are keyed by
+ * the concept id and the locale used for display names. The cached instances are never handed out;
+ * callers always receive a copy, so a caller modifying its result cannot affect other requests. <br/>
+ * Entries for a concept are discarded when the concept, one of its names or one of its mappings
+ * changes. As reference terms, map types and sources may be shared by any number of concepts, a
+ * change to any of those discards every entry.
+ */
+@Slf4j
+@Component
+public class FhirConceptTranslationCache implements FhirEntityChangeListener, InitializingBean, DisposableBean {
+	
+	private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+	
+	private final Consumer<String> maximumSizeListener = globalProperty -> reset();
+	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptDao conceptDao;
+	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private ObjectProvider<ConceptTranslator> conceptTranslatorProvider;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile Cache<Pair<Integer, Locale>, CodeableConcept> cache = null;
+	
+	/**
+	 * Gets the translation of the supplied concept, translating it if it is not already cached
+	 *
+	 * @param concept the concept to translate
+	 * @param translator the function used to translate the concept if it is not cached
+	 * @return a copy of the cached translation of the concept
+	 */
+	public CodeableConcept get(@Nonnull Concept concept, @Nonnull Function<Concept, CodeableConcept> translator) {
+		Integer conceptId = concept.getConceptId();
+		if (conceptId == null) {
+			return translator.apply(concept);
+		}
+		
+		Cache<Pair<Integer, Locale>, CodeableConcept> currentCache = getCache();
+		Pair<Integer, Locale> key = Pair.of(conceptId, Context.getLocale());
+		
+		CodeableConcept result = currentCache.getIfPresent(key);
+		if (result == null) {
+			long expectedGeneration = generation.get();
+			result = translator.apply(concept);
+			if (result == null) {
+				return null;
+			}
+			
+			// if a concept changed while we were translating, our result may already be stale
+			if (generation.get() == expectedGeneration) {
+				currentCache.put(key, result);
+			}
+		}
+		
+		return result.copy();
+	}
+	
+	/**
+	 * Translates the most frequently observed concepts so that they are cached before they are first
+	 * requested. The number of concepts is controlled by the fhir2.conceptTranslationCacheWarmUpSize
+	 * global property; by default, no concepts are translated. This is run on a daemon thread when the
+	 * module starts.
+	 */
+	public void warmUp() {
+		int warmUpSize = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(CONCEPT_TRANSLATION_CACHE_WARM_UP_SIZE, 0);
+		if (warmUpSize <= 0) {
+			return;
+		}
+		
+		long start = System.currentTimeMillis();
+		try {
+			List<Concept> concepts = conceptDao.getMostFrequentlyObservedConcepts(warmUpSize);
+			ConceptTranslator conceptTranslator = conceptTranslatorProvider.getObject();
+			for (Concept concept : concepts) {
+				conceptTranslator.toFhirResource(concept);
+			}
+			
+			log.info("Translated {} concepts in {} ms", concepts.size(), System.currentTimeMillis() - start);
+		}
+		catch (RuntimeException e) {
+			log.warn("Exception caught while warming up the concept translation cache", e);
+		}
+	}
+	
+	/**
+	 * @return the hit, miss and eviction statistics of the cache since it was last reset
+	 */
+	public CacheStats getStatistics() {
+		return getCache().stats();
+	}
+	
+	/**
+	 * @return the number of cached translations
+	 */
+	public long size() {
+		return getCache().size();
+	}
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(maximumSizeListener, CONCEPT_TRANSLATION_CACHE_SIZE);
+	}
+	
+	@Override
+	public void destroy() {
+		FhirGlobalPropertyHolder.removeListener(maximumSizeListener);
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Concept.class.isAssignableFrom(entityClass) || ConceptName.class.isAssignableFrom(entityClass)
+		        || ConceptMap.class.isAssignableFrom(entityClass) || ConceptReferenceTerm.class.isAssignableFrom(entityClass)
+		        || ConceptMapType.class.isAssignableFrom(entityClass) || ConceptSource.class.isAssignableFrom(entityClass)
+		        || FhirConceptSource.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(CONCEPT_TRANSLATION_CACHE_SIZE,
+		    DEFAULT_MAXIMUM_SIZE) > 0;
+	}
+	
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		Concept concept = null;
+		if (entity instanceof Concept) {
+			concept = (Concept) entity;
+		} else if (entity instanceof ConceptName) {
+			concept = ((ConceptName) entity).getConcept();
+		} else if (entity instanceof ConceptMap) {
+			concept = ((ConceptMap) entity).getConcept();
+		}
+		
+		return concept == null ? null : concept.getConceptId();
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		if (changes.contains(null)) {
+			invalidateAll();
+			return;
+		}
+		
+		generation.incrementAndGet();
+		Cache<Pair<Integer, Locale>, CodeableConcept> currentCache = cache;
+		if (currentCache != null) {
+			currentCache.asMap().keySet().removeIf(key -> changes.contains(key.getLeft()));
+		}
+	}
+	
+	/**
+	 * Discards the cache, so that it is re-created using the current value of the
+	 * fhir2.conceptTranslationCacheSize global property on next use. This is also called whenever that
+	 * global property changes.
+	 */
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		cache = null;
+	}
+	
+	protected void invalidateAll() {
+		generation.incrementAndGet();
+		Cache<Pair<Integer, Locale>, CodeableConcept> currentCache = cache;
+		if (currentCache != null) {
+			currentCache.invalidateAll();
+		}
+	}
+	
+	protected Cache<Pair<Integer, Locale>, CodeableConcept> getCache() {
+		Cache<Pair<Integer, Locale>, CodeableConcept> result = cache;
+		if (result == null) {
+			synchronized (this) {
+				result = cache;
+				if (result == null) {
+					int maximumSize = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(CONCEPT_TRANSLATION_CACHE_SIZE,
+					    DEFAULT_MAXIMUM_SIZE);
+					result = CacheBuilder.newBuilder().maximumSize(Math.max(maximumSize, 0)).recordStats().build();
+					cache = result;
+				}
+			}
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.openmrs.module.fhir2.FhirConstants.CREDENTIAL_CACHE_SECONDS;
+import static org.openmrs.module.fhir2.FhirConstants.CREDENTIAL_CACHE_SIZE;
+
+import javax.annotation.Nonnull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.Authenticated;
+import org.openmrs.api.context.AuthenticationScheme;
+import org.openmrs.api.context.BasicAuthenticated;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.context.Credentials;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.LoginCredential;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers recently verified Basic authentication credentials, so that clients which send their
+ * credentials with every request do not pay for verifying the password on each of them. Credentials
+ * are never stored; entries are keyed by a SHA-256 digest of the username and password salted with a
+ * random value that only exists in memory, and only hold the id of the user the credentials belong
+ * to. A request presenting cached credentials is given a new {@link UserContext}, authenticated as
+ * that user without checking the password again, so no user context is ever shared between requests
+ * or with an HTTP session. <br/>
+ * Entries expire after the number of seconds given by the fhir2.credentialCacheSeconds global
+ * property and at most fhir2.credentialCacheSize entries are kept; the cache is disabled if either is
+ * 0. Entries for a user are discarded when the user or their password changes, and all entries are
+ * discarded when roles or privileges change. Like {@link FhirGlobalPropertyHolder}, the state of this
+ * class is static so that it can be used from the authentication filter; the Spring bean enables the
+ * cache and receives change notifications.
+ */
+@Slf4j
+@Component
+public class FhirCredentialCache implements FhirEntityChangeListener, InitializingBean, DisposableBean {
+	
+	private static final int DEFAULT_SECONDS = 60;
+	
+	private static final int DEFAULT_SIZE = 100;
+	
+	private static final byte[] salt = new byte[32];
+	
+	private static final AuthenticationScheme verifiedUserScheme = new VerifiedUserAuthenticationScheme();
+	
+	private static final ThreadLocal<UserContext> previousUserContext = new ThreadLocal<>();
+	
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private static volatile boolean enabled = false;
+	
+	private static volatile Cache<String, Integer> logins = null;
+	
+	static {
+		new SecureRandom().nextBytes(salt);
+	}
+	
+	private final Consumer<String> configurationListener = globalProperty -> reset();
+	
+	/**
+	 * Authenticates the current thread as the user with the supplied credentials if they have been
+	 * verified recently. The thread is given a new user context, which it keeps until
+	 * {@link #release()} is called.
+	 *
+	 * @param username the username sent by the client
+	 * @param password the password sent by the client
+	 * @return true if the current thread is now authenticated, false if the credentials have to be
+	 *         verified
+	 */
+	public static boolean authenticate(@Nonnull String username, @Nonnull String password) {
+		Cache<String, Integer> currentLogins = getLogins();
+		if (currentLogins == null) {
+			return false;
+		}
+		
+		String key = digest(username, password);
+		Integer userId = currentLogins.getIfPresent(key);
+		if (userId == null) {
+			return false;
+		}
+		
+		UserContext previous = Context.getUserContext();
+		Context.setUserContext(new UserContext(verifiedUserScheme));
+		try {
+			Context.authenticate(new VerifiedUserCredentials(username, userId));
+		}
+		catch (ContextAuthenticationException e) {
+			// the user has been removed or retired since the credentials were verified
+			Context.setUserContext(previous);
+			currentLogins.invalidate(key);
+			return false;
+		}
+		
+		previousUserContext.set(previous);
+		return true;
+	}
+	
+	/**
+	 * Remembers that the supplied credentials were just verified as those of the current thread's
+	 * authenticated user
+	 *
+	 * @param username the username sent by the client
+	 * @param password the password sent by the client
+	 * @param expectedGeneration the value of {@link #getGeneration()} before the credentials were
+	 *            verified
+	 */
+	public static void authenticated(@Nonnull String username, @Nonnull String password, long expectedGeneration) {
+		Cache<String, Integer> currentLogins = getLogins();
+		if (currentLogins == null) {
+			return;
+		}
+		
+		User user = Context.getAuthenticatedUser();
+		if (user == null || user.getUserId() == null) {
+			return;
+		}
+		
+		// if the user's password changed while we were verifying it, the credentials may no longer be valid
+		if (generation.get() == expectedGeneration) {
+			currentLogins.put(digest(username, password), user.getUserId());
+		}
+	}
+	
+	/**
+	 * Restores the user context the current thread had before it was authenticated by
+	 * {@link #authenticate(String, String)}, if it was
+	 */
+	public static void release() {
+		UserContext previous = previousUserContext.get();
+		if (previous == null) {
+			return;
+		}
+		
+		previousUserContext.remove();
+		Context.setUserContext(previous);
+	}
+	
+	/**
+	 * Hands the user context the current thread was given by {@link #authenticate(String, String)}, if
+	 * any, over to work which continues on another thread, and restores the user context the current
+	 * thread had before
+	 */
+	public static void detach() {
+		release();
+	}
+	
+	/**
+	 * @return a value which changes whenever credentials may have been invalidated
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(configurationListener, CREDENTIAL_CACHE_SECONDS, CREDENTIAL_CACHE_SIZE);
+		enabled = true;
+	}
+	
+	@Override
+	public void destroy() {
+		enabled = false;
+		FhirGlobalPropertyHolder.removeListener(configurationListener);
+		reset();
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return LoginCredential.class.isAssignableFrom(entityClass) || User.class.isAssignableFrom(entityClass)
+		        || Role.class.isAssignableFrom(entityClass) || Privilege.class.isAssignableFrom(entityClass);
+	}
+	
+	/**
+	 * @return the id of the changed user and whether their credentials may have changed, or null if the
+	 *         credentials of any user may have changed
+	 */
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		if (entity instanceof LoginCredential) {
+			return Pair.of(((LoginCredential) entity).getUserId(), true);
+		} else if (entity instanceof User) {
+			User user = (User) entity;
+			return Pair.of(user.getUserId(), Boolean.TRUE.equals(user.getRetired()));
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		Set<Integer> userIds = new HashSet<>();
+		boolean credentialsChanged = false;
+		for (Object change : changes) {
+			if (change == null) {
+				reset();
+				return;
+			}
+			
+			Pair<?, ?> changedUser = (Pair<?, ?>) change;
+			userIds.add((Integer) changedUser.getLeft());
+			credentialsChanged |= (Boolean) changedUser.getRight();
+		}
+		
+		// verifying a password updates the user, so that alone must not prevent the result being cached
+		if (credentialsChanged) {
+			generation.incrementAndGet();
+		}
+		
+		Cache<String, Integer> currentLogins = logins;
+		if (currentLogins != null) {
+			currentLogins.asMap().values().removeIf(userIds::contains);
+		}
+	}
+	
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		logins = null;
+	}
+	
+	private static Cache<String, Integer> getLogins() {
+		if (!enabled) {
+			return null;
+		}
+		
+		Cache<String, Integer> result = logins;
+		if (result == null) {
+			synchronized (FhirCredentialCache.class) {
+				result = logins;
+				if (result == null) {
+					int seconds = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(CREDENTIAL_CACHE_SECONDS,
+					    DEFAULT_SECONDS);
+					int size = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(CREDENTIAL_CACHE_SIZE, DEFAULT_SIZE);
+					if (seconds <= 0 || size <= 0) {
+						return null;
+					}
+					
+					result = CacheBuilder.newBuilder().expireAfterWrite(seconds, TimeUnit.SECONDS).maximumSize(size)
+					        .build();
+					logins = result;
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private static String digest(String username, String password) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			messageDigest.update(salt);
+			messageDigest.update(username.getBytes(StandardCharsets.UTF_8));
+			messageDigest.update((byte) 0);
+			messageDigest.update(password.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(messageDigest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Credentials which state that the password of the user has already been verified
+	 */
+	private static final class VerifiedUserCredentials implements Credentials {
+		
+		private final String username;
+		
+		private final Integer userId;
+		
+		private VerifiedUserCredentials(String username, Integer userId) {
+			this.username = username;
+			this.userId = userId;
+		}
+		
+		@Override
+		public String getAuthenticationScheme() {
+			return VerifiedUserAuthenticationScheme.class.getName();
+		}
+		
+		@Override
+		public String getClientName() {
+			return username;
+		}
+	}
+	
+	/**
+	 * Authenticates {@link VerifiedUserCredentials} as the user they identify, as long as that user
+	 * still exists and is not retired. This scheme is only ever used by the user contexts created by
+	 * {@link #authenticate(String, String)}, so it cannot be used to log in without a password.
+	 */
+	private static final class VerifiedUserAuthenticationScheme implements AuthenticationScheme {
+		
+		@Override
+		public Authenticated authenticate(Credentials credentials) throws ContextAuthenticationException {
+			if (!(credentials instanceof VerifiedUserCredentials)) {
+				throw new ContextAuthenticationException("Unsupported credentials");
+			}
+			
+			User user;
+			Context.addProxyPrivilege(PrivilegeConstants.GET_USERS);
+			try {
+				user = Context.getUserService().getUser(((VerifiedUserCredentials) credentials).userId);
+			}
+			finally {
+				Context.removeProxyPrivilege(PrivilegeConstants.GET_USERS);
+			}
+			
+			if (user == null || Boolean.TRUE.equals(user.getRetired())) {
+				throw new ContextAuthenticationException("The user no longer exists");
+			}
+			
+			return new BasicAuthenticated(user, VerifiedUserAuthenticationScheme.class.getName());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.type.Type;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * A Hibernate interceptor which tracks the entities saved, updated or deleted in the current
+ * transaction and, once the transaction completes, notifies the {@link FhirEntityChangeListener}s
+ * interested in them. Only the small descriptions returned by
+ * {@link FhirEntityChangeListener#describeChange(Object)} are kept until then, and only for enabled
+ * listeners, so that large transactions do not keep every changed entity in memory. This allows the
+ * module to keep in-memory snapshots of rarely changing data without having to poll the database to
+ * find out whether they are still current. <br/>
+ * OpenMRS registers all Spring beans implementing {@link org.hibernate.Interceptor} with its session
+ * factory. Listeners are looked up once the application context has been refreshed, so that this
+ * bean has no dependencies of its own that could delay the creation of the session factory.
+ */
+@Slf4j
+@Component
+public class FhirEntityChangeInterceptor extends EmptyInterceptor
+        implements ApplicationContextAware, ApplicationListener<ContextRefreshedEvent> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Map<FhirEntityChangeListener, Set<Object>>> changes = new ThreadLocal<>();
+	
+	private transient ApplicationContext applicationContext;
+	
+	private transient volatile List<FhirEntityChangeListener> listeners = Collections.emptyList();
+	
+	@Override
+	public void setApplicationContext(@Nonnull ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+	
+	@Override
+	public void onApplicationEvent(@Nonnull ContextRefreshedEvent event) {
+		if (applicationContext != null && event.getApplicationContext() == applicationContext) {
+			listeners = new ArrayList<>(
+			        applicationContext.getBeansOfType(FhirEntityChangeListener.class, false, false).values());
+		}
+	}
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+	}
+	
+	@Override
+	public void onCollectionRecreate(Object collection, Serializable key) {
+		recordCollectionChange(collection);
+	}
+	
+	@Override
+	public void onCollectionRemove(Object collection, Serializable key) {
+		recordCollectionChange(collection);
+	}
+	
+	@Override
+	public void onCollectionUpdate(Object collection, Serializable key) {
+		recordCollectionChange(collection);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Map<FhirEntityChangeListener, Set<Object>> changed = changes.get();
+		if (changed == null) {
+			return;
+		}
+		
+		// the changes are discarded whether or not the transaction committed; listeners are notified even after a
+		// rollback as they may have loaded state the transaction had changed, and discarding state that is still
+		// valid only costs a re-load
+		changes.remove();
+		for (Map.Entry<FhirEntityChangeListener, Set<Object>> entry : changed.entrySet()) {
+			FhirEntityChangeListener listener = entry.getKey();
+			try {
+				listener.entitiesChanged(entry.getValue());
+			}
+			catch (RuntimeException e) {
+				log.error("Exception caught while notifying {} of changed entities; resetting it", listener, e);
+				listener.reset();
+			}
+		}
+	}
+	
+	private void recordCollectionChange(Object collection) {
+		if (collection instanceof PersistentCollection) {
+			recordChange(((PersistentCollection) collection).getOwner());
+		}
+	}
+	
+	private void recordChange(Object entity) {
+		if (entity == null) {
+			return;
+		}
+		
+		Class<?> entityClass = entity.getClass();
+		for (FhirEntityChangeListener listener : listeners) {
+			if (listener.supports(entityClass) && listener.isEnabled()) {
+				Map<FhirEntityChangeListener, Set<Object>> changed = changes.get();
+				if (changed == null) {
+					changed = new IdentityHashMap<>();
+					changes.set(changed);
+				}
+				
+				changed.computeIfAbsent(listener, key -> new HashSet<>()).add(listener.describeChange(entity));
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.EventListener;
+
+/**
+ * Implemented by Spring beans that keep in-memory state derived from persistent entities, e.g.
+ * snapshots of small mapping tables or caches of translated values. <br/>
+ * Listeners are notified by the {@link FhirEntityChangeInterceptor} once the transaction that
+ * saved, updated or deleted an entity of a supported type has completed.
+ */
+public interface FhirEntityChangeListener extends EventListener {
+	
+	/**
+	 * @param entityClass the class of a changed entity
+	 * @return true if this listener should be notified about changes to entities of this class
+	 */
+	boolean supports(@Nonnull Class<?> entityClass);
+	
+	/**
+	 * @return false if this listener currently holds no state that changes could affect, in which case
+	 *         changes are not recorded for it
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+	
+	/**
+	 * Describes a change to a supported entity. The description is kept until the transaction completes,
+	 * so it should be small and must not refer to the entity or any other persistent object, e.g. the
+	 * uuid or id of the affected object.
+	 *
+	 * @param entity the changed entity
+	 * @return a description of the change, or null if this listener cannot tell which of its state the
+	 *         change affects
+	 */
+	@Nullable
+	default Object describeChange(@Nonnull Object entity) {
+		return null;
+	}
+	
+	/**
+	 * Called after a transaction which changed one or more supported entities has completed
+	 *
+	 * @param changes the distinct descriptions returned by {@link #describeChange(Object)} for the
+	 *            changed entities, which may include null
+	 */
+	void entitiesChanged(@Nonnull Collection<Object> changes);
+	
+	/**
+	 * Discards all state held by this listener so that it is re-loaded on next use
+	 */
+	void reset();
+}
@@ -0,0 +1,95 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openmrs.OpenmrsMetadata;
+import org.openmrs.api.context.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the localized display names of metadata, e.g., locations, identifier types and encounter
+ * types, keyed by class, uuid and locale. Metadata is translated for almost every resource, but
+ * rarely changes, so entries are only discarded when the entity change interceptor reports that
+ * the metadata has been saved or retired. <br/>
+ * As with the {@link FhirReferenceDisplayCache}, the state of this class is static so that it can be
+ * used from {@link org.openmrs.module.fhir2.api.util.FhirUtils}. Translations are only cached while a
+ * session is open, as the locale and message source are otherwise unavailable.
+ */
+@Component
+public class FhirMetadataTranslationCache implements FhirEntityChangeListener {
+	
+	private static final int MAXIMUM_SIZE = 10_000;
+	
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private static final Cache<Triple<String, String, Locale>, Optional<String>> translations = CacheBuilder.newBuilder()
+	        .maximumSize(MAXIMUM_SIZE).build();
+	
+	/**
+	 * Gets the translated display name of a piece of metadata
+	 *
+	 * @param className the simple name of the class of the metadata
+	 * @param uuid the uuid of the metadata
+	 * @param translation used to translate the metadata if its translation is not cached
+	 * @return the translated display name
+	 */
+	public static String getTranslation(@Nonnull String className, String uuid, @Nonnull Supplier<String> translation) {
+		if (uuid == null || !Context.isSessionOpen()) {
+			return translation.get();
+		}
+		
+		Triple<String, String, Locale> key = Triple.of(className, uuid, Context.getLocale());
+		Optional<String> result = translations.getIfPresent(key);
+		if (result == null) {
+			long expectedGeneration = generation.get();
+			result = Optional.ofNullable(translation.get());
+			
+			// if the metadata changed while we were translating it, our result may already be stale
+			if (generation.get() == expectedGeneration) {
+				translations.put(key, result);
+			}
+		}
+		
+		return result.orElse(null);
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return OpenmrsMetadata.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		return ((OpenmrsMetadata) entity).getUuid();
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		generation.incrementAndGet();
+		translations.asMap().keySet().removeIf(key -> changes.contains(key.getMiddle()));
+	}
+	
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		translations.invalidateAll();
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the display strings of the references created by the
+ * {@link org.openmrs.module.fhir2.api.translators.impl.ReferenceHandlingTranslator}, which otherwise
+ * has to load the names and identifiers of the referenced object for every reference. <br/>
+ * Displays are only cached while a request is in progress, i.e., between calls to
+ * {@link #beginRequest()} and {@link #endRequest()}, and are kept for the rest of that request. If
+ * the fhir2.referenceDisplayCacheSeconds global property is set, displays are also shared between
+ * requests for that many seconds. Like {@link FhirGlobalPropertyHolder}, the state of this class is
+ * static so that it can be used from static translation helpers; the Spring bean only exists to
+ * receive change notifications.
+ */
+@Component
+public class FhirReferenceDisplayCache implements FhirEntityChangeListener {
+	
+	private static final int MAXIMUM_SIZE = 10_000;
+	
+	private static final ThreadLocal<Map<Triple<String, String, Locale>, Optional<String>>> requestDisplays =
+	        new ThreadLocal<>();
+	
+	private static final AtomicLong generation = new AtomicLong();
+	
+	private static volatile Pair<Integer, Cache<Triple<String, String, Locale>, Optional<String>>> sharedDisplays = null;
+	
+	/**
+	 * Starts caching displays for the current thread
+	 */
+	public static void beginRequest() {
+		requestDisplays.set(new HashMap<>());
+	}
+	
+	/**
+	 * Stops caching displays for the current thread and discards those cached for the request
+	 */
+	public static void endRequest() {
+		requestDisplays.remove();
+	}
+	
+	/**
+	 * Gets the display for a reference to the object with the supplied type and uuid
+	 *
+	 * @param referenceType the FHIR resource type of the reference
+	 * @param uuid the uuid of the referenced object
+	 * @param display used to create the display if it is not cached
+	 * @return the display, which may be null
+	 */
+	public static String getDisplay(@Nonnull String referenceType, String uuid, @Nonnull Supplier<String> display) {
+		Map<Triple<String, String, Locale>, Optional<String>> displays = requestDisplays.get();
+		if (displays == null || uuid == null) {
+			return display.get();
+		}
+		
+		Triple<String, String, Locale> key = Triple.of(referenceType, uuid, Context.getLocale());
+		Optional<String> result = displays.get(key);
+		if (result == null) {
+			Cache<Triple<String, String, Locale>, Optional<String>> shared = getSharedDisplays();
+			if (shared != null) {
+				result = shared.getIfPresent(key);
+			}
+			
+			if (result == null) {
+				long expectedGeneration = generation.get();
+				result = Optional.ofNullable(display.get());
+				
+				if (shared != null && generation.get() == expectedGeneration) {
+					shared.put(key, result);
+				}
+			}
+			
+			displays.put(key, result);
+		}
+		
+		return result.orElse(null);
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Person.class.isAssignableFrom(entityClass) || PersonName.class.isAssignableFrom(entityClass)
+		        || PatientIdentifier.class.isAssignableFrom(entityClass)
+		        || PatientIdentifierType.class.isAssignableFrom(entityClass) || Location.class.isAssignableFrom(entityClass)
+		        || Provider.class.isAssignableFrom(entityClass) || User.class.isAssignableFrom(entityClass);
+	}
+	
+	/**
+	 * @return the uuid of the object whose display may have changed and whether practitioner displays may
+	 *         have changed too, or null if any display may have changed
+	 */
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		if (entity instanceof Person) {
+			return Pair.of(((Person) entity).getUuid(), true);
+		} else if (entity instanceof PersonName) {
+			Person person = ((PersonName) entity).getPerson();
+			return person == null ? Pair.of(null, false) : Pair.of(person.getUuid(), true);
+		} else if (entity instanceof PatientIdentifier) {
+			Patient patient = ((PatientIdentifier) entity).getPatient();
+			return Pair.of(patient == null ? null : patient.getUuid(), false);
+		} else if (entity instanceof Location) {
+			return Pair.of(((Location) entity).getUuid(), false);
+		} else if (entity instanceof Provider) {
+			return Pair.of(((Provider) entity).getUuid(), false);
+		} else if (entity instanceof User) {
+			return Pair.of(((User) entity).getUuid(), false);
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		generation.incrementAndGet();
+		
+		// the displays cached for this thread's request may include those of the changed objects
+		Map<Triple<String, String, Locale>, Optional<String>> displays = requestDisplays.get();
+		if (displays != null) {
+			displays.clear();
+		}
+		
+		Pair<Integer, Cache<Triple<String, String, Locale>, Optional<String>>> shared = sharedDisplays;
+		if (shared == null) {
+			return;
+		}
+		
+		Set<String> changedUuids = new HashSet<>();
+		boolean practitionersChanged = false;
+		for (Object change : changes) {
+			if (change == null) {
+				shared.getRight().invalidateAll();
+				return;
+			}
+			
+			Pair<?, ?> changedDisplay = (Pair<?, ?>) change;
+			if (changedDisplay.getLeft() != null) {
+				changedUuids.add((String) changedDisplay.getLeft());
+			}
+			
+			practitionersChanged |= (Boolean) changedDisplay.getRight();
+		}
+		
+		// practitioner displays are keyed by the provider or user rather than the person whose name they show
+		final boolean invalidatePractitioners = practitionersChanged;
+		shared.getRight().asMap().keySet().removeIf(key -> changedUuids.contains(key.getMiddle())
+		        || (invalidatePractitioners && FhirConstants.PRACTITIONER.equals(key.getLeft())));
+	}
+	
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		sharedDisplays = null;
+		requestDisplays.remove();
+	}
+	
+	private static Cache<Triple<String, String, Locale>, Optional<String>> getSharedDisplays() {
+		int seconds = FhirGlobalPropertyHolder.getConfiguration().getReferenceDisplayCacheSeconds();
+		if (seconds <= 0) {
+			sharedDisplays = null;
+			return null;
+		}
+		
+		Pair<Integer, Cache<Triple<String, String, Locale>, Optional<String>>> result = sharedDisplays;
+		if (result == null || result.getLeft() != seconds) {
+			synchronized (FhirReferenceDisplayCache.class) {
+				result = sharedDisplays;
+				if (result == null || result.getLeft() != seconds) {
+					result = Pair.of(seconds, CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE)
+					        .expireAfterWrite(seconds, TimeUnit.SECONDS).build());
+					sharedDisplays = result;
+				}
+			}
+		}
+		
+		return result.getRight();
+	}
+}
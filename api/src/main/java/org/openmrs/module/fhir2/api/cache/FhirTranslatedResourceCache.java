@@ -0,0 +1,392 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.openmrs.module.fhir2.FhirConstants.TRANSLATED_RESOURCE_CACHE_SIZE;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.Property;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the FHIR resources translated from immutable OpenMRS objects, i.e., {@link Obs}. Entries are
+ * keyed by the type, uuid and version id of the OpenMRS object and by the locale used for display
+ * names, so a new version of an object is never served from an older translation. The cached
+ * instances are never handed out; callers always receive a copy. <br/>
+ * The cache is bounded by the fhir2.translatedResourceCacheSize global property, which limits the
+ * total number of FHIR elements held rather than the number of resources, so that a few large
+ * observation groups cannot use as much memory as many small observations. It is disabled when the
+ * property is 0, which is the default. <br/>
+ * An observation is only changed when it is voided, which discards its entry and that of the group it
+ * belongs to. The displays of the references to the patient, encounter, performers and location are
+ * part of the cached translation, so a change to any of those objects, or to the names and
+ * identifiers of a person, discards the entries which refer to it. These are found through an index
+ * from the uuids of the objects to the keys of the entries which refer to them, so such a change only
+ * costs as much as the number of entries it discards, and objects which have just been created are
+ * ignored, as no entry can refer to them yet. Changes to concepts and the mappings used to translate
+ * them discard every entry.
+ */
+@Component
+public class FhirTranslatedResourceCache implements FhirEntityChangeListener, InitializingBean, DisposableBean {
+	
+	private static final Cache<Key, Entry> DISABLED = CacheBuilder.newBuilder().maximumSize(0).build();
+	
+	private final Consumer<String> maximumSizeListener = globalProperty -> reset();
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private final ConcurrentMap<String, Set<Key>> keysByUuid = new ConcurrentHashMap<>();
+	
+	private volatile Cache<Key, Entry> cache = null;
+	
+	/**
+	 * Gets the translation of the supplied object, translating it if it is not already cached
+	 *
+	 * @param object the immutable OpenMRS object to translate
+	 * @param translator the function used to translate the object if it is not cached
+	 * @return a copy of the cached translation of the object
+	 */
+	@SuppressWarnings("unchecked")
+	public <U extends OpenmrsObject, T extends Resource> T get(@Nonnull U object, @Nonnull Function<U, T> translator) {
+		Cache<Key, Entry> currentCache = getCache();
+		String versionId = FhirTranslatorUtils.getVersionId(object);
+		if (currentCache == DISABLED || object.getUuid() == null || versionId == null) {
+			return translator.apply(object);
+		}
+		
+		Key key = new Key(object.getClass().getName(), object.getUuid(), versionId, Context.getLocale());
+		
+		Entry entry = currentCache.getIfPresent(key);
+		if (entry == null) {
+			long expectedGeneration = generation.get();
+			T result = translator.apply(object);
+			if (result == null) {
+				return null;
+			}
+			
+			entry = new Entry(result);
+			
+			// if an object was changed while we were translating it, our result may already be stale
+			if (generation.get() == expectedGeneration) {
+				index(key, entry);
+				currentCache.put(key, entry);
+				
+				// an object may have been changed before the entry could be found through the index
+				if (generation.get() != expectedGeneration) {
+					currentCache.invalidate(key);
+				}
+			}
+		}
+		
+		return (T) entry.resource.copy();
+	}
+	
+	/**
+	 * @return the number of cached resources
+	 */
+	public long size() {
+		return getCache().size();
+	}
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(maximumSizeListener, TRANSLATED_RESOURCE_CACHE_SIZE);
+	}
+	
+	@Override
+	public void destroy() {
+		FhirGlobalPropertyHolder.removeListener(maximumSizeListener);
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Obs.class.isAssignableFrom(entityClass) || Concept.class.isAssignableFrom(entityClass)
+		        || ConceptName.class.isAssignableFrom(entityClass) || ConceptMap.class.isAssignableFrom(entityClass)
+		        || ConceptReferenceTerm.class.isAssignableFrom(entityClass)
+		        || FhirConceptSource.class.isAssignableFrom(entityClass)
+		        || FhirObservationCategoryMap.class.isAssignableFrom(entityClass) || isReferenced(entityClass);
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return FhirGlobalPropertyHolder.getConfiguration().getTranslatedResourceCacheSize() > 0;
+	}
+	
+	/**
+	 * @return the uuids of the changed obs and the groups containing it or of the changed object the
+	 *         translations may refer to, which excludes objects that have not been saved before, or null
+	 *         if any translation may have changed
+	 */
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		if (entity instanceof Obs) {
+			// the translation of an obs group lists its non-voided members
+			List<String> uuids = new ArrayList<>(1);
+			for (Obs obs = (Obs) entity; obs != null; obs = obs.getObsGroup()) {
+				if (obs.getObsId() != null) {
+					uuids.add(obs.getUuid());
+				}
+			}
+			
+			return uuids;
+		}
+		
+		OpenmrsObject referenced = null;
+		if (entity instanceof PersonName) {
+			referenced = ((PersonName) entity).getPerson();
+		} else if (entity instanceof PatientIdentifier) {
+			referenced = ((PatientIdentifier) entity).getPatient();
+		} else if (isReferenced(entity.getClass())) {
+			referenced = (OpenmrsObject) entity;
+		}
+		
+		if (referenced == null || referenced.getUuid() == null) {
+			return null;
+		}
+		
+		return referenced.getId() == null ? Collections.emptyList() : Collections.singletonList(referenced.getUuid());
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		Set<String> uuids = new HashSet<>();
+		for (Object change : changes) {
+			if (change == null) {
+				invalidateAll();
+				return;
+			}
+			
+			for (Object uuid : (List<?>) change) {
+				uuids.add((String) uuid);
+			}
+		}
+		
+		if (uuids.isEmpty()) {
+			return;
+		}
+		
+		generation.incrementAndGet();
+		List<Key> keys = new ArrayList<>();
+		for (String uuid : uuids) {
+			Set<Key> referringKeys = keysByUuid.remove(uuid);
+			if (referringKeys != null) {
+				keys.addAll(referringKeys);
+			}
+		}
+		
+		Cache<Key, Entry> currentCache = cache;
+		if (currentCache != null && !keys.isEmpty()) {
+			currentCache.invalidateAll(keys);
+		}
+	}
+	
+	/**
+	 * Discards the cache, so that it is re-created using the current value of the
+	 * fhir2.translatedResourceCacheSize global property on next use. This is also called whenever that
+	 * global property changes.
+	 */
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		cache = null;
+		keysByUuid.clear();
+	}
+	
+	protected void invalidateAll() {
+		generation.incrementAndGet();
+		Cache<Key, Entry> currentCache = cache;
+		if (currentCache != null) {
+			currentCache.invalidateAll();
+		}
+		keysByUuid.clear();
+	}
+	
+	protected Cache<Key, Entry> getCache() {
+		Cache<Key, Entry> result = cache;
+		if (result == null) {
+			synchronized (this) {
+				result = cache;
+				if (result == null) {
+					int maximumWeight = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(TRANSLATED_RESOURCE_CACHE_SIZE,
+					    0);
+					if (maximumWeight <= 0) {
+						result = DISABLED;
+					} else {
+						result = CacheBuilder.newBuilder().maximumWeight(maximumWeight)
+						        .weigher((Key key, Entry entry) -> entry.elementCount).removalListener(this::unindex)
+						        .build();
+					}
+					
+					cache = result;
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private void index(Key key, Entry entry) {
+		for (String uuid : entry.getUuids(key)) {
+			keysByUuid.compute(uuid, (u, keys) -> {
+				Set<Key> result = keys == null ? new HashSet<>() : keys;
+				result.add(key);
+				return result;
+			});
+		}
+	}
+	
+	private void unindex(RemovalNotification<Key, Entry> notification) {
+		// a replaced entry is still indexed under the same key
+		if (notification.getCause() == RemovalCause.REPLACED || notification.getKey() == null
+		        || notification.getValue() == null) {
+			return;
+		}
+		
+		Key key = notification.getKey();
+		for (String uuid : notification.getValue().getUuids(key)) {
+			keysByUuid.computeIfPresent(uuid, (u, keys) -> {
+				keys.remove(key);
+				return keys.isEmpty() ? null : keys;
+			});
+		}
+	}
+	
+	private static boolean isReferenced(Class<?> entityClass) {
+		return Person.class.isAssignableFrom(entityClass) || PersonName.class.isAssignableFrom(entityClass)
+		        || PatientIdentifier.class.isAssignableFrom(entityClass) || Encounter.class.isAssignableFrom(entityClass)
+		        || Provider.class.isAssignableFrom(entityClass) || Location.class.isAssignableFrom(entityClass);
+	}
+	
+	/**
+	 * Counts the elements of the supplied element and collects the ids of the resources it refers to
+	 *
+	 * @param element the element to visit
+	 * @param referencedUuids the set to add the referenced ids to
+	 * @return the number of elements
+	 */
+	private static int visitElements(Base element, Set<String> referencedUuids) {
+		if (element instanceof Reference) {
+			String id = ((Reference) element).getReferenceElement().getIdPart();
+			if (id != null) {
+				referencedUuids.add(id);
+			}
+		}
+		
+		int count = 1;
+		for (Property property : element.children()) {
+			if (property.hasValues()) {
+				for (Base value : property.getValues()) {
+					count += visitElements(value, referencedUuids);
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	protected static final class Entry {
+		
+		private final Resource resource;
+		
+		private final Set<String> referencedUuids = new HashSet<>();
+		
+		private final int elementCount;
+		
+		private Entry(Resource resource) {
+			this.resource = resource;
+			this.elementCount = visitElements(resource, referencedUuids);
+		}
+		
+		private Set<String> getUuids(Key key) {
+			Set<String> uuids = new HashSet<>(referencedUuids);
+			uuids.add(key.uuid);
+			return uuids;
+		}
+	}
+	
+	protected static final class Key {
+		
+		private final String type;
+		
+		private final String uuid;
+		
+		private final String versionId;
+		
+		private final Locale locale;
+		
+		private Key(String type, String uuid, String versionId, Locale locale) {
+			this.type = type;
+			this.uuid = uuid;
+			this.versionId = versionId;
+			this.locale = locale;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			
+			Key other = (Key) o;
+			return type.equals(other.type) && uuid.equals(other.uuid) && versionId.equals(other.versionId)
+			        && Objects.equals(locale, other.locale);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, uuid, versionId, locale);
+		}
+	}
+}
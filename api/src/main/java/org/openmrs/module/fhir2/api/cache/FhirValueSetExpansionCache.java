@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSet;
+import org.openmrs.ConceptSource;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the flattened contents of {@link ValueSet} expansions, keyed by the uuid of the concept set
+ * and the locale used for display names. Expanding a large, nested concept set touches every member
+ * and its mappings, whereas paging through or filtering an expansion that is already cached only
+ * needs to walk an in-memory list. <br/>
+ * As any concept may be a member of any number of sets, every change to a concept, its names, its
+ * mappings or set memberships discards all cached expansions. The cached lists are unmodifiable and
+ * callers are expected to copy any entries they include in a response.
+ */
+@Component
+public class FhirValueSetExpansionCache implements FhirEntityChangeListener {
+	
+	private static final int MAXIMUM_SIZE = 100;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private final Cache<Pair<String, Locale>, List<ValueSet.ValueSetExpansionContainsComponent>> cache = CacheBuilder
+	        .newBuilder().maximumSize(MAXIMUM_SIZE).build();
+	
+	/**
+	 * Gets the contents of the expansion of the supplied concept set, expanding it if it is not already
+	 * cached
+	 *
+	 * @param conceptSet the concept set to expand
+	 * @param expander the function used to expand the concept set if it is not cached
+	 * @return the unmodifiable contents of the expansion
+	 */
+	public List<ValueSet.ValueSetExpansionContainsComponent> get(@Nonnull Concept conceptSet,
+	        @Nonnull Function<Concept, List<ValueSet.ValueSetExpansionContainsComponent>> expander) {
+		Pair<String, Locale> key = Pair.of(conceptSet.getUuid(), Context.getLocale());
+		
+		List<ValueSet.ValueSetExpansionContainsComponent> result = cache.getIfPresent(key);
+		if (result == null) {
+			long expectedGeneration = generation.get();
+			result = Collections.unmodifiableList(expander.apply(conceptSet));
+			
+			// if a concept changed while we were expanding the set, our result may already be stale
+			if (generation.get() == expectedGeneration) {
+				cache.put(key, result);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the number of cached expansions
+	 */
+	public long size() {
+		return cache.size();
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Concept.class.isAssignableFrom(entityClass) || ConceptSet.class.isAssignableFrom(entityClass)
+		        || ConceptName.class.isAssignableFrom(entityClass) || ConceptMap.class.isAssignableFrom(entityClass)
+		        || ConceptReferenceTerm.class.isAssignableFrom(entityClass)
+		        || ConceptSource.class.isAssignableFrom(entityClass) || FhirConceptSource.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		reset();
+	}
+	
+	@Override
+	public void reset() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+	}
+}
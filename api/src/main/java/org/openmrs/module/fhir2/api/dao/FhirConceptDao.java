@@ -44,6 +44,17 @@ public interface FhirConceptDao extends FhirDao<Concept> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Concept> getConceptsWithAnyMappingInSource(ConceptSource conceptSource, String mappingCode);
 	
+	/**
+	 * Gets the concepts used by the largest number of non-voided observations. This requires counting
+	 * every observation and so should only be used where that cost is acceptable, e.g., at startup.
+	 *
+	 * @param limit the maximum number of concepts to return
+	 * @return the concepts, ordered from the most to the least frequently observed
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<Concept> getMostFrequentlyObservedConcepts(int limit);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Concept> getSearchResults(@Nonnull SearchParameterMap theParams);
@@ -0,0 +1,21 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+public interface FhirTableStatisticsDao extends FhirDaoAop {
+	
+	/**
+	 * @param entityClass the class of a mapped entity
+	 * @return the estimated number of rows in the entity's table, or null if there is no estimate
+	 */
+	Long getEstimatedRowCount(@Nonnull Class<?> entityClass);
+}
@@ -58,6 +58,8 @@ import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.dao.internals.FhirSearchQueryHelper;
 import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaContext;
 import org.openmrs.module.fhir2.api.dao.internals.SortState;
+import org.openmrs.module.fhir2.api.metrics.FhirMetrics;
+import org.openmrs.module.fhir2.api.metrics.FhirMetricsPhase;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -171,6 +173,27 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	
 	@Override
 	public List<T> getSearchResults(@Nonnull SearchParameterMap theParams) {
+		long start = FhirMetrics.startTimer(FhirMetricsPhase.QUERY);
+		try {
+			return fetchSearchResults(theParams);
+		}
+		finally {
+			FhirMetrics.stopTimer(FhirMetricsPhase.QUERY, start);
+		}
+	}
+	
+	@Override
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+		long start = FhirMetrics.startTimer(FhirMetricsPhase.COUNT);
+		try {
+			return fetchSearchResultsCount(theParams);
+		}
+		finally {
+			FhirMetrics.stopTimer(FhirMetricsPhase.COUNT, start);
+		}
+	}
+	
+	private List<T> fetchSearchResults(SearchParameterMap theParams) {
 		List<T> results;
 		
 		if (hasDistinctResults()) {
@@ -254,8 +277,7 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return results.stream().map(this::deproxyResult).collect(Collectors.toList());
 	}
 	
-	@Override
-	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+	private int fetchSearchResultsCount(SearchParameterMap theParams) {
 		@SuppressWarnings({ "UnstableApiUsage", "unchecked" })
 		OpenmrsFhirCriteriaContext<T, Long> criteriaContext = getSearchResultCriteria(
 		    createCriteriaContext((Class<T>) typeToken.getRawType(), Long.class), theParams);
@@ -15,7 +15,9 @@ import javax.annotation.Nonnull;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.Join;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +30,7 @@ import org.openmrs.Concept;
 import org.openmrs.ConceptMap;
 import org.openmrs.ConceptMapType;
 import org.openmrs.ConceptSource;
+import org.openmrs.Obs;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.api.dao.FhirConceptDao;
@@ -106,6 +109,39 @@ public class FhirConceptDaoImpl extends BaseFhirDao<Concept> implements FhirConc
 		return criteriaContext.getEntityManager().createQuery(criteriaContext.finalizeQuery()).getResultList();
 	}
 	
+	@Override
+	@Transactional(readOnly = true)
+	public List<Concept> getMostFrequentlyObservedConcepts(int limit) {
+		if (limit <= 0) {
+			return Collections.emptyList();
+		}
+		
+		OpenmrsFhirCriteriaContext<Obs, Integer> criteriaContext = createCriteriaContext(Obs.class, Integer.class);
+		Join<?, ?> conceptJoin = criteriaContext.addJoin("concept", "c");
+		String conceptIdProperty = getIdPropertyName(criteriaContext.getEntityManager(), Concept.class);
+		
+		criteriaContext.addPredicate(criteriaContext.getCriteriaBuilder().isFalse(criteriaContext.getRoot().get("voided")));
+		criteriaContext.getCriteriaQuery().select(conceptJoin.<Integer> get(conceptIdProperty))
+		        .groupBy(conceptJoin.get(conceptIdProperty));
+		criteriaContext.addOrder(criteriaContext.getCriteriaBuilder().desc(criteriaContext.getCriteriaBuilder()
+		        .count(criteriaContext.getRoot())));
+		
+		List<Integer> conceptIds = criteriaContext.getEntityManager().createQuery(criteriaContext.finalizeQuery())
+		        .setMaxResults(limit).getResultList();
+		if (conceptIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		OpenmrsFhirCriteriaContext<Concept, Concept> conceptCriteriaContext = createCriteriaContext(Concept.class);
+		conceptCriteriaContext.addPredicate(conceptCriteriaContext.getRoot().get(conceptIdProperty).in(conceptIds));
+		conceptCriteriaContext.getCriteriaQuery().select(conceptCriteriaContext.getRoot());
+		
+		List<Concept> concepts = new ArrayList<>(conceptCriteriaContext.getEntityManager()
+		        .createQuery(conceptCriteriaContext.finalizeQuery()).getResultList());
+		concepts.sort(Comparator.comparingInt(concept -> conceptIds.indexOf(concept.getConceptId())));
+		return concepts;
+	}
+	
 	@Override
 	protected <U> void setupSearchParams(@Nonnull OpenmrsFhirCriteriaContext<Concept, U> criteriaContext,
 	        @Nonnull SearchParameterMap theParams) {
@@ -0,0 +1,86 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+import javax.persistence.PersistenceException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
+import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaContext;
+import org.openmrs.module.fhir2.api.util.FhirSnapshot;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the units of all numeric concepts, which are needed to convert quantity searches into the
+ * units observations are stored in. The units are held in an immutable in-memory snapshot which is
+ * loaded on first use and discarded whenever a {@link ConceptNumeric} is saved.
+ */
+@Component
+@Slf4j
+public class FhirConceptNumericUnitsDaoImpl extends BaseDao implements FhirEntityChangeListener {
+	
+	private final FhirSnapshot<Set<String>> snapshot = new FhirSnapshot<>(Collections.emptySet());
+	
+	/**
+	 * @return the distinct units of all numeric concepts, exactly as they are stored
+	 */
+	public Set<String> getUnits() {
+		return snapshot.get(this::loadSnapshot);
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return ConceptNumeric.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		reset();
+	}
+	
+	@Override
+	public void reset() {
+		snapshot.invalidate();
+	}
+	
+	private Set<String> loadSnapshot() {
+		OpenmrsFhirCriteriaContext<ConceptNumeric, String> criteriaContext = createCriteriaContext(ConceptNumeric.class,
+		    String.class);
+		criteriaContext.addPredicate(criteriaContext.getCriteriaBuilder().isNotNull(criteriaContext.getRoot().get("units")));
+		
+		List<String> rows;
+		try {
+			rows = criteriaContext.getEntityManager().createQuery(
+			    criteriaContext.finalizeQuery().select(criteriaContext.getRoot().get("units")).distinct(true))
+			        .getResultList();
+		}
+		catch (PersistenceException e) {
+			log.error("Exception caught while trying to load the units of numeric concepts", e);
+			return null;
+		}
+		
+		Set<String> units = new HashSet<>();
+		for (String row : rows) {
+			if (!row.trim().isEmpty()) {
+				units.add(row);
+			}
+		}
+		
+		return Collections.unmodifiableSet(units);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+import javax.persistence.PersistenceException;
+import javax.persistence.criteria.Join;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.ConceptSource;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
+import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaContext;
+import org.openmrs.module.fhir2.api.util.FhirSnapshot;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides lookups between FHIR code system URLs and OpenMRS {@link ConceptSource}s. As the
+ * fhir_concept_source table is small and rarely changes, its contents are held in an immutable
+ * in-memory snapshot which is loaded on first use and discarded whenever a {@link FhirConceptSource}
+ * is saved. Readers always see either the previous or the next complete snapshot, never a partially
+ * built one.
+ */
+@Component
+@Slf4j
+public class FhirConceptSourceIndexDaoImpl extends BaseDao implements FhirEntityChangeListener {
+	
+	private final FhirSnapshot<ConceptSourceSnapshot> snapshot = new FhirSnapshot<>(
+	        new ConceptSourceSnapshot(Collections.emptyList()));
+	
+	/**
+	 * @param url the URL of a FHIR code system
+	 * @return the ids of the concept sources mapped to the URL, or an empty set if there are none
+	 */
+	public Set<Integer> getConceptSourceIds(@Nonnull String url) {
+		return getSnapshot().conceptSourceIdsByUrl.getOrDefault(url, Collections.emptySet());
+	}
+	
+	/**
+	 * @param conceptSourceUuid the uuid of a {@link ConceptSource}
+	 * @return the URL of the FHIR code system the concept source is mapped to, if any
+	 */
+	public Optional<String> getUrl(@Nonnull String conceptSourceUuid) {
+		return Optional.ofNullable(getSnapshot().urlsByConceptSourceUuid.get(conceptSourceUuid));
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return FhirConceptSource.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		reset();
+	}
+	
+	@Override
+	public void reset() {
+		snapshot.invalidate();
+	}
+	
+	protected ConceptSourceSnapshot getSnapshot() {
+		return snapshot.get(this::loadSnapshot);
+	}
+	
+	private ConceptSourceSnapshot loadSnapshot() {
+		OpenmrsFhirCriteriaContext<FhirConceptSource, Object[]> criteriaContext = createCriteriaContext(
+		    FhirConceptSource.class, Object[].class);
+		Join<?, ?> conceptSourceJoin = criteriaContext.addJoin("conceptSource", "cs");
+		String idProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptSource.class);
+		
+		// ordered so that the first mapping for a concept source wins consistently
+		criteriaContext.addOrder(criteriaContext.getCriteriaBuilder().asc(criteriaContext.getRoot().get("id")));
+		
+		try {
+			return new ConceptSourceSnapshot(criteriaContext.getEntityManager()
+			        .createQuery(criteriaContext.finalizeQuery().multiselect(criteriaContext.getRoot().get("url"),
+			            conceptSourceJoin.get(idProperty), conceptSourceJoin.get("uuid")))
+			        .getResultList());
+		}
+		catch (PersistenceException e) {
+			log.error("Exception caught while trying to load the FHIR concept sources", e);
+		}
+		
+		return null;
+	}
+	
+	protected static final class ConceptSourceSnapshot {
+		
+		private final Map<String, Set<Integer>> conceptSourceIdsByUrl;
+		
+		private final Map<String, String> urlsByConceptSourceUuid;
+		
+		private ConceptSourceSnapshot(List<Object[]> rows) {
+			Map<String, Set<Integer>> conceptSourceIds = new HashMap<>(rows.size());
+			Map<String, String> urls = new HashMap<>(rows.size());
+			
+			for (Object[] row : rows) {
+				String url = (String) row[0];
+				Integer conceptSourceId = (Integer) row[1];
+				String conceptSourceUuid = (String) row[2];
+				
+				conceptSourceIds.computeIfAbsent(url, k -> new HashSet<>()).add(conceptSourceId);
+				if (url != null) {
+					urls.putIfAbsent(conceptSourceUuid, url);
+				}
+			}
+			
+			conceptSourceIds.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+			
+			this.conceptSourceIdsByUrl = Collections.unmodifiableMap(conceptSourceIds);
+			this.urlsByConceptSourceUuid = Collections.unmodifiableMap(urls);
+		}
+	}
+}
@@ -0,0 +1,456 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.model.FhirObsValueTextPending;
+import org.openmrs.module.fhir2.model.FhirObsValueTextToken;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the word index over the text values of observations stored as
+ * {@link FhirObsValueTextToken}s, which is used for value-string searches when the
+ * {@link FhirConstants#OBS_VALUE_TEXT_INDEX_ENABLED} global property is true. <br/>
+ * Observations are re-indexed on a background thread once the transaction that changed them has
+ * completed, so the index is eventually consistent with the obs table: for a short time after such a
+ * transaction commits, value-string searches may not find the observations it created or changed.
+ * Changed observations are first recorded as {@link FhirObsValueTextPending} and only forgotten once
+ * they have been re-indexed, so if re-indexing fails or is never run, e.g., because the module is
+ * stopped, the index is no longer considered ready and they are re-indexed when it is next used.
+ * When the index is first used, any observations newer than the most recently indexed one and any
+ * pending observations are indexed before the index is considered ready; until then searches fall
+ * back to matching the text directly. Whenever the global property changes, the index is rebuilt
+ * from scratch, as observations changed while it was disabled have not been re-indexed.
+ */
+@Slf4j
+@Component
+public class FhirObsValueTextIndexDaoImpl implements FhirEntityChangeListener, InitializingBean, DisposableBean {
+	
+	private static final int MAX_TOKEN_LENGTH = 100;
+	
+	private static final int BATCH_SIZE = 500;
+	
+	private static final int TOKENS_PER_FLUSH = 500;
+	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = { @Autowired, @Qualifier("sessionFactory") })
+	private SessionFactory sessionFactory;
+	
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "fhir2-obs-value-text-index");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final AtomicBoolean catchUpScheduled = new AtomicBoolean(false);
+	
+	private final Consumer<String> enabledListener = globalProperty -> rebuild();
+	
+	private volatile boolean ready = false;
+	
+	private volatile boolean rebuildRequired = false;
+	
+	/**
+	 * Splits text into the lower-cased words stored in the index. Words are maximal runs of letters and
+	 * digits, so punctuation and whitespace are never part of a word.
+	 *
+	 * @param text the text to split
+	 * @return the distinct words of the text, in the order they first appear
+	 */
+	public static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		if (text == null) {
+			return tokens;
+		}
+		
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= normalized.length(); i++) {
+			boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				tokens.add(normalized.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)));
+				start = -1;
+			}
+		}
+		
+		return tokens;
+	}
+	
+	public boolean isEnabled() {
+		return FhirGlobalPropertyHolder.getConfiguration().isObsValueTextIndexEnabled();
+	}
+	
+	/**
+	 * @return true if the index is enabled and up-to-date enough to be used for searches. If the index
+	 *         is enabled but has not been brought up-to-date yet, this schedules that work and returns
+	 *         false.
+	 */
+	public boolean isReady() {
+		if (!isEnabled()) {
+			return false;
+		}
+		
+		if (!ready && catchUpScheduled.compareAndSet(false, true)) {
+			submit(() -> {
+				try {
+					indexNewObservations();
+				}
+				finally {
+					catchUpScheduled.set(false);
+				}
+			});
+		}
+		
+		return ready;
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return Obs.class.isAssignableFrom(entityClass);
+	}
+	
+	/**
+	 * @return the uuid of the changed observation, since new observations have no id until they are
+	 *         inserted
+	 */
+	@Override
+	public Object describeChange(@Nonnull Object entity) {
+		return ((Obs) entity).getUuid();
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		if (!isEnabled()) {
+			return;
+		}
+		
+		List<String> uuids = new ArrayList<>(changes.size());
+		for (Object change : changes) {
+			if (change != null) {
+				uuids.add((String) change);
+			}
+		}
+		
+		if (uuids.isEmpty()) {
+			return;
+		}
+		
+		List<Integer> pendingIds;
+		try {
+			pendingIds = inTransaction(session -> savePending(session, uuids));
+		}
+		catch (RuntimeException e) {
+			log.error("Exception caught while recording observations to update in the observation text index", e);
+			pendingIds = null;
+		}
+		
+		List<Integer> recordedIds = pendingIds;
+		submit(() -> {
+			if (recordedIds == null) {
+				try {
+					for (List<String> batch : Lists.partition(uuids, BATCH_SIZE)) {
+						reindex(inTransaction(session -> getObsIds(session, batch)));
+					}
+				}
+				catch (RuntimeException e) {
+					// nothing records which observations were not re-indexed
+					rebuildRequired = true;
+					throw e;
+				}
+				return;
+			}
+			
+			for (List<Integer> batch : Lists.partition(recordedIds, BATCH_SIZE)) {
+				inTransaction(session -> {
+					reindexPending(session, getPending(session, batch));
+					return null;
+				});
+			}
+		});
+	}
+	
+	@Override
+	public void reset() {
+		ready = false;
+	}
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(enabledListener, FhirConstants.OBS_VALUE_TEXT_INDEX_ENABLED);
+	}
+	
+	@Override
+	public void destroy() {
+		FhirGlobalPropertyHolder.removeListener(enabledListener);
+		// any discarded updates are still recorded as pending and are made when the index is next used
+		ready = false;
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Discards the index and, if the index is enabled, starts rebuilding it. Until it has been rebuilt,
+	 * searches fall back to matching the text directly.
+	 */
+	public void rebuild() {
+		rebuildRequired = true;
+		ready = false;
+		isReady();
+	}
+	
+	/**
+	 * Replaces the indexed words of the given observations with the words of their current text
+	 * values
+	 *
+	 * @param obsIds the ids of the observations to re-index
+	 */
+	public void reindex(@Nonnull Collection<Integer> obsIds) {
+		for (List<Integer> batch : Lists.partition(new ArrayList<>(obsIds), BATCH_SIZE)) {
+			inTransaction(session -> {
+				reindex(session, batch);
+				return null;
+			});
+		}
+	}
+	
+	/**
+	 * Indexes all observations newer than the most recently indexed observation, re-indexes all pending
+	 * observations and then marks the index as ready for use
+	 */
+	public void indexNewObservations() {
+		if (rebuildRequired) {
+			rebuildRequired = false;
+			inTransaction(session -> {
+				deleteTokens(session);
+				return null;
+			});
+		}
+		
+		Integer cursor = inTransaction(this::getLastIndexedObsId);
+		do {
+			int after = cursor == null ? 0 : cursor;
+			cursor = inTransaction(session -> indexObservationsAfter(session, after));
+		} while (cursor != null);
+		
+		boolean morePending;
+		do {
+			morePending = inTransaction(session -> {
+				List<FhirObsValueTextPending> pending = getPending(session, BATCH_SIZE);
+				reindexPending(session, pending);
+				return pending.size() == BATCH_SIZE;
+			});
+		} while (morePending);
+		
+		// the index may have been discarded again while we were indexing
+		ready = !rebuildRequired;
+	}
+	
+	protected void reindex(Session session, Collection<Integer> obsIds) {
+		CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+		CriteriaDelete<FhirObsValueTextToken> delete = criteriaBuilder.createCriteriaDelete(FhirObsValueTextToken.class);
+		delete.where(delete.from(FhirObsValueTextToken.class).get("obsId").in(obsIds));
+		session.createQuery(delete).executeUpdate();
+		
+		CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+		Root<Obs> root = query.from(Obs.class);
+		query.multiselect(root.get("obsId"), root.get("valueText")).where(root.get("obsId").in(obsIds),
+		    criteriaBuilder.isNotNull(root.get("valueText")));
+		
+		saveTokens(session, session.createQuery(query).getResultList());
+	}
+	
+	/**
+	 * Re-indexes the given pending observations and forgets them, so they are not re-indexed again
+	 *
+	 * @param session the session to use
+	 * @param pending the pending observations to re-index
+	 */
+	protected void reindexPending(Session session, List<FhirObsValueTextPending> pending) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		
+		List<Integer> obsIds = getObsIds(session,
+		    pending.stream().map(FhirObsValueTextPending::getObsUuid).collect(Collectors.toSet()));
+		if (!obsIds.isEmpty()) {
+			reindex(session, obsIds);
+		}
+		
+		// only the rows read above, so that changes recorded in the meantime are re-indexed again
+		List<Integer> pendingIds = pending.stream().map(FhirObsValueTextPending::getId).collect(Collectors.toList());
+		CriteriaDelete<FhirObsValueTextPending> delete = session.getCriteriaBuilder()
+		        .createCriteriaDelete(FhirObsValueTextPending.class);
+		delete.where(delete.from(FhirObsValueTextPending.class).get("id").in(pendingIds));
+		session.createQuery(delete).executeUpdate();
+	}
+	
+	protected List<Integer> savePending(Session session, List<String> uuids) {
+		List<Integer> pendingIds = new ArrayList<>(uuids.size());
+		for (String uuid : uuids) {
+			FhirObsValueTextPending pending = new FhirObsValueTextPending(uuid);
+			session.persist(pending);
+			pendingIds.add(pending.getId());
+		}
+		
+		return pendingIds;
+	}
+	
+	protected List<FhirObsValueTextPending> getPending(Session session, Collection<Integer> pendingIds) {
+		CriteriaQuery<FhirObsValueTextPending> query = session.getCriteriaBuilder()
+		        .createQuery(FhirObsValueTextPending.class);
+		Root<FhirObsValueTextPending> root = query.from(FhirObsValueTextPending.class);
+		query.select(root).where(root.get("id").in(pendingIds));
+		return session.createQuery(query).getResultList();
+	}
+	
+	protected List<FhirObsValueTextPending> getPending(Session session, int limit) {
+		CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+		CriteriaQuery<FhirObsValueTextPending> query = criteriaBuilder.createQuery(FhirObsValueTextPending.class);
+		Root<FhirObsValueTextPending> root = query.from(FhirObsValueTextPending.class);
+		query.select(root).orderBy(criteriaBuilder.asc(root.get("id")));
+		return session.createQuery(query).setMaxResults(limit).getResultList();
+	}
+	
+	protected List<Integer> getObsIds(Session session, Collection<String> uuids) {
+		CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+		CriteriaQuery<Integer> query = criteriaBuilder.createQuery(Integer.class);
+		Root<Obs> root = query.from(Obs.class);
+		query.select(root.get("obsId")).where(root.get("uuid").in(uuids));
+		return session.createQuery(query).getResultList();
+	}
+	
+	protected void deleteTokens(Session session) {
+		CriteriaDelete<FhirObsValueTextToken> delete = session.getCriteriaBuilder()
+		        .createCriteriaDelete(FhirObsValueTextToken.class);
+		delete.from(FhirObsValueTextToken.class);
+		session.createQuery(delete).executeUpdate();
+	}
+	
+	protected Integer getLastIndexedObsId(Session session) {
+		CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+		CriteriaQuery<Integer> query = criteriaBuilder.createQuery(Integer.class);
+		query.select(criteriaBuilder.max(query.from(FhirObsValueTextToken.class).get("obsId")));
+		return session.createQuery(query).getSingleResult();
+	}
+	
+	/**
+	 * Indexes the next batch of observations with text values
+	 *
+	 * @param session the session to use
+	 * @param cursor the id of the last observation which has already been indexed
+	 * @return the id of the last observation indexed by this batch or null if there were none left
+	 */
+	protected Integer indexObservationsAfter(Session session, int cursor) {
+		CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+		Root<Obs> root = query.from(Obs.class);
+		query.multiselect(root.get("obsId"), root.get("valueText"))
+		        .where(criteriaBuilder.greaterThan(root.get("obsId"), cursor),
+		            criteriaBuilder.isNotNull(root.get("valueText")))
+		        .orderBy(criteriaBuilder.asc(root.get("obsId")));
+		
+		List<Object[]> rows = session.createQuery(query).setMaxResults(BATCH_SIZE).getResultList();
+		if (rows.isEmpty()) {
+			return null;
+		}
+		
+		saveTokens(session, rows);
+		return (Integer) rows.get(rows.size() - 1)[0];
+	}
+	
+	protected void setReady(boolean ready) {
+		this.ready = ready;
+	}
+	
+	private void saveTokens(Session session, List<Object[]> rows) {
+		int persisted = 0;
+		for (Object[] row : rows) {
+			Integer obsId = (Integer) row[0];
+			for (String token : tokenize((String) row[1])) {
+				session.persist(new FhirObsValueTextToken(obsId, token));
+				if (++persisted % TOKENS_PER_FLUSH == 0) {
+					session.flush();
+					session.clear();
+				}
+			}
+		}
+	}
+	
+	protected <T> T inTransaction(Function<Session, T> work) {
+		try (Session session = sessionFactory.openSession()) {
+			Transaction transaction = session.beginTransaction();
+			try {
+				T result = work.apply(session);
+				transaction.commit();
+				return result;
+			}
+			catch (RuntimeException e) {
+				transaction.rollback();
+				throw e;
+			}
+		}
+	}
+	
+	private void submit(Runnable task) {
+		try {
+			executor.submit(() -> {
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					// the observations that were not re-indexed are still pending or newer than the indexed ones
+					log.error("Exception caught while updating the observation text index", e);
+					ready = false;
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			log.debug("Not updating the observation text index as the module is stopping", e);
+			ready = false;
+		}
+	}
+}
@@ -13,32 +13,111 @@ import javax.annotation.Nonnull;
 import javax.persistence.PersistenceException;
 import javax.persistence.criteria.Join;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 import lombok.extern.slf4j.Slf4j;
+import org.openmrs.ConceptClass;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
 import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaContext;
+import org.openmrs.module.fhir2.api.util.FhirSnapshot;
 import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
 import org.springframework.stereotype.Component;
 
+/**
+ * Provides access to the {@link FhirObservationCategoryMap}. As the table is small and rarely
+ * changes, its contents are held in an immutable in-memory snapshot which is loaded on first use and
+ * discarded whenever a {@link FhirObservationCategoryMap} is saved.
+ */
 @Component
 @Slf4j
-public class FhirObservationCategoryMapDaoImpl extends BaseDao {
+public class FhirObservationCategoryMapDaoImpl extends BaseDao implements FhirEntityChangeListener {
+	
+	private final FhirSnapshot<CategorySnapshot> snapshot = new FhirSnapshot<>(
+	        new CategorySnapshot(Collections.emptyList()));
 	
 	public String getCategory(@Nonnull String conceptClassUuid) {
-		OpenmrsFhirCriteriaContext<FhirObservationCategoryMap, String> criteriaContext = createCriteriaContext(
-		    FhirObservationCategoryMap.class, String.class);
+		return getSnapshot().categoriesByConceptClassUuid.get(conceptClassUuid);
+	}
+	
+	/**
+	 * Returns the ids of the concept classes mapped to the supplied observation category. Category
+	 * codes are matched case-insensitively.
+	 *
+	 * @param category the observation category code, e.g., "laboratory"
+	 * @return the ids of all concept classes mapped to the category, or an empty set if there are none
+	 */
+	public Set<Integer> getConceptClassIds(@Nonnull String category) {
+		return getSnapshot().conceptClassIdsByCategory.getOrDefault(category, Collections.emptySet());
+	}
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> entityClass) {
+		return FhirObservationCategoryMap.class.isAssignableFrom(entityClass);
+	}
+	
+	@Override
+	public void entitiesChanged(@Nonnull Collection<Object> changes) {
+		reset();
+	}
+	
+	@Override
+	public void reset() {
+		snapshot.invalidate();
+	}
+	
+	protected CategorySnapshot getSnapshot() {
+		return snapshot.get(this::loadSnapshot);
+	}
+	
+	private CategorySnapshot loadSnapshot() {
+		OpenmrsFhirCriteriaContext<FhirObservationCategoryMap, Object[]> criteriaContext = createCriteriaContext(
+		    FhirObservationCategoryMap.class, Object[].class);
 		Join<?, ?> conceptClassJoin = criteriaContext.addJoin("conceptClass", "ct");
-		criteriaContext
-		        .addPredicate(criteriaContext.getCriteriaBuilder().equal(conceptClassJoin.get("uuid"), conceptClassUuid));
+		String idProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptClass.class);
 		
 		try {
-			return criteriaContext.getEntityManager()
-			        .createQuery(
-			            criteriaContext.finalizeQuery().select(criteriaContext.getRoot().get("observationCategory")))
-			        .getSingleResult();
+			return new CategorySnapshot(criteriaContext.getEntityManager()
+			        .createQuery(criteriaContext.finalizeQuery().multiselect(conceptClassJoin.get(idProperty),
+			            conceptClassJoin.get("uuid"), criteriaContext.getRoot().get("observationCategory")))
+			        .getResultList());
 		}
 		catch (PersistenceException e) {
-			log.error("Exception caught while trying to load category for concept class '{}'", conceptClassUuid, e);
+			log.error("Exception caught while trying to load the observation category map", e);
 		}
 		
 		return null;
 	}
+	
+	protected static final class CategorySnapshot {
+		
+		private final Map<String, String> categoriesByConceptClassUuid;
+		
+		private final Map<String, Set<Integer>> conceptClassIdsByCategory;
+		
+		private CategorySnapshot(List<Object[]> rows) {
+			Map<String, String> categories = new HashMap<>(rows.size());
+			Map<String, Set<Integer>> conceptClassIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			
+			for (Object[] row : rows) {
+				Integer conceptClassId = (Integer) row[0];
+				String conceptClassUuid = (String) row[1];
+				String category = (String) row[2];
+				
+				categories.putIfAbsent(conceptClassUuid, category);
+				conceptClassIds.computeIfAbsent(category, k -> new HashSet<>()).add(conceptClassId);
+			}
+			
+			conceptClassIds.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+			
+			this.categoriesByConceptClassUuid = Collections.unmodifiableMap(categories);
+			this.conceptClassIdsByCategory = Collections.unmodifiableMap(conceptClassIds);
+		}
+	}
 }
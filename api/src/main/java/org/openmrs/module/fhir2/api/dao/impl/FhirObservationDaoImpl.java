@@ -14,13 +14,21 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
@@ -32,13 +40,16 @@ import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.collect.Lists;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
 import org.hl7.fhir.r4.model.Observation;
 import org.openmrs.Concept;
 import org.openmrs.ConceptClass;
+import org.openmrs.ConceptNumeric;
 import org.openmrs.Obs;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
@@ -46,7 +57,8 @@ import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaContext;
 import org.openmrs.module.fhir2.api.dao.internals.OpenmrsFhirCriteriaSubquery;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
-import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
+import org.openmrs.module.fhir2.api.util.UcumUnitConverter;
+import org.openmrs.module.fhir2.model.FhirObsValueTextToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -54,6 +66,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Component
 public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObservationDao {
 	
+	private static final int BATCH_SIZE = 500;
+	
 	@Getter(AccessLevel.PROTECTED)
 	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
 	private FhirObservationCategoryMapDaoImpl categoryMap;
@@ -62,6 +76,18 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
 	private FhirEncounterDao encounterDao;
 	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptNumericUnitsDaoImpl conceptNumericUnits;
+	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private UcumUnitConverter ucumUnitConverter;
+	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private FhirObsValueTextIndexDaoImpl valueTextIndex;
+	
 	@Override
 	@Transactional(readOnly = true)
 	public List<Obs> getSearchResults(@Nonnull SearchParameterMap theParams) {
@@ -123,11 +149,43 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 			}
 			
 			int toIndex = Math.min(accumulatedResults.size(), theParams.getToIndex());
-			return accumulatedResults.subList(theParams.getFromIndex(), toIndex).stream().map(this::deproxyResult)
-			        .collect(Collectors.toList());
+			List<Obs> results = accumulatedResults.subList(theParams.getFromIndex(), toIndex).stream()
+			        .map(this::deproxyResult).collect(Collectors.toList());
+			initializeGroupMembers(results);
+			return results;
+		}
+		
+		List<Obs> results = super.getSearchResults(theParams);
+		initializeGroupMembers(results);
+		return results;
+	}
+	
+	/**
+	 * Gets the observations with the supplied uuids in the order they were requested. They are loaded
+	 * in batches, and observations which have already been loaded into the current session, e.g. the
+	 * group members of a page of search results which are then requested through
+	 * {@code _include=Observation:has-member}, are returned as the same instances, so their group
+	 * members are not loaded again.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<Obs> get(@Nonnull Collection<String> uuids) {
+		if (uuids == null || uuids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		Set<String> uniqueUuids = new LinkedHashSet<>(uuids);
+		Map<String, Obs> obsByUuid = new HashMap<>(uniqueUuids.size());
+		for (List<String> batch : Lists.partition(new ArrayList<>(uniqueUuids), BATCH_SIZE)) {
+			for (Obs obs : super.get(batch)) {
+				obsByUuid.put(obs.getUuid(), obs);
+			}
 		}
 		
-		return super.getSearchResults(theParams);
+		List<Obs> results = uniqueUuids.stream().map(obsByUuid::get).filter(Objects::nonNull)
+		        .collect(Collectors.toList());
+		initializeGroupMembers(results);
+		return results;
 	}
 	
 	@Override
@@ -178,6 +236,30 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		return super.getSearchResultsCount(theParams);
 	}
 	
+	/**
+	 * Initializes the group members of all the supplied observations using a single query, so that
+	 * translating a page of observations does not load the members of each obs group separately.
+	 *
+	 * @param observations the observations whose group members should be loaded
+	 */
+	protected void initializeGroupMembers(@Nonnull Collection<Obs> observations) {
+		List<Integer> obsIds = observations.stream()
+		        .filter(obs -> obs.getObsId() != null && !Hibernate.isInitialized(obs.getGroupMembers(true)))
+		        .map(Obs::getObsId).distinct().collect(Collectors.toList());
+		
+		for (List<Integer> batch : Lists.partition(obsIds, BATCH_SIZE)) {
+			OpenmrsFhirCriteriaContext<Obs, Obs> criteriaContext = createCriteriaContext(Obs.class);
+			criteriaContext.getRoot().fetch("groupMembers", JoinType.LEFT);
+			criteriaContext.addPredicate(
+			    criteriaContext.getRoot().get(getIdPropertyName(criteriaContext.getEntityManager())).in(batch));
+			
+			// the results are the instances already in the session; the query is only run to populate their collections
+			criteriaContext.getEntityManager()
+			        .createQuery(criteriaContext.finalizeQuery().select(criteriaContext.getRoot()).distinct(true))
+			        .getResultList();
+		}
+	}
+	
 	@Override
 	protected Obs deproxyResult(@Nonnull Obs result) {
 		Obs obs = super.deproxyResult(result);
@@ -238,10 +320,8 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 					break;
 				case FhirConstants.QUANTITY_SEARCH_HANDLER:
 					entry.getValue()
-					        .forEach(quantity -> getSearchQueryHelper()
-					                .handleQuantity(criteriaContext, quantity.getPropertyName(),
-					                    (QuantityAndListParam) quantity.getParam())
-					                .ifPresent(criteriaContext::addPredicate));
+					        .forEach(quantity -> handleValueQuantity(criteriaContext, quantity.getPropertyName(),
+					            (QuantityAndListParam) quantity.getParam()).ifPresent(criteriaContext::addPredicate));
 					break;
 				case FhirConstants.VALUE_STRING_SEARCH_HANDLER:
 					entry.getValue().forEach(string -> handleValueStringParam(criteriaContext, string.getPropertyName(),
@@ -278,10 +358,118 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		}
 	}
 	
+	/**
+	 * Handles searches on the text value of observations, supporting the {@code :exact} and
+	 * {@code :contains} modifiers. When the observation text index is enabled, each word of the search
+	 * value which must start a word of the text must also be the prefix of an indexed word of the
+	 * observation; with {@code :contains}, the first word of the search value may end a word of the text
+	 * instead, so it is not looked up. As every observation whose text matches the search satisfies that
+	 * condition, this only narrows the observations the database needs to compare the text of. As the
+	 * index is updated after the transaction changing an observation commits, an observation may be
+	 * missing from the results for a short time after it was created or changed.
+	 */
 	protected <T, U> Optional<Predicate> handleValueStringParam(OpenmrsFhirCriteriaContext<T, U> criteriaContext,
 	        @Nonnull String propertyName, StringAndListParam valueStringParam) {
-		return handleAndListParam(criteriaContext.getCriteriaBuilder(), valueStringParam, v -> getSearchQueryHelper()
-		        .propertyLike(criteriaContext, criteriaContext.getRoot(), propertyName, v.getValue()));
+		boolean useIndex = valueTextIndex.isReady();
+		
+		return handleAndListParam(criteriaContext.getCriteriaBuilder(), valueStringParam, v -> {
+			Optional<Predicate> likePredicate = getSearchQueryHelper().propertyLike(criteriaContext,
+			    criteriaContext.getRoot(), propertyName, v);
+			if (!useIndex || v.isExact() || !likePredicate.isPresent()) {
+				return likePredicate;
+			}
+			
+			Set<String> tokens = FhirObsValueTextIndexDaoImpl.tokenize(v.getValue());
+			if (v.isContains() && !tokens.isEmpty() && Character.isLetterOrDigit(v.getValue().charAt(0))) {
+				tokens.remove(tokens.iterator().next());
+			}
+			
+			if (tokens.isEmpty()) {
+				return likePredicate;
+			}
+			
+			String idProperty = getIdPropertyName(criteriaContext.getEntityManager(), Obs.class);
+			List<Predicate> predicates = new ArrayList<>(tokens.size() + 1);
+			for (String token : tokens) {
+				OpenmrsFhirCriteriaSubquery<FhirObsValueTextToken, Integer> tokenSubquery = criteriaContext
+				        .addSubquery(FhirObsValueTextToken.class, Integer.class);
+				tokenSubquery.setProjection(tokenSubquery.getRoot().get("obsId"));
+				tokenSubquery.addPredicate(
+				    criteriaContext.getCriteriaBuilder().like(tokenSubquery.getRoot().get("token"), token + "%"));
+				
+				predicates.add(criteriaContext.getCriteriaBuilder().in(criteriaContext.getRoot().get(idProperty))
+				        .value(tokenSubquery.finalizeQuery()));
+			}
+			predicates.add(likePredicate.get());
+			
+			return Optional.of(criteriaContext.getCriteriaBuilder().and(predicates.toArray(new Predicate[0])));
+		});
+	}
+	
+	/**
+	 * Handles searches on the value of quantity observations. Where the search specifies UCUM units,
+	 * the search value is converted to the units of each numeric concept whose units are comparable, so
+	 * that, e.g., {@code value-quantity=gt5|http://unitsofmeasure.org|mmol/L} also matches values
+	 * recorded in {@code umol/L}. Observations of concepts whose UCUM units cannot be compared do not
+	 * match. Observations of concepts without units or with units outside of UCUM, e.g. {@code mmHg},
+	 * as well as searches without units or with units outside of UCUM compare the stored value directly.
+	 * The converted values are compared per distinct unit on the units of the numeric concept, so the
+	 * query does not depend on the number of concepts.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <U> Optional<Predicate> handleValueQuantity(OpenmrsFhirCriteriaContext<Obs, U> criteriaContext,
+	        @Nonnull String propertyName, QuantityAndListParam valueQuantity) {
+		if (valueQuantity == null) {
+			return Optional.empty();
+		}
+		
+		return handleAndListParam(criteriaContext.getCriteriaBuilder(), valueQuantity, quantityParam -> {
+			String units = StringUtils.trimToNull(quantityParam.getUnits());
+			String system = StringUtils.trimToNull(quantityParam.getSystem());
+			if (units == null || (system != null && !FhirConstants.UCUM_SYSTEM_URI.equals(system))
+			        || !ucumUnitConverter.isValidUnit(units)) {
+				return getSearchQueryHelper().handleQuantity(criteriaContext, propertyName, quantityParam);
+			}
+			
+			Join<Obs, Concept> conceptJoin = (Join<Obs, Concept>) criteriaContext.addJoin("concept", "c");
+			Path<String> conceptUnits = criteriaContext.getCriteriaBuilder().treat(conceptJoin, ConceptNumeric.class)
+			        .get("units");
+			
+			List<Predicate> predicates = new ArrayList<>();
+			List<String> ucumUnits = new ArrayList<>();
+			for (String storedUnits : conceptNumericUnits.getUnits()) {
+				if (!ucumUnitConverter.isValidUnit(storedUnits.trim())) {
+					continue;
+				}
+				
+				ucumUnits.add(storedUnits);
+				ucumUnitConverter.getConversion(units, storedUnits.trim())
+				        .flatMap(conversion -> getSearchQueryHelper().handleQuantity(criteriaContext, propertyName,
+				            quantityParam, conversion))
+				        .ifPresent(valuePredicate -> predicates.add(criteriaContext.getCriteriaBuilder().and(
+				            criteriaContext.getCriteriaBuilder().equal(conceptUnits, storedUnits), valuePredicate)));
+			}
+			
+			// nothing is known about the units of the remaining concepts, so their values are compared as they are
+			Optional<Predicate> unconvertedPredicate = getSearchQueryHelper().handleQuantity(criteriaContext, propertyName,
+			    quantityParam);
+			if (unconvertedPredicate.isPresent()) {
+				if (ucumUnits.isEmpty()) {
+					predicates.add(unconvertedPredicate.get());
+				} else {
+					predicates.add(criteriaContext.getCriteriaBuilder().and(
+					    criteriaContext.getCriteriaBuilder().or(criteriaContext.getCriteriaBuilder().isNull(conceptUnits),
+					        criteriaContext.getCriteriaBuilder().not(conceptUnits.in(ucumUnits))),
+					    unconvertedPredicate.get()));
+				}
+			}
+			
+			if (predicates.isEmpty()) {
+				return Optional.of(criteriaContext.getCriteriaBuilder().disjunction());
+			}
+			
+			return Optional.of(criteriaContext.getCriteriaBuilder().or(predicates.toArray(new Predicate[0])));
+		});
 	}
 	
 	protected <U> Optional<Predicate> handleCodedConcept(OpenmrsFhirCriteriaContext<Obs, U> criteriaContext,
@@ -297,26 +485,20 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 	protected <U> Optional<Predicate> handleConceptClass(OpenmrsFhirCriteriaContext<Obs, U> criteriaContext,
 	        TokenAndListParam category) {
 		Join<?, ?> conceptJoin = criteriaContext.addJoin("concept", "c");
-		Join<?, ?> conceptClassJoin = criteriaContext.addJoin(conceptJoin, "conceptClass", "cc");
+		String idProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptClass.class);
 		
 		return handleAndListParam(criteriaContext.getCriteriaBuilder(), category, (param) -> {
 			if (param.getValue() == null) {
 				return Optional.empty();
 			}
 			
-			OpenmrsFhirCriteriaSubquery<FhirObservationCategoryMap, ?> subqueryContext = criteriaContext
-			        .addSubquery(FhirObservationCategoryMap.class, Long.class);
-			Join<?, ?> conceptClassSubqueryJoin = subqueryContext.addJoin("conceptClass", "ocm");
-			
-			String idProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptClass.class);
-			
-			subqueryContext.setProjection(conceptClassSubqueryJoin.get(idProperty));
-			
-			subqueryContext.addPredicate(subqueryContext.getCriteriaBuilder()
-			        .equal(subqueryContext.getRoot().get("observationCategory"), param.getValue()));
+			// the category map is resolved from an in-memory snapshot so we can use a literal list instead of a subquery
+			Set<Integer> conceptClassIds = categoryMap.getConceptClassIds(param.getValue());
+			if (conceptClassIds.isEmpty()) {
+				return Optional.of(criteriaContext.getCriteriaBuilder().disjunction());
+			}
 			
-			return Optional.of(criteriaContext.getCriteriaBuilder().in(conceptClassJoin.get(idProperty))
-			        .value(subqueryContext.finalizeQuery()));
+			return Optional.of(conceptJoin.get("conceptClass").get(idProperty).in(conceptClassIds));
 		});
 	}
 	
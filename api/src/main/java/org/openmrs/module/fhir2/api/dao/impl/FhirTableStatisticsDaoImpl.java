@@ -0,0 +1,98 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+import javax.persistence.PersistenceException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openmrs.module.fhir2.api.dao.FhirTableStatisticsDao;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Provides the database's own estimates of the number of rows in the table an entity is stored in.
+ * These come from the statistics the database keeps for its query planner, so they are cheap to read
+ * but only approximate. Estimates are available on MySQL, MariaDB and PostgreSQL and are cached for
+ * ten minutes; on other databases, no estimate is returned.
+ */
+@Slf4j
+@Component
+public class FhirTableStatisticsDaoImpl extends BaseDao implements FhirTableStatisticsDao {
+	
+	private static final String MYSQL_ROW_ESTIMATE = "select table_rows from information_schema.tables "
+	        + "where table_schema = database() and table_name = :tableName";
+	
+	private static final String POSTGRESQL_ROW_ESTIMATE = "select c.reltuples from pg_class c "
+	        + "join pg_namespace n on n.oid = c.relnamespace where n.nspname = current_schema() and c.relname = :tableName";
+	
+	private final Cache<Class<?>, Optional<Long>> estimates = CacheBuilder.newBuilder()
+	        .expireAfterWrite(10, TimeUnit.MINUTES).build();
+	
+	@Override
+	@Transactional(readOnly = true)
+	public Long getEstimatedRowCount(@Nonnull Class<?> entityClass) {
+		Optional<Long> result = estimates.getIfPresent(entityClass);
+		if (result == null) {
+			result = Optional.ofNullable(loadEstimatedRowCount(entityClass));
+			estimates.put(entityClass, result);
+		}
+		
+		return result.orElse(null);
+	}
+	
+	private Long loadEstimatedRowCount(Class<?> entityClass) {
+		SessionFactoryImplementor sessionFactory = getSessionFactory().unwrap(SessionFactoryImplementor.class);
+		
+		String query;
+		Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+		if (dialect instanceof MySQLDialect) {
+			query = MYSQL_ROW_ESTIMATE;
+		} else if (dialect instanceof PostgreSQL81Dialect) {
+			query = POSTGRESQL_ROW_ESTIMATE;
+		} else {
+			return null;
+		}
+		
+		try {
+			EntityPersister persister = sessionFactory.getMetamodel().entityPersister(entityClass);
+			if (!(persister instanceof AbstractEntityPersister)) {
+				return null;
+			}
+			
+			List<?> rows = sessionFactory.getCurrentSession().createNativeQuery(query)
+			        .setParameter("tableName", ((AbstractEntityPersister) persister).getTableName()).getResultList();
+			if (rows.isEmpty() || !(rows.get(0) instanceof Number)) {
+				return null;
+			}
+			
+			// PostgreSQL reports -1 for tables which have never been analyzed
+			long estimate = ((Number) rows.get(0)).longValue();
+			return estimate < 0 ? null : estimate;
+		}
+		catch (HibernateException | PersistenceException e) {
+			log.debug("Unable to estimate the number of rows for {}", entityClass, e);
+			return null;
+		}
+	}
+}
@@ -26,9 +26,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -55,10 +58,12 @@ import org.hl7.fhir.r4.model.Location;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.codesystems.AdministrativeGender;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptSource;
 import org.openmrs.Person;
 import org.openmrs.module.fhir2.api.dao.impl.BaseDao;
+import org.openmrs.module.fhir2.api.dao.impl.FhirConceptSourceIndexDaoImpl;
 import org.openmrs.module.fhir2.api.util.LocalDateTimeFactory;
-import org.openmrs.module.fhir2.model.FhirConceptSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
@@ -115,6 +120,10 @@ public class FhirSearchQueryHelper extends BaseDao {
 	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
 	private LocalDateTimeFactory localDateTimeFactory;
 	
+	@Getter(value = AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptSourceIndexDaoImpl conceptSourceIndex;
+	
 	// ========== Status Conversion ==========
 	
 	public TokenAndListParam convertStringStatusToBoolean(TokenAndListParam statusParam) {
@@ -322,14 +331,44 @@ public class FhirSearchQueryHelper extends BaseDao {
 				
 				return Optional.of(criteriaContext.getCriteriaBuilder().or(inConceptId, inUuid));
 			} else {
-				Join<?, ?> conceptMapAliasJoin = criteriaContext.addJoin(conceptAlias, "conceptMappings", conceptMapAlias);
-				criteriaContext.addJoin(conceptMapAliasJoin, "conceptReferenceTerm", conceptReferenceTermAlias);
+				// resolving the codes up front keeps the mapping tables out of the main query
+				List<Integer> conceptIds = getConceptIdsForCodes(system, tokensToList(tokens));
+				if (conceptIds.isEmpty()) {
+					return Optional.of(criteriaContext.getCriteriaBuilder().disjunction());
+				}
 				
-				return handleQueryForSystem(criteriaContext, system, tokensToList(tokens), conceptReferenceTermAlias);
+				return Optional.of(conceptAlias.get("conceptId").in(conceptIds));
 			}
 		});
 	}
 	
+	/**
+	 * Finds the concepts mapped to any of the given codes in the code system identified by the given
+	 * URL
+	 *
+	 * @param system the URL of the code system
+	 * @param codes the codes to look for
+	 * @return the ids of all matching concepts
+	 */
+	protected List<Integer> getConceptIdsForCodes(@Nonnull String system, @Nonnull List<String> codes) {
+		Set<Integer> conceptSourceIds = conceptSourceIndex.getConceptSourceIds(system);
+		if (conceptSourceIds.isEmpty() || codes.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		OpenmrsFhirCriteriaContext<ConceptMap, Integer> criteriaContext = createCriteriaContext(ConceptMap.class,
+		    Integer.class);
+		Join<?, ?> conceptReferenceTermJoin = criteriaContext.addJoin("conceptReferenceTerm", "crt");
+		String conceptSourceIdProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptSource.class);
+		
+		criteriaContext.addPredicate(
+		    conceptReferenceTermJoin.get("conceptSource").get(conceptSourceIdProperty).in(conceptSourceIds));
+		criteriaContext.addPredicate(conceptReferenceTermJoin.get("code").in(codes));
+		
+		return criteriaContext.getEntityManager().createQuery(criteriaContext.finalizeQuery()
+		        .select(criteriaContext.getRoot().get("concept").get("conceptId")).distinct(true)).getResultList();
+	}
+	
 	// ========== Date Handling ==========
 	
 	/**
@@ -777,6 +816,23 @@ public class FhirSearchQueryHelper extends BaseDao {
 	 */
 	public <T> Optional<Predicate> handleQuantity(BaseFhirCriteriaHolder<T> criteriaContext, String propertyName,
 	        QuantityParam quantityParam) {
+		return handleQuantity(criteriaContext, propertyName, quantityParam, UnaryOperator.identity());
+	}
+	
+	/**
+	 * A handler for a {@link QuantityParam} where the property is stored in different units than those
+	 * of the search. The bounds of the search are computed in the units of the search and then
+	 * converted, so that the precision implied by the search value is preserved.
+	 *
+	 * @param criteriaContext the active {@link BaseFhirCriteriaHolder} for the current query
+	 * @param propertyName the name of the property in the query to use
+	 * @param quantityParam the {@link QuantityParam} to handle
+	 * @param conversion an order-preserving conversion from the units of the search to the units of the
+	 *            property
+	 * @return a {@link Predicate} to be added to the query for the indicated quantity parameter
+	 */
+	public <T> Optional<Predicate> handleQuantity(BaseFhirCriteriaHolder<T> criteriaContext, String propertyName,
+	        QuantityParam quantityParam, @Nonnull UnaryOperator<BigDecimal> conversion) {
 		if (quantityParam == null) {
 			return Optional.empty();
 		}
@@ -788,21 +844,21 @@ public class FhirSearchQueryHelper extends BaseDao {
 			
 			BigDecimal approxRange = APPROX_RANGE.multiply(value);
 			if (dotIdx == -1) {
-				double lowerBound = value.subtract(approxRange).doubleValue();
-				double upperBound = value.add(approxRange).doubleValue();
+				double lowerBound = conversion.apply(value.subtract(approxRange)).doubleValue();
+				double upperBound = conversion.apply(value.add(approxRange)).doubleValue();
 				return Optional.of(criteriaContext.getCriteriaBuilder().between(criteriaContext.getRoot().get(propertyName),
 				    lowerBound, upperBound));
 			} else {
 				int precision = plainString.length() - (dotIdx);
 				double mul = Math.pow(10, -precision);
 				double val = mul * 5.0d;
-				double lowerBound = value.subtract(new BigDecimal(val)).doubleValue();
-				double upperBound = value.add(new BigDecimal(val)).doubleValue();
+				double lowerBound = conversion.apply(value.subtract(new BigDecimal(val))).doubleValue();
+				double upperBound = conversion.apply(value.add(new BigDecimal(val))).doubleValue();
 				return Optional.of(criteriaContext.getCriteriaBuilder().between(criteriaContext.getRoot().get(propertyName),
 				    lowerBound, upperBound));
 			}
 		} else {
-			double val = value.doubleValue();
+			double val = conversion.apply(value).doubleValue();
 			switch (quantityParam.getPrefix()) {
 				case EQUAL:
 					return Optional.of(
@@ -885,17 +941,18 @@ public class FhirSearchQueryHelper extends BaseDao {
 	
 	public <V, U> Optional<Predicate> handleQueryForSystem(OpenmrsFhirCriteriaContext<V, U> criteriaContext, String system,
 	        List<String> codes, String conceptReferenceTermAlias) {
-		OpenmrsFhirCriteriaSubquery<FhirConceptSource, String> conceptSourceSubquery = criteriaContext
-		        .addSubquery(FhirConceptSource.class, String.class);
-		conceptSourceSubquery.addPredicate(
-		    conceptSourceSubquery.getCriteriaBuilder().equal(conceptSourceSubquery.getRoot().get("url"), system));
-		conceptSourceSubquery.getSubquery().select(conceptSourceSubquery.getRoot().get("conceptSource"));
-		
-		return criteriaContext.getJoin(conceptReferenceTermAlias)
-		        .map((conceptReferenceTermJoin) -> criteriaContext.getCriteriaBuilder().and(
-		            criteriaContext.getCriteriaBuilder().in(conceptReferenceTermJoin.get("conceptSource"))
-		                    .value(conceptSourceSubquery.finalizeQuery()),
-		            criteriaContext.getCriteriaBuilder().in(conceptReferenceTermJoin.get("code")).value(codes)));
+		Set<Integer> conceptSourceIds = conceptSourceIndex.getConceptSourceIds(system);
+		String conceptSourceIdProperty = getIdPropertyName(criteriaContext.getEntityManager(), ConceptSource.class);
+		
+		return criteriaContext.getJoin(conceptReferenceTermAlias).map((conceptReferenceTermJoin) -> {
+			if (conceptSourceIds.isEmpty()) {
+				return criteriaContext.getCriteriaBuilder().disjunction();
+			}
+			
+			return criteriaContext.getCriteriaBuilder().and(
+			    conceptReferenceTermJoin.get("conceptSource").get(conceptSourceIdProperty).in(conceptSourceIds),
+			    criteriaContext.getCriteriaBuilder().in(conceptReferenceTermJoin.get("code")).value(codes));
+		});
 	}
 	
 	// ========== String Matching ==========
@@ -10,6 +10,8 @@
 package org.openmrs.module.fhir2.api.impl;
 
 import static lombok.AccessLevel.PROTECTED;
+import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getLastUpdated;
+import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getVersionId;
 
 import javax.annotation.Nonnull;
 
@@ -22,6 +24,7 @@ import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.PatchTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
@@ -40,6 +43,7 @@ import org.openmrs.module.fhir2.api.FhirService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.translators.OpenmrsFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.UpdatableOpenmrsTranslator;
+import org.openmrs.module.fhir2.api.util.FhirConditionalRead;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.openmrs.module.fhir2.api.util.JsonPatchUtils;
 import org.openmrs.module.fhir2.api.util.XmlPatchUtils;
@@ -85,6 +89,10 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 		} else if (isVoided(openmrsObj) || isRetired(openmrsObj)) {
 			throw new ResourceGoneException(
 			        "Resource of type " + resourceClass.getSimpleName() + " with ID " + uuid + " is gone/deleted");
+		} else if (FhirConditionalRead.isNotModified(resourceClass.getSimpleName(), uuid, getVersionId(openmrsObj),
+		    getLastUpdated(openmrsObj))) {
+			// the client already has the current version, so there is no need to translate it
+			throw new NotModifiedException("Not Modified");
 		}
 		
 		return getTranslator().toFhirResource(openmrsObj);
@@ -23,6 +23,7 @@ import org.openmrs.Duration;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirConceptSourceService;
 import org.openmrs.module.fhir2.api.dao.FhirConceptSourceDao;
+import org.openmrs.module.fhir2.api.dao.impl.FhirConceptSourceIndexDaoImpl;
 import org.openmrs.module.fhir2.model.FhirConceptSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -36,6 +37,10 @@ public class FhirConceptSourceServiceImpl implements FhirConceptSourceService {
 	@Setter(value = AccessLevel.PROTECTED, onMethod_ = { @Autowired, @VisibleForTesting })
 	private FhirConceptSourceDao dao;
 	
+	@Getter(value = AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = { @Autowired, @VisibleForTesting })
+	private FhirConceptSourceIndexDaoImpl conceptSourceIndex;
+	
 	@Override
 	@Cacheable(value = "fhir2GetFhirConceptSources")
 	public Collection<FhirConceptSource> getFhirConceptSources() {
@@ -52,9 +57,18 @@ public class FhirConceptSourceServiceImpl implements FhirConceptSourceService {
 		return dao.getFhirConceptSourceByConceptSource(conceptSource);
 	}
 	
+	@Override
+	public Optional<String> getFhirConceptSourceUrl(@Nonnull ConceptSource conceptSource) {
+		if (conceptSource == null || conceptSource.getUuid() == null) {
+			return Optional.empty();
+		}
+		
+		return conceptSourceIndex.getUrl(conceptSource.getUuid());
+	}
+	
 	@Override
 	public String getUrlForConceptSource(@Nonnull ConceptSource conceptSource) {
-		return getFhirConceptSource(conceptSource).map(FhirConceptSource::getUrl)
+		return getFhirConceptSourceUrl(conceptSource)
 		        .orElseGet(() -> Duration.SNOMED_CT_CONCEPT_SOURCE_HL7_CODE.equals(conceptSource.getHl7Code())
 		                ? FhirConstants.SNOMED_SYSTEM_URI
 		                : null);
@@ -12,13 +12,25 @@ package org.openmrs.module.fhir2.api.impl;
 import static lombok.AccessLevel.PROTECTED;
 import static org.openmrs.module.fhir2.FhirConstants.TITLE_SEARCH_HANDLER;
 
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.r4.model.ValueSet;
 import org.openmrs.Concept;
 import org.openmrs.module.fhir2.api.FhirValueSetService;
+import org.openmrs.module.fhir2.api.cache.FhirValueSetExpansionCache;
 import org.openmrs.module.fhir2.api.dao.FhirConceptDao;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
@@ -46,6 +58,61 @@ public class FhirValueSetServiceImpl extends BaseFhirService<ValueSet, Concept>
 	@Setter(value = PROTECTED, onMethod_ = @Autowired)
 	private SearchQuery<Concept, ValueSet, FhirConceptDao, ValueSetTranslator, SearchQueryInclude<ValueSet>> searchQuery;
 	
+	@Getter(value = PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirValueSetExpansionCache expansionCache;
+	
+	@Override
+	public ValueSet expand(@Nonnull String uuid, String filter, Integer offset, Integer count) {
+		if (offset != null && offset < 0) {
+			throw new InvalidRequestException("The offset of an expansion cannot be negative");
+		}
+		
+		if (count != null && count < 0) {
+			throw new InvalidRequestException("The count of an expansion cannot be negative");
+		}
+		
+		Concept conceptSet = dao.get(uuid);
+		if (conceptSet == null || !Boolean.TRUE.equals(conceptSet.getSet())) {
+			throw resourceNotFound(uuid);
+		}
+		
+		List<ValueSet.ValueSetExpansionContainsComponent> contains = expansionCache.get(conceptSet,
+		    translator::toExpansionContains);
+		
+		if (StringUtils.isNotBlank(filter)) {
+			contains = contains.stream().filter(c -> StringUtils.containsIgnoreCase(c.getDisplay(), filter)
+			        || StringUtils.containsIgnoreCase(c.getCode(), filter)).collect(Collectors.toList());
+		}
+		
+		int start = Math.min(offset == null ? 0 : offset, contains.size());
+		int end = count == null ? contains.size() : (int) Math.min((long) start + count, contains.size());
+		
+		// the expansion replaces the compose, so there is no need to translate every member of the set again
+		ValueSet valueSet = translator.toFhirResourceSummary(conceptSet);
+		ValueSet.ValueSetExpansionComponent expansion = valueSet.getExpansion();
+		expansion.setIdentifier("urn:uuid:" + UUID.randomUUID());
+		expansion.setTimestamp(new Date());
+		expansion.setTotal(contains.size());
+		expansion.setOffset(start);
+		
+		if (StringUtils.isNotBlank(filter)) {
+			expansion.addParameter().setName("filter").setValue(new StringType(filter));
+		}
+		
+		expansion.addParameter().setName("offset").setValue(new IntegerType(start));
+		if (count != null) {
+			expansion.addParameter().setName("count").setValue(new IntegerType(count));
+		}
+		
+		// the cached entries are shared between requests, so we only ever hand out copies
+		for (ValueSet.ValueSetExpansionContainsComponent contained : contains.subList(start, end)) {
+			expansion.addContains(contained.copy());
+		}
+		
+		return valueSet;
+	}
+	
 	@Override
 	public IBundleProvider searchForValueSets(StringAndListParam title) {
 		SearchParameterMap theParams = new SearchParameterMap();
@@ -0,0 +1,233 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long each request spends in each {@link FhirMetricsPhase}, which SQL statements it
+ * runs and how many resources it returns, and passes these to every enabled
+ * {@link FhirMetricsRegistry}. Nothing is recorded unless at least one registry is enabled; in that
+ * case, each of the methods of this class returns after reading a single volatile field. <br/>
+ * Like {@link FhirGlobalPropertyHolder}, the state of this class is static so that it can be used
+ * from DAOs, translators and interceptors without injecting it everywhere; the Spring bean looks up
+ * the registries once the application context has been refreshed.
+ */
+@Slf4j
+@Component
+public class FhirMetrics implements ApplicationContextAware, ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+	
+	private static final ThreadLocal<FhirRequestMetrics> currentRequest = new ThreadLocal<>();
+	
+	private static volatile boolean enabled = false;
+	
+	private static volatile List<FhirMetricsRegistry> registries = Collections.emptyList();
+	
+	private ApplicationContext applicationContext;
+	
+	/**
+	 * Starts recording the metrics of a request on the current thread
+	 *
+	 * @param resourceType the type of resource the request is for, if any
+	 * @param operation the operation requested, e.g., "read" or "$everything"
+	 */
+	public static void beginRequest(String resourceType, @Nonnull String operation) {
+		if (!enabled) {
+			return;
+		}
+		
+		currentRequest.set(new FhirRequestMetrics(resourceType, operation));
+	}
+	
+	/**
+	 * Ends the recording started by {@link #beginRequest(String, String)} and passes the metrics to the
+	 * registries
+	 */
+	public static void endRequest() {
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics == null) {
+			return;
+		}
+		
+		currentRequest.remove();
+		metrics.end();
+		
+		for (FhirMetricsRegistry registry : registries) {
+			try {
+				if (registry.isEnabled()) {
+					registry.record(metrics);
+				}
+			}
+			catch (RuntimeException e) {
+				log.error("Exception caught while recording metrics in {}", registry, e);
+			}
+		}
+	}
+	
+	/**
+	 * Starts timing a phase of the current request. The returned value must be passed to
+	 * {@link #stopTimer(FhirMetricsPhase, long)}, normally in a finally block. If another phase is
+	 * already being timed, the time is attributed to that phase instead.
+	 *
+	 * @param phase the phase to time
+	 * @return the start of the phase, or -1 if it is not timed
+	 */
+	public static long startTimer(@Nonnull FhirMetricsPhase phase) {
+		if (!enabled) {
+			return -1;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics == null || !metrics.startPhase(phase)) {
+			return -1;
+		}
+		
+		return System.nanoTime();
+	}
+	
+	public static void stopTimer(@Nonnull FhirMetricsPhase phase, long start) {
+		if (start < 0) {
+			return;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics != null) {
+			metrics.endPhase(phase, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Counts a SQL statement prepared by the current thread
+	 *
+	 * @param sql the SQL of the statement
+	 */
+	public static void statementPrepared(String sql) {
+		if (!enabled) {
+			return;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics != null) {
+			metrics.statementPrepared(sql);
+		}
+	}
+	
+	/**
+	 * @param searchParameters the parameters of the search performed by the current request
+	 */
+	public static void searchPerformed(@Nonnull SearchParameterMap searchParameters) {
+		if (!enabled) {
+			return;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics != null) {
+			metrics.searchPerformed(searchParameters);
+		}
+	}
+	
+	/**
+	 * @param total the number of resources matching the search performed by the current request
+	 */
+	public static void totalCounted(int total) {
+		if (!enabled) {
+			return;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics != null) {
+			metrics.totalCounted(total);
+		}
+	}
+	
+	/**
+	 * @param count the number of resources to add to those returned by the current request
+	 */
+	public static void addResults(int count) {
+		if (!enabled) {
+			return;
+		}
+		
+		FhirRequestMetrics metrics = currentRequest.get();
+		if (metrics != null) {
+			metrics.addResults(count);
+		}
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @return the snapshots of all registries, keyed by the name of the registry's class
+	 */
+	public static Map<String, Object> getSnapshot() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for (FhirMetricsRegistry registry : registries) {
+			result.put(registry.getClass().getSimpleName(), registry.getSnapshot());
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public void setApplicationContext(@Nonnull ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+	
+	/**
+	 * Re-evaluates whether any registry is enabled
+	 */
+	public static void refresh() {
+		boolean anyEnabled = false;
+		for (FhirMetricsRegistry registry : registries) {
+			try {
+				anyEnabled |= registry.isEnabled();
+			}
+			catch (RuntimeException e) {
+				log.error("Exception caught while checking whether {} is enabled", registry, e);
+			}
+		}
+		
+		enabled = anyEnabled;
+	}
+	
+	@Override
+	public void onApplicationEvent(@Nonnull ContextRefreshedEvent event) {
+		if (applicationContext != null && event.getApplicationContext() == applicationContext) {
+			registries = new ArrayList<>(
+			        applicationContext.getBeansOfType(FhirMetricsRegistry.class, false, false).values());
+			refresh();
+		}
+	}
+	
+	@Override
+	public void destroy() {
+		enabled = false;
+		registries = Collections.emptyList();
+	}
+}
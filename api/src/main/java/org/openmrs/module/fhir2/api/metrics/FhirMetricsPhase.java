@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+/**
+ * The parts of processing a request whose duration is recorded by {@link FhirMetrics}
+ */
+public enum FhirMetricsPhase {
+	/**
+	 * Fetching the OpenMRS objects matching a search
+	 */
+	QUERY,
+	/**
+	 * Counting the OpenMRS objects matching a search
+	 */
+	COUNT,
+	/**
+	 * Translating OpenMRS objects into FHIR resources
+	 */
+	TRANSLATION,
+	/**
+	 * Loading the resources requested by _include and _revinclude
+	 */
+	INCLUDES,
+	/**
+	 * Encoding and writing the response
+	 */
+	ENCODING
+}
@@ -0,0 +1,49 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Implemented by Spring beans which keep the metrics recorded for each request, e.g., to aggregate
+ * them in memory or to forward them to a monitoring system. Every registry in the application
+ * context receives every request's metrics.
+ */
+public interface FhirMetricsRegistry {
+	
+	/**
+	 * Called once a request has been processed. Implementations should return quickly, as this is
+	 * called on the thread processing the request.
+	 *
+	 * @param metrics the metrics recorded for the request
+	 */
+	void record(@Nonnull FhirRequestMetrics metrics);
+	
+	/**
+	 * Metrics are only recorded while at least one registry is enabled. Registries whose configuration
+	 * changes should call {@link FhirMetrics#refresh()}.
+	 *
+	 * @return true if this registry currently wants to receive metrics
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+	
+	/**
+	 * @return the metrics held by this registry, as a structure of maps, lists and simple values which
+	 *         can be serialized as JSON
+	 */
+	default Map<String, Object> getSnapshot() {
+		return Collections.emptyMap();
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import lombok.Getter;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+/**
+ * The measurements taken while processing a single request. Instances are only ever used by the
+ * thread processing the request, until they are passed to the {@link FhirMetricsRegistry}s.
+ */
+public class FhirRequestMetrics {
+	
+	private static final int MAX_CAPTURED_STATEMENTS = 25;
+	
+	@Getter
+	private final String resourceType;
+	
+	@Getter
+	private final String operation;
+	
+	private final long startNanos;
+	
+	@Getter
+	private long durationNanos = -1;
+	
+	private final long[] phaseNanos = new long[FhirMetricsPhase.values().length];
+	
+	private final int[] phaseStatements = new int[FhirMetricsPhase.values().length];
+	
+	@Getter
+	private int statements = 0;
+	
+	@Getter
+	private int results = 0;
+	
+	@Getter
+	private Integer total = null;
+	
+	/**
+	 * The parameters of the search the request performed, if any. Searches performed to load included
+	 * resources are not recorded.
+	 */
+	@Getter
+	private SearchParameterMap searchParameters = null;
+	
+	// the SQL is captured as Hibernate generated it, so it contains placeholders rather than values
+	private Set<String> sql = null;
+	
+	private FhirMetricsPhase activePhase = null;
+	
+	FhirRequestMetrics(String resourceType, String operation) {
+		this.resourceType = resourceType;
+		this.operation = operation;
+		this.startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * @param phase the phase of processing
+	 * @return the time spent in the supplied phase, in nanoseconds
+	 */
+	public long getPhaseNanos(@Nonnull FhirMetricsPhase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+	
+	/**
+	 * @param phase the phase of processing
+	 * @return the number of SQL statements prepared during the supplied phase
+	 */
+	public int getPhaseStatements(@Nonnull FhirMetricsPhase phase) {
+		return phaseStatements[phase.ordinal()];
+	}
+	
+	/**
+	 * @return the distinct SQL statements prepared during the request, up to a limit
+	 */
+	public Set<String> getSql() {
+		return sql == null ? Collections.emptySet() : Collections.unmodifiableSet(sql);
+	}
+	
+	boolean startPhase(FhirMetricsPhase phase) {
+		// phases started while another is active are attributed to the outer phase
+		if (activePhase != null) {
+			return false;
+		}
+		
+		activePhase = phase;
+		return true;
+	}
+	
+	void endPhase(FhirMetricsPhase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+		activePhase = null;
+	}
+	
+	void statementPrepared(String statement) {
+		statements++;
+		if (activePhase != null) {
+			phaseStatements[activePhase.ordinal()]++;
+		}
+		
+		if (statement != null) {
+			if (sql == null) {
+				sql = new LinkedHashSet<>();
+			}
+			
+			if (sql.size() < MAX_CAPTURED_STATEMENTS) {
+				sql.add(statement);
+			}
+		}
+	}
+	
+	void searchPerformed(SearchParameterMap searchParameters) {
+		if (this.searchParameters == null) {
+			this.searchParameters = searchParameters;
+		}
+	}
+	
+	void totalCounted(int total) {
+		if (this.total == null) {
+			this.total = total;
+		}
+	}
+	
+	void addResults(int count) {
+		results += count;
+	}
+	
+	void end() {
+		durationNanos = System.nanoTime() - startNanos;
+	}
+}
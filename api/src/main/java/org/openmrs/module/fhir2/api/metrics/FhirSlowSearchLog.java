@@ -0,0 +1,249 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.openmrs.module.fhir2.FhirConstants.SLOW_SEARCH_THRESHOLD_MILLIS;
+
+import javax.annotation.Nonnull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.BaseParamWithPrefix;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs each search which takes at least fhir2.slowSearchThresholdMillis as a single JSON document at
+ * WARN level to the {@code org.openmrs.module.fhir2.slowSearch} logger, which can be routed to its own
+ * rolling file in the log4j2 configuration. Each entry describes the shape of the search, i.e., the
+ * search handlers, parameter types, modifiers, prefixes and the sizes of OR lists, the sort and the
+ * includes, but never the values searched for. It also holds the SQL the search ran, which Hibernate
+ * generates with placeholders for values, the time spent in each {@link FhirMetricsPhase} and the
+ * number of resources matched and returned. <br/>
+ * Entries are written by a single background thread. If the thread falls behind, further entries are
+ * dropped rather than slowing down requests.
+ */
+@Slf4j
+@Component
+public class FhirSlowSearchLog implements FhirMetricsRegistry, InitializingBean, DisposableBean {
+	
+	private static final Logger slowSearchLog = LoggerFactory.getLogger("org.openmrs.module.fhir2.slowSearch");
+	
+	private static final int MAX_PENDING_ENTRIES = 1000;
+	
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	
+	private final Consumer<String> configurationListener = globalProperty -> FhirMetrics.refresh();
+	
+	private final LongAdder written = new LongAdder();
+	
+	private final LongAdder dropped = new LongAdder();
+	
+	private final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+	        new ArrayBlockingQueue<>(MAX_PENDING_ENTRIES),
+	        new ThreadFactoryBuilder().setNameFormat("fhir2-slow-search-log").setDaemon(true).build(),
+	        (task, executor) -> dropped.increment());
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(configurationListener, SLOW_SEARCH_THRESHOLD_MILLIS);
+	}
+	
+	@Override
+	public void destroy() throws InterruptedException {
+		FhirGlobalPropertyHolder.removeListener(configurationListener);
+		writer.shutdown();
+		writer.awaitTermination(5, TimeUnit.SECONDS);
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return getThresholdMillis() > 0;
+	}
+	
+	@Override
+	public void record(@Nonnull FhirRequestMetrics metrics) {
+		SearchParameterMap searchParameters = metrics.getSearchParameters();
+		int thresholdMillis = getThresholdMillis();
+		if (searchParameters == null || thresholdMillis <= 0
+		        || TimeUnit.NANOSECONDS.toMillis(metrics.getDurationNanos()) < thresholdMillis) {
+			return;
+		}
+		
+		// the entry is built here, as the search parameters belong to the request's thread
+		Map<String, Object> entry = createEntry(metrics, searchParameters);
+		writer.execute(() -> write(entry));
+	}
+	
+	@Override
+	public Map<String, Object> getSnapshot() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("thresholdMillis", getThresholdMillis());
+		result.put("written", written.sum());
+		result.put("dropped", dropped.sum());
+		return result;
+	}
+	
+	/**
+	 * Describes the supplied search parameters without any of the values searched for
+	 *
+	 * @param searchParameters the search parameters
+	 * @return the shape of each parameter, keyed by search handler
+	 */
+	static Map<String, Object> describeParameters(@Nonnull SearchParameterMap searchParameters) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		for (Map.Entry<String, List<PropParam<?>>> entry : searchParameters.getParameters()) {
+			List<String> shapes = new ArrayList<>(entry.getValue().size());
+			for (PropParam<?> propParam : entry.getValue()) {
+				String shape = describeValue(propParam.getParam());
+				shapes.add(propParam.getPropertyName() == null ? shape : propParam.getPropertyName() + "=" + shape);
+			}
+			
+			result.put(entry.getKey(), shapes);
+		}
+		
+		return result;
+	}
+	
+	static List<String> describeSort(SortSpec sortSpec) {
+		List<String> result = new ArrayList<>();
+		for (SortSpec sort = sortSpec; sort != null; sort = sort.getChain()) {
+			result.add(sort.getParamName() + " " + (sort.getOrder() == null ? "asc" : sort.getOrder().name().toLowerCase()));
+		}
+		
+		return result;
+	}
+	
+	private static String describeValue(Object value) {
+		if (value instanceof IQueryParameterAnd) {
+			StringJoiner result = new StringJoiner(" AND ");
+			for (IQueryParameterOr<?> or : ((IQueryParameterAnd<?>) value).getValuesAsQueryTokens()) {
+				result.add(describeOr(or));
+			}
+			
+			return result.toString();
+		} else if (value instanceof IQueryParameterOr) {
+			return describeOr((IQueryParameterOr<?>) value);
+		} else if (value instanceof IQueryParameterType) {
+			return describeType((IQueryParameterType) value);
+		} else if (value instanceof Include) {
+			Include include = (Include) value;
+			return include.getValue() + (include.isRecurse() ? ":iterate" : "");
+		} else if (value instanceof Collection) {
+			StringJoiner result = new StringJoiner(", ", "[", "]");
+			for (Object element : (Collection<?>) value) {
+				result.add(describeValue(element));
+			}
+			
+			return result.toString();
+		}
+		
+		return value == null ? "null" : value.getClass().getSimpleName();
+	}
+	
+	private static String describeOr(IQueryParameterOr<?> or) {
+		// an OR list is described by the distinct shapes of its values and its size
+		List<? extends IQueryParameterType> values = or.getValuesAsQueryTokens();
+		Set<String> shapes = new LinkedHashSet<>();
+		for (IQueryParameterType type : values) {
+			shapes.add(describeType(type));
+		}
+		
+		return String.join("|", shapes) + "[" + values.size() + "]";
+	}
+	
+	private static String describeType(IQueryParameterType type) {
+		StringBuilder result = new StringBuilder(type.getClass().getSimpleName());
+		if (type instanceof BaseParamWithPrefix && ((BaseParamWithPrefix<?>) type).getPrefix() != null) {
+			result.append(' ').append(((BaseParamWithPrefix<?>) type).getPrefix().getValue());
+		}
+		
+		if (Boolean.TRUE.equals(type.getMissing())) {
+			result.append(":missing");
+		} else if (type.getQueryParameterQualifier() != null) {
+			result.append(type.getQueryParameterQualifier());
+		}
+		
+		return result.toString();
+	}
+	
+	private static Map<String, Object> createEntry(FhirRequestMetrics metrics, SearchParameterMap searchParameters) {
+		Map<String, Object> phases = new LinkedHashMap<>();
+		for (FhirMetricsPhase phase : FhirMetricsPhase.values()) {
+			long nanos = metrics.getPhaseNanos(phase);
+			if (nanos > 0) {
+				Map<String, Object> phaseEntry = new LinkedHashMap<>();
+				phaseEntry.put("millis", TimeUnit.NANOSECONDS.toMillis(nanos));
+				phaseEntry.put("statements", metrics.getPhaseStatements(phase));
+				phases.put(phase.name().toLowerCase(), phaseEntry);
+			}
+		}
+		
+		Map<String, Object> entry = new LinkedHashMap<>();
+		entry.put("timestamp", Instant.now().toString());
+		entry.put("resourceType", metrics.getResourceType());
+		entry.put("operation", metrics.getOperation());
+		entry.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(metrics.getDurationNanos()));
+		entry.put("parameters", describeParameters(searchParameters));
+		entry.put("sort", describeSort(searchParameters.getSortSpec()));
+		entry.put("fromIndex", searchParameters.getFromIndex());
+		entry.put("toIndex", searchParameters.getToIndex());
+		entry.put("phases", phases);
+		entry.put("statements", metrics.getStatements());
+		entry.put("total", metrics.getTotal());
+		entry.put("results", metrics.getResults());
+		entry.put("sql", new ArrayList<>(metrics.getSql()));
+		return entry;
+	}
+	
+	private int getThresholdMillis() {
+		return FhirGlobalPropertyHolder.getConfiguration().getSlowSearchThresholdMillis();
+	}
+	
+	private void write(Map<String, Object> entry) {
+		try {
+			slowSearchLog.warn(objectMapper.writeValueAsString(entry));
+			written.increment();
+		}
+		catch (JsonProcessingException | RuntimeException e) {
+			dropped.increment();
+			log.warn("Exception caught while writing to the slow search log", e);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import org.hibernate.EmptyInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * A Hibernate interceptor which counts and captures the SQL statements prepared while a request's
+ * metrics are being recorded. Like the {@link org.openmrs.module.fhir2.api.cache.FhirEntityChangeInterceptor},
+ * it is registered with the session factory by OpenMRS.
+ */
+@Component
+public class FhirStatementCountingInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@Override
+	public String onPrepareStatement(String sql) {
+		FhirMetrics.statementPrepared(sql);
+		return sql;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.openmrs.module.fhir2.FhirConstants.METRICS_ENABLED;
+
+import javax.annotation.Nonnull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aggregates the metrics of all requests since startup in memory, per resource type and operation.
+ * Durations are kept as histograms with fixed buckets, so that the memory used does not grow with
+ * the number of requests, and recording a request never takes a lock. This registry is enabled by
+ * the fhir2.metricsEnabled global property.
+ */
+@Component
+public class InMemoryFhirMetricsRegistry implements FhirMetricsRegistry, InitializingBean, DisposableBean {
+	
+	private static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+	        30000 };
+	
+	private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+	
+	private final Consumer<String> configurationListener = globalProperty -> FhirMetrics.refresh();
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(configurationListener, METRICS_ENABLED);
+	}
+	
+	@Override
+	public void destroy() {
+		FhirGlobalPropertyHolder.removeListener(configurationListener);
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return FhirGlobalPropertyHolder.getConfiguration().isMetricsEnabled();
+	}
+	
+	@Override
+	public void record(@Nonnull FhirRequestMetrics metrics) {
+		String key = (metrics.getResourceType() == null ? "system" : metrics.getResourceType()) + " "
+		        + metrics.getOperation();
+		operations.computeIfAbsent(key, k -> new OperationMetrics()).record(metrics);
+	}
+	
+	@Override
+	public Map<String, Object> getSnapshot() {
+		Map<String, Object> result = new TreeMap<>();
+		operations.forEach((key, value) -> result.put(key, value.getSnapshot()));
+		return result;
+	}
+	
+	private static final class OperationMetrics {
+		
+		private final Histogram latency = new Histogram();
+		
+		private final Histogram[] phaseLatencies = new Histogram[FhirMetricsPhase.values().length];
+		
+		private final Tally[] phaseStatements = new Tally[FhirMetricsPhase.values().length];
+		
+		private final Tally statements = new Tally();
+		
+		private final Tally results = new Tally();
+		
+		private OperationMetrics() {
+			for (int i = 0; i < phaseLatencies.length; i++) {
+				phaseLatencies[i] = new Histogram();
+				phaseStatements[i] = new Tally();
+			}
+		}
+		
+		private void record(FhirRequestMetrics metrics) {
+			latency.record(metrics.getDurationNanos());
+			statements.record(metrics.getStatements());
+			results.record(metrics.getResults());
+			
+			for (FhirMetricsPhase phase : FhirMetricsPhase.values()) {
+				long nanos = metrics.getPhaseNanos(phase);
+				// phases which did not occur would only skew the histogram towards 0
+				if (nanos > 0) {
+					phaseLatencies[phase.ordinal()].record(nanos);
+					phaseStatements[phase.ordinal()].record(metrics.getPhaseStatements(phase));
+				}
+			}
+		}
+		
+		private Map<String, Object> getSnapshot() {
+			Map<String, Object> phases = new LinkedHashMap<>();
+			for (FhirMetricsPhase phase : FhirMetricsPhase.values()) {
+				Histogram phaseLatency = phaseLatencies[phase.ordinal()];
+				if (phaseLatency.count.sum() > 0) {
+					Map<String, Object> phaseSnapshot = new LinkedHashMap<>();
+					phaseSnapshot.put("latency", phaseLatency.getSnapshot());
+					phaseSnapshot.put("statements", phaseStatements[phase.ordinal()].getSnapshot());
+					phases.put(phase.name().toLowerCase(), phaseSnapshot);
+				}
+			}
+			
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("latency", latency.getSnapshot());
+			result.put("phases", phases);
+			result.put("statements", statements.getSnapshot());
+			result.put("results", results.getSnapshot());
+			return result;
+		}
+	}
+	
+	private static final class Histogram {
+		
+		private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+		
+		private final LongAdder count = new LongAdder();
+		
+		private final LongAdder sumNanos = new LongAdder();
+		
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		
+		private Histogram() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+		
+		private void record(long nanos) {
+			long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+			int bucket = 0;
+			while (bucket < BUCKET_BOUNDS_MILLIS.length && millis >= BUCKET_BOUNDS_MILLIS[bucket]) {
+				bucket++;
+			}
+			
+			buckets[bucket].increment();
+			count.increment();
+			sumNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+		}
+		
+		private Map<String, Object> getSnapshot() {
+			Map<String, Long> bucketCounts = new LinkedHashMap<>();
+			for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+				bucketCounts.put("<" + BUCKET_BOUNDS_MILLIS[i] + "ms", buckets[i].sum());
+			}
+			bucketCounts.put(">=" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms",
+			    buckets[BUCKET_BOUNDS_MILLIS.length].sum());
+			
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("count", count.sum());
+			result.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(sumNanos.sum()));
+			result.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+			result.put("buckets", bucketCounts);
+			return result;
+		}
+	}
+	
+	private static final class Tally {
+		
+		private final LongAdder total = new LongAdder();
+		
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+		
+		private void record(long value) {
+			total.add(value);
+			max.accumulate(value);
+		}
+		
+		private Map<String, Object> getSnapshot() {
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("total", total.sum());
+			result.put("max", max.get());
+			return result;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.List;
+
+import org.openmrs.api.context.Context;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A serializable reference to a Spring bean, e.g., the dao a search runs against. Only the type of the
+ * bean is written; the bean itself is looked up again in the application context when the reference
+ * is resolved.
+ */
+final class ComponentReference implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Class<?> lookupType;
+	
+	private final Class<?> componentClass;
+	
+	private ComponentReference(Class<?> lookupType, Class<?> componentClass) {
+		this.lookupType = lookupType;
+		this.componentClass = componentClass;
+	}
+	
+	/**
+	 * @param component the bean to reference
+	 * @param baseType a type the bean is known to implement
+	 * @return a reference to the bean
+	 */
+	static ComponentReference of(Object component, Class<?> baseType) {
+		Class<?> componentClass = ClassUtils.getUserClass(AopUtils.getTargetClass(component));
+		if (componentClass.isInstance(component)) {
+			return new ComponentReference(componentClass, componentClass);
+		}
+		
+		// an interface-based proxy can only be found by the most specific interface it implements
+		Class<?> lookupType = baseType;
+		for (Class<?> candidate : ClassUtils.getAllInterfacesForClassAsSet(componentClass)) {
+			if (lookupType.isAssignableFrom(candidate) && candidate.isInstance(component)) {
+				lookupType = candidate;
+			}
+		}
+		
+		return new ComponentReference(lookupType, componentClass);
+	}
+	
+	/**
+	 * @return the referenced bean
+	 * @throws InvalidObjectException if no matching bean is registered
+	 */
+	Object resolve() throws InvalidObjectException {
+		List<?> components = Context.getRegisteredComponents(lookupType);
+		for (Object component : components) {
+			if (ClassUtils.getUserClass(AopUtils.getTargetClass(component)) == componentClass) {
+				return component;
+			}
+		}
+		
+		throw new InvalidObjectException("No component of type " + componentClass.getName() + " is registered");
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.google.common.reflect.TypeToken;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checks the estimated cost of each search against a budget before the search is run, so that a few
+ * unselective searches cannot tie up the database for everyone else. <br/>
+ * The budget is set by {@link FhirConstants#SEARCH_COST_BUDGET} as the number of rows a search may be
+ * expected to read, see {@link SearchCostEstimator}. Searches over budget are handled by the policies
+ * listed in {@link FhirConstants#SEARCH_COST_POLICY}:
+ * <ul>
+ * <li>{@code reject} fails the search with a 400 (Bad Request) asking the client to narrow it</li>
+ * <li>{@code throttle} lets only {@link FhirConstants#SEARCH_COST_THROTTLE_CONCURRENCY} expensive
+ * searches query the database at a time</li>
+ * <li>{@code skipTotal} does not count the matching resources, as if {@code _total=none} had been
+ * requested</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class SearchAdmissionControl implements InitializingBean, DisposableBean {
+	
+	private static final int DEFAULT_THROTTLE_CONCURRENCY = 2;
+	
+	enum Policy {
+		REJECT,
+		THROTTLE,
+		SKIP_TOTAL
+	}
+	
+	private final Map<Class<?>, Optional<Class<?>>> entityClasses = new ConcurrentHashMap<>();
+	
+	private final Consumer<String> configurationListener = property -> configure();
+	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private SearchCostEstimator searchCostEstimator;
+	
+	private volatile Configuration configuration = new Configuration(0, Collections.emptySet(),
+	        DEFAULT_THROTTLE_CONCURRENCY);
+	
+	@Override
+	public void afterPropertiesSet() {
+		FhirGlobalPropertyHolder.addListener(configurationListener, FhirConstants.SEARCH_COST_BUDGET,
+		    FhirConstants.SEARCH_COST_POLICY, FhirConstants.SEARCH_COST_THROTTLE_CONCURRENCY);
+		configure();
+	}
+	
+	@Override
+	public void destroy() {
+		FhirGlobalPropertyHolder.removeListener(configurationListener);
+	}
+	
+	/**
+	 * Applies the configured policies to a search if its estimated cost is over budget
+	 *
+	 * @param theParams the parameters of the search
+	 * @param dao the dao the search will be run against
+	 * @param bundleProvider the bundle provider which will run the search
+	 * @return the bundle provider to return to the client
+	 * @throws InvalidRequestException if the search is over budget and such searches are rejected
+	 */
+	public IBundleProvider admit(@Nonnull SearchParameterMap theParams, @Nonnull FhirDao<?> dao,
+	        @Nonnull SearchQueryBundleProvider<?, ?> bundleProvider) {
+		Configuration configuration = this.configuration;
+		if (configuration.budget <= 0 || configuration.policies.isEmpty()) {
+			return bundleProvider;
+		}
+		
+		long cost = searchCostEstimator.estimate(getEntityClass(dao), theParams);
+		if (cost <= configuration.budget) {
+			return bundleProvider;
+		}
+		
+		log.debug("Search with an estimated cost of {} rows is over the budget of {} rows", cost, configuration.budget);
+		
+		if (configuration.policies.contains(Policy.REJECT)) {
+			throw new InvalidRequestException("This search is too broad to run; please add more selective parameters, "
+			        + "e.g., a patient or an identifier, or remove _revinclude and :iterate parameters");
+		}
+		
+		if (configuration.policies.contains(Policy.SKIP_TOTAL)) {
+			bundleProvider.skipTotal();
+		}
+		
+		if (configuration.policies.contains(Policy.THROTTLE)) {
+			return new ThrottledBundleProvider(bundleProvider, configuration.throttle);
+		}
+		
+		return bundleProvider;
+	}
+	
+	/**
+	 * Parses the value of {@link FhirConstants#SEARCH_COST_POLICY}. Unknown policies are ignored.
+	 *
+	 * @param value a comma-separated list of policy names, e.g., "throttle,skipTotal"
+	 * @return the policies named
+	 */
+	static Set<Policy> parsePolicies(String value) {
+		Set<Policy> result = EnumSet.noneOf(Policy.class);
+		if (value == null) {
+			return result;
+		}
+		
+		for (String name : value.split(",")) {
+			String normalized = name.trim().replace("_", "").replace("-", "");
+			Arrays.stream(Policy.values()).filter(policy -> policy.name().replace("_", "").equalsIgnoreCase(normalized))
+			        .findFirst().ifPresent(result::add);
+		}
+		
+		return result;
+	}
+	
+	private Class<?> getEntityClass(FhirDao<?> dao) {
+		return entityClasses.computeIfAbsent(AopUtils.getTargetClass(dao), SearchAdmissionControl::resolveEntityClass)
+		        .orElse(null);
+	}
+	
+	@SuppressWarnings("UnstableApiUsage")
+	private static Optional<Class<?>> resolveEntityClass(Class<?> daoClass) {
+		// if the dao does not bind the entity type, this resolves to the bound of the type variable, an interface
+		Class<?> entityClass = TypeToken.of(daoClass).resolveType(FhirDao.class.getTypeParameters()[0]).getRawType();
+		return entityClass.isInterface() ? Optional.empty() : Optional.of(entityClass);
+	}
+	
+	private void configure() {
+		int budget = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(FhirConstants.SEARCH_COST_BUDGET, 0);
+		Set<Policy> policies = parsePolicies(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.SEARCH_COST_POLICY, "skipTotal"));
+		int throttleConcurrency = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(
+		    FhirConstants.SEARCH_COST_THROTTLE_CONCURRENCY, DEFAULT_THROTTLE_CONCURRENCY);
+		
+		Configuration current = configuration;
+		if (current.budget != budget || !current.policies.equals(policies)
+		        || current.throttleConcurrency != throttleConcurrency) {
+			configuration = new Configuration(budget, policies, throttleConcurrency);
+		}
+	}
+	
+	private static final class Configuration {
+		
+		private final long budget;
+		
+		private final Set<Policy> policies;
+		
+		private final int throttleConcurrency;
+		
+		private final Semaphore throttle;
+		
+		private Configuration(long budget, Set<Policy> policies, int throttleConcurrency) {
+			this.budget = budget;
+			this.policies = policies.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(policies);
+			this.throttleConcurrency = Math.max(1, throttleConcurrency);
+			this.throttle = new Semaphore(this.throttleConcurrency, true);
+		}
+	}
+}
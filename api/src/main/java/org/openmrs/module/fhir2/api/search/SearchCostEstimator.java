@@ -0,0 +1,213 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirTableStatisticsDao;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates the cost of a search before it is run, as the number of rows the database is likely to
+ * read. The estimate starts from the database's own estimate of the size of the table searched, which
+ * is reduced by each search parameter according to how selective parameters handled by its search
+ * handler usually are, and then multiplied by the number of resources each match is likely to pull in
+ * through _include and _revinclude. <br/>
+ * The selectivities are deliberately coarse: references to a patient or encounter and identifiers
+ * select a handful of rows, codes and names some, dates and low-cardinality values like gender many.
+ * Substring matches and :missing cannot use an index, so they do not reduce the estimate at all.
+ */
+@Component
+public class SearchCostEstimator {
+	
+	// used when the database does not provide an estimate of the table's size
+	private static final long DEFAULT_TABLE_ROWS = 100_000;
+	
+	private static final double IDENTIFYING_SELECTIVITY = 0.0001;
+	
+	private static final double DEFAULT_SELECTIVITY = 0.01;
+	
+	private static final double RANGE_SELECTIVITY = 0.3;
+	
+	private static final double LOW_CARDINALITY_SELECTIVITY = 0.5;
+	
+	private static final long REVINCLUDE_FAN_OUT = 10;
+	
+	private static final long ITERATE_FAN_OUT = 10;
+	
+	private static final Set<String> IDENTIFYING_HANDLERS = new HashSet<>(Arrays.asList(
+	    FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER,
+	    FhirConstants.PARTICIPANT_REFERENCE_SEARCH_HANDLER, FhirConstants.FOR_REFERENCE_SEARCH_HANDLER,
+	    FhirConstants.BASED_ON_REFERENCE_SEARCH_HANDLER, FhirConstants.OWNER_REFERENCE_SEARCH_HANDLER,
+	    FhirConstants.MEDICATION_REQUEST_REFERENCE_SEARCH_HANDLER, FhirConstants.HAS_MEMBER_SEARCH_HANDLER,
+	    FhirConstants.RESULT_SEARCH_HANDLER, FhirConstants.GROUP_MEMBERS_SEARCH_HANDLER,
+	    FhirConstants.IDENTIFIER_SEARCH_HANDLER));
+	
+	private static final Set<String> RANGE_HANDLERS = new HashSet<>(
+	        Arrays.asList(FhirConstants.DATE_RANGE_SEARCH_HANDLER, FhirConstants.QUANTITY_SEARCH_HANDLER));
+	
+	private static final Set<String> LOW_CARDINALITY_HANDLERS = new HashSet<>(Arrays.asList(
+	    FhirConstants.GENDER_SEARCH_HANDLER, FhirConstants.BOOLEAN_SEARCH_HANDLER, FhirConstants.STATUS_SEARCH_HANDLER,
+	    FhirConstants.CATEGORY_SEARCH_HANDLER, FhirConstants.SEVERITY_SEARCH_HANDLER,
+	    FhirConstants.FULFILLER_STATUS_SEARCH_HANDLER));
+	
+	// these shape the results rather than filtering them
+	private static final Set<String> NON_FILTERING_HANDLERS = new HashSet<>(Arrays.asList(
+	    FhirConstants.INCLUDE_SEARCH_HANDLER, FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
+	    FhirConstants.MAX_SEARCH_HANDLER, FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER,
+	    FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER, FhirConstants.EVERYTHING_SEARCH_HANDLER,
+	    FhirConstants.EXACT_TOTAL_SEARCH_PARAMETER));
+	
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
+	private FhirTableStatisticsDao tableStatisticsDao;
+	
+	/**
+	 * @param entityClass the class of the OpenMRS objects searched for, if known
+	 * @param theParams the parameters of the search
+	 * @return the estimated number of rows the search will read
+	 */
+	public long estimate(Class<?> entityClass, @Nonnull SearchParameterMap theParams) {
+		Long tableRows = entityClass == null ? null : tableStatisticsDao.getEstimatedRowCount(entityClass);
+		double matchingRows = (tableRows == null ? DEFAULT_TABLE_ROWS : tableRows) * estimateSelectivity(theParams);
+		return Math.max(1, (long) Math.ceil(matchingRows)) * estimateFanOut(theParams);
+	}
+	
+	/**
+	 * @param theParams the parameters of a search
+	 * @return the estimated fraction of rows matching the search
+	 */
+	static double estimateSelectivity(@Nonnull SearchParameterMap theParams) {
+		double result = 1.0;
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			if (NON_FILTERING_HANDLERS.contains(entry.getKey())) {
+				continue;
+			}
+			
+			for (PropParam<?> propParam : entry.getValue()) {
+				result *= getSelectivity(getHandlerSelectivity(entry.getKey(), propParam), propParam.getParam());
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @param theParams the parameters of a search
+	 * @return the estimated number of resources returned for each match, including the match itself
+	 */
+	static long estimateFanOut(@Nonnull SearchParameterMap theParams) {
+		long result = 1;
+		for (PropParam<Object> propParam : theParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER)) {
+			for (Include include : getIncludes(propParam)) {
+				result += include.isRecurse() ? ITERATE_FAN_OUT : 1;
+			}
+		}
+		
+		for (PropParam<Object> propParam : theParams.getParameters(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER)) {
+			for (Include include : getIncludes(propParam)) {
+				result += include.isRecurse() ? REVINCLUDE_FAN_OUT * ITERATE_FAN_OUT : REVINCLUDE_FAN_OUT;
+			}
+		}
+		
+		return result;
+	}
+	
+	private static double getHandlerSelectivity(String handler, PropParam<?> propParam) {
+		if (IDENTIFYING_HANDLERS.contains(handler) || (FhirConstants.COMMON_SEARCH_HANDLER.equals(handler)
+		        && FhirConstants.ID_PROPERTY.equals(propParam.getPropertyName()))) {
+			return IDENTIFYING_SELECTIVITY;
+		} else if (RANGE_HANDLERS.contains(handler) || FhirConstants.COMMON_SEARCH_HANDLER.equals(handler)) {
+			return RANGE_SELECTIVITY;
+		} else if (LOW_CARDINALITY_HANDLERS.contains(handler)) {
+			return LOW_CARDINALITY_SELECTIVITY;
+		}
+		
+		return DEFAULT_SELECTIVITY;
+	}
+	
+	private static double getSelectivity(double handlerSelectivity, Object param) {
+		if (param instanceof IQueryParameterAnd) {
+			double result = 1.0;
+			for (IQueryParameterOr<?> or : ((IQueryParameterAnd<?>) param).getValuesAsQueryTokens()) {
+				result *= getOrSelectivity(handlerSelectivity, or.getValuesAsQueryTokens());
+			}
+			
+			return result;
+		} else if (param instanceof IQueryParameterOr) {
+			return getOrSelectivity(handlerSelectivity, ((IQueryParameterOr<?>) param).getValuesAsQueryTokens());
+		} else if (param instanceof IQueryParameterType) {
+			return getOrSelectivity(handlerSelectivity, Collections.singletonList((IQueryParameterType) param));
+		}
+		
+		return handlerSelectivity;
+	}
+	
+	private static double getOrSelectivity(double handlerSelectivity, List<? extends IQueryParameterType> values) {
+		if (values.isEmpty()) {
+			return 1.0;
+		}
+		
+		// each alternative matches its own rows
+		double result = 0.0;
+		for (IQueryParameterType value : values) {
+			result += getValueSelectivity(handlerSelectivity, value);
+		}
+		
+		return Math.min(1.0, result);
+	}
+	
+	private static double getValueSelectivity(double handlerSelectivity, IQueryParameterType value) {
+		if (value.getMissing() != null || (value instanceof StringParam && ((StringParam) value).isContains())) {
+			return 1.0;
+		} else if (value instanceof ReferenceParam && ((ReferenceParam) value).getChain() != null) {
+			// a chained reference, e.g., subject.name, is only as selective as the chained parameter
+			return Math.max(handlerSelectivity, DEFAULT_SELECTIVITY);
+		}
+		
+		return handlerSelectivity;
+	}
+	
+	private static Collection<Include> getIncludes(PropParam<Object> propParam) {
+		if (!(propParam.getParam() instanceof Collection)) {
+			return Collections.emptyList();
+		}
+		
+		Set<Include> result = new HashSet<>();
+		for (Object element : (Collection<?>) propParam.getParam()) {
+			if (element instanceof Include) {
+				result.add((Include) element);
+			}
+		}
+		
+		return result;
+	}
+}
@@ -35,6 +35,9 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	@Setter(onMethod_ = @Autowired)
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Setter(onMethod_ = @Autowired)
+	private SearchAdmissionControl searchAdmissionControl;
+	
 	/**
 	 * Gets query results
 	 *
@@ -55,6 +58,8 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 			return result;
 		}
 		
-		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude);
+		SearchQueryBundleProvider<T, U> result = new SearchQueryBundleProvider<>(theParams, dao, translator,
+		        globalPropertyService, searchQueryInclude);
+		return searchAdmissionControl.admit(theParams, dao, result);
 	}
 }
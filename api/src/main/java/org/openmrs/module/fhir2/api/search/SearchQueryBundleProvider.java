@@ -12,6 +12,8 @@ package org.openmrs.module.fhir2.api.search;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -26,9 +28,12 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.FhirMetrics;
+import org.openmrs.module.fhir2.api.metrics.FhirMetricsPhase;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.OpenmrsFhirTranslator;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
@@ -37,7 +42,7 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements IBundleProvider, Serializable {
 	
-	private static final long serialVersionUID = 4L;
+	private static final long serialVersionUID = 5L;
 	
 	private final FhirDao<T> dao;
 	
@@ -57,6 +62,8 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	
 	private transient Integer size;
 	
+	private boolean skipTotal = false;
+	
 	private final SearchQueryInclude<U> searchQueryInclude;
 	
 	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
@@ -71,14 +78,43 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 		this.searchQueryInclude = searchQueryInclude;
 	}
 	
+	@SuppressWarnings("unchecked")
+	private SearchQueryBundleProvider(SerializedSearch serializedSearch) throws InvalidObjectException {
+		this.dao = (FhirDao<T>) serializedSearch.dao.resolve();
+		this.published = serializedSearch.published;
+		this.searchParameterMap = serializedSearch.searchParameterMap;
+		this.translator = (OpenmrsFhirTranslator<T, U>) serializedSearch.translator.resolve();
+		this.uuid = serializedSearch.uuid;
+		this.globalPropertyService = Context.getRegisteredComponents(FhirGlobalPropertyService.class).get(0);
+		this.searchQueryInclude = (SearchQueryInclude<U>) serializedSearch.searchQueryInclude.resolve();
+		this.skipTotal = serializedSearch.skipTotal;
+	}
+	
 	@Transactional(readOnly = true)
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
 		searchParameterMap.setFromIndex(fromIndex);
 		searchParameterMap.setToIndex(toIndex);
+		FhirMetrics.searchPerformed(searchParameterMap);
+		
+		List<T> results;
+		long start = FhirMetrics.startTimer(FhirMetricsPhase.QUERY);
+		try {
+			results = dao.getSearchResults(searchParameterMap);
+		}
+		finally {
+			FhirMetrics.stopTimer(FhirMetricsPhase.QUERY, start);
+		}
 		
-		List<U> resources = translator.toFhirResources(dao.getSearchResults(searchParameterMap));
+		List<U> resources;
+		start = FhirMetrics.startTimer(FhirMetricsPhase.TRANSLATION);
+		try {
+			resources = translator.toFhirResources(results);
+		}
+		finally {
+			FhirMetrics.stopTimer(FhirMetricsPhase.TRANSLATION, start);
+		}
 		
 		Set<IBaseResource> includedResources = searchQueryInclude.getIncludedResources(resources, this.searchParameterMap);
 		
@@ -86,6 +122,7 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 		resultList.addAll(resources);
 		resultList.addAll(includedResources);
 		
+		FhirMetrics.addResults(resultList.size());
 		return resultList;
 	}
 	
@@ -101,9 +138,77 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	@Override
 	@Nullable
 	public Integer size() {
+		if (skipTotal) {
+			return null;
+		}
+		
 		if (size == null) {
-			size = dao.getSearchResultsCount(searchParameterMap);
+			FhirMetrics.searchPerformed(searchParameterMap);
+			long start = FhirMetrics.startTimer(FhirMetricsPhase.COUNT);
+			try {
+				size = dao.getSearchResultsCount(searchParameterMap);
+			}
+			finally {
+				FhirMetrics.stopTimer(FhirMetricsPhase.COUNT, start);
+			}
+			
+			FhirMetrics.totalCounted(size);
 		}
 		return size;
 	}
+	
+	/**
+	 * Stops this provider from counting the matching resources, as if the client had asked for
+	 * {@code _total=none}; the bundles returned will then not carry a total.
+	 */
+	void skipTotal() {
+		skipTotal = true;
+	}
+	
+	private Object writeReplace() {
+		return new SerializedSearch(this);
+	}
+	
+	private void readObject(ObjectInputStream in) throws InvalidObjectException {
+		throw new InvalidObjectException("SearchQueryBundleProvider must be read from its serialized form");
+	}
+	
+	/**
+	 * The serialized form of a {@link SearchQueryBundleProvider}, which allows a search to be written
+	 * out by the paging provider and run again later. The dao, translator and include handler are
+	 * Spring beans, so they are written as references to their types and looked up again when the
+	 * search is read.
+	 */
+	private static final class SerializedSearch implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final SearchParameterMap searchParameterMap;
+		
+		private final IPrimitiveType<Date> published;
+		
+		private final String uuid;
+		
+		private final boolean skipTotal;
+		
+		private final ComponentReference dao;
+		
+		private final ComponentReference translator;
+		
+		private final ComponentReference searchQueryInclude;
+		
+		private SerializedSearch(SearchQueryBundleProvider<?, ?> bundleProvider) {
+			this.searchParameterMap = bundleProvider.searchParameterMap;
+			this.published = bundleProvider.published;
+			this.uuid = bundleProvider.uuid;
+			this.skipTotal = bundleProvider.skipTotal;
+			this.dao = ComponentReference.of(bundleProvider.dao, FhirDao.class);
+			this.translator = ComponentReference.of(bundleProvider.translator, OpenmrsFhirTranslator.class);
+			this.searchQueryInclude = ComponentReference.of(bundleProvider.searchQueryInclude, SearchQueryInclude.class);
+		}
+		
+		private Object readResolve() throws InvalidObjectException {
+			return new SearchQueryBundleProvider<>(this);
+		}
+	}
 }
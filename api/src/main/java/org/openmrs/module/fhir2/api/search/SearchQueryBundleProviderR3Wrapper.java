@@ -9,18 +9,21 @@
  */
 package org.openmrs.module.fhir2.api.search;
 
-import static org.hl7.fhir.convertors.factory.VersionConvertorFactory_30_40.convertResource;
-
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.convertors.advisors.impl.BaseAdvisor_30_40;
+import org.hl7.fhir.convertors.conv30_40.VersionConvertor_30_40;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.hl7.fhir.r4.model.Condition;
@@ -62,8 +65,20 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
-		return bundleProvider.getResources(theFromIndex, theToIndex).stream().map(this::transformToR3)
-		        .filter(Objects::nonNull).collect(Collectors.toList());
+		List<IBaseResource> resources = bundleProvider.getResources(theFromIndex, theToIndex);
+		
+		// the convertor is shared by the whole page, rather than building a new one, with its element and resource
+		// convertors, for every resource as VersionConvertorFactory_30_40 does
+		VersionConvertor_30_40 convertor = new VersionConvertor_30_40(new BaseAdvisor_30_40());
+		List<IBaseResource> result = new ArrayList<>(resources.size());
+		for (IBaseResource resource : resources) {
+			IBaseResource converted = transformToR3(convertor, resource);
+			if (converted != null) {
+				result.add(converted);
+			}
+		}
+		
+		return result;
 	}
 	
 	@Override
@@ -83,7 +98,16 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 		return bundleProvider.size();
 	}
 	
-	private IBaseResource transformToR3(IBaseResource resource) {
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		// searches holding their results hold clinical data, which must not be written out
+		if (bundleProvider instanceof SimpleBundleProvider) {
+			throw new NotSerializableException(SimpleBundleProvider.class.getName());
+		}
+		
+		out.defaultWriteObject();
+	}
+	
+	private IBaseResource transformToR3(VersionConvertor_30_40 convertor, IBaseResource resource) {
 		if (resource instanceof org.hl7.fhir.dstu3.model.Resource) {
 			return resource;
 		} else if (resource instanceof Resource) {
@@ -91,16 +115,15 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 				return TaskVersionConverter.convertTask((Task) resource);
 			}
 			
-			if (resource instanceof Condition) {
+			// only diagnoses need to be changed before conversion, so only those are copied
+			if (resource instanceof Condition && FhirUtils.getOpenmrsConditionType((Condition) resource)
+			        .filter(type -> type == FhirUtils.OpenmrsConditionType.DIAGNOSIS).isPresent()) {
 				Condition condition = ((Condition) resource).copy();
-				if (FhirUtils.getOpenmrsConditionType(condition)
-				        .filter(type -> type == FhirUtils.OpenmrsConditionType.DIAGNOSIS).isPresent()) {
-					condition.setClinicalStatus(null);
-					return convertResource(condition);
-				}
+				condition.setClinicalStatus(null);
+				return convertor.convertResource(condition);
 			}
 			
-			return convertResource((Resource) resource);
+			return convertor.convertResource((Resource) resource);
 		}
 		
 		return null;
@@ -55,6 +55,8 @@ import org.openmrs.module.fhir2.api.FhirObservationService;
 import org.openmrs.module.fhir2.api.FhirPatientService;
 import org.openmrs.module.fhir2.api.FhirPractitionerService;
 import org.openmrs.module.fhir2.api.FhirServiceRequestService;
+import org.openmrs.module.fhir2.api.metrics.FhirMetrics;
+import org.openmrs.module.fhir2.api.metrics.FhirMetricsPhase;
 import org.openmrs.module.fhir2.api.search.param.DiagnosticReportSearchParams;
 import org.openmrs.module.fhir2.api.search.param.EncounterSearchParams;
 import org.openmrs.module.fhir2.api.search.param.FhirAllergyIntoleranceSearchParams;
@@ -111,9 +113,19 @@ public class SearchQueryIncludeImpl<U extends IBaseResource> implements SearchQu
 	@Setter(value = AccessLevel.PROTECTED, onMethod_ = @Autowired)
 	private FhirAllergyIntoleranceService allergyIntoleranceService;
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams) {
+		long start = FhirMetrics.startTimer(FhirMetricsPhase.INCLUDES);
+		try {
+			return fetchIncludedResources(resourceList, theParams);
+		}
+		finally {
+			FhirMetrics.stopTimer(FhirMetricsPhase.INCLUDES, start);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Set<IBaseResource> fetchIncludedResources(List<U> resourceList, SearchParameterMap theParams) {
 		List<PropParam<Object>> includeParamList = theParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER);
 		List<PropParam<Object>> revIncludeParamList = theParams.getParameters(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER);
 		
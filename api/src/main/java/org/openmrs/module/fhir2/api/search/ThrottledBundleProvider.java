@@ -0,0 +1,117 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+/**
+ * Wraps the {@link IBundleProvider} of an expensive search so that only a limited number of expensive
+ * searches query the database at the same time. Requests which cannot get a turn within
+ * {@link #THROTTLE_TIMEOUT_SECONDS} seconds fail with a 503 (Service Unavailable).
+ */
+class ThrottledBundleProvider implements IBundleProvider, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	static final long THROTTLE_TIMEOUT_SECONDS = 30;
+	
+	private final IBundleProvider bundleProvider;
+	
+	private final transient Semaphore throttle;
+	
+	ThrottledBundleProvider(IBundleProvider bundleProvider, Semaphore throttle) {
+		this.bundleProvider = bundleProvider;
+		this.throttle = throttle;
+	}
+	
+	@Override
+	public String getCurrentPageId() {
+		return bundleProvider.getCurrentPageId();
+	}
+	
+	@Override
+	public String getNextPageId() {
+		return bundleProvider.getNextPageId();
+	}
+	
+	@Override
+	public String getPreviousPageId() {
+		return bundleProvider.getPreviousPageId();
+	}
+	
+	@Override
+	public IPrimitiveType<Date> getPublished() {
+		return bundleProvider.getPublished();
+	}
+	
+	@Override
+	@Nonnull
+	public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+		return throttled(() -> bundleProvider.getResources(theFromIndex, theToIndex));
+	}
+	
+	@Override
+	@Nullable
+	public String getUuid() {
+		return bundleProvider.getUuid();
+	}
+	
+	@Override
+	public Integer preferredPageSize() {
+		return bundleProvider.preferredPageSize();
+	}
+	
+	@Override
+	@Nullable
+	public Integer size() {
+		return throttled(bundleProvider::size);
+	}
+	
+	// the throttle belongs to the running server, so a search read back is no longer throttled
+	private Object writeReplace() {
+		return bundleProvider;
+	}
+	
+	private <X> X throttled(Supplier<X> action) {
+		boolean acquired;
+		try {
+			acquired = throttle.tryAcquire(THROTTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		
+		if (!acquired) {
+			throw new UnclassifiedServerFailureException(503,
+			        "Too many expensive searches are running at the moment; please narrow the search or try again later");
+		}
+		
+		try {
+			return action.get();
+		}
+		finally {
+			throttle.release();
+		}
+	}
+}
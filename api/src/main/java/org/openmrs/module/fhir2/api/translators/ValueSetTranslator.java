@@ -11,6 +11,8 @@ package org.openmrs.module.fhir2.api.translators;
 
 import javax.annotation.Nonnull;
 
+import java.util.List;
+
 import org.hl7.fhir.r4.model.ValueSet;
 import org.openmrs.Concept;
 
@@ -33,4 +35,23 @@ public interface ValueSetTranslator extends OpenmrsFhirTranslator<Concept, Value
 	 */
 	@Override
 	ValueSet toFhirResource(@Nonnull Concept concept);
+	
+	/**
+	 * Maps a set of concepts to a {@link ValueSet} which only carries the metadata of the value set,
+	 * i.e. without the compose, which requires translating every member of the set
+	 *
+	 * @param concept the root concept of conceptSet
+	 * @return the corresponding valueSet, without its compose
+	 */
+	ValueSet toFhirResourceSummary(@Nonnull Concept concept);
+	
+	/**
+	 * Maps a set of concepts to the contents of the expansion of its {@link ValueSet}. Nested sets are
+	 * expanded recursively, so the result contains every concept which is a member of the set or of one
+	 * of its nested sets, identified both by its uuid and by each of its mappings to a known source.
+	 *
+	 * @param concept the root concept of conceptSet
+	 * @return the contents of the expansion, in the order of the set members
+	 */
+	List<ValueSet.ValueSetExpansionContainsComponent> toExpansionContains(@Nonnull Concept concept);
 }
@@ -13,7 +13,6 @@ import static lombok.AccessLevel.PROTECTED;
 
 import javax.annotation.Nonnull;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,14 +28,12 @@ import org.openmrs.ConceptMap;
 import org.openmrs.ConceptMapType;
 import org.openmrs.ConceptReferenceTerm;
 import org.openmrs.ConceptSource;
-import org.openmrs.Duration;
-import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirConceptService;
 import org.openmrs.module.fhir2.api.FhirConceptSourceService;
+import org.openmrs.module.fhir2.api.cache.FhirConceptMappingCache;
+import org.openmrs.module.fhir2.api.cache.FhirConceptTranslationCache;
 import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
-import org.openmrs.module.fhir2.model.FhirConceptSource;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -51,14 +48,24 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 	@Setter(value = PROTECTED, onMethod_ = @Autowired)
 	private FhirConceptSourceService conceptSourceService;
 	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptTranslationCache conceptTranslationCache;
+	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptMappingCache conceptMappingCache;
+	
 	@Override
-	@Cacheable(value = "fhir2ConceptToCodeableConcept")
 	public CodeableConcept toFhirResource(@Nonnull Concept concept) {
 		if (concept == null) {
 			return null;
 		}
 		
-		Collection<FhirConceptSource> allFhirConceptSources = conceptSourceService.getFhirConceptSources();
+		return conceptTranslationCache.get(concept, this::translate);
+	}
+	
+	protected CodeableConcept translate(@Nonnull Concept concept) {
 		CodeableConcept codeableConcept = new CodeableConcept();
 		codeableConcept.setText(concept.getDisplayString());
 		addConceptCoding(codeableConcept.addCoding(), null, concept.getUuid(), concept);
@@ -70,7 +77,7 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 				boolean sameAs = mapType.getUuid() != null && mapType.getUuid().equals(ConceptMapType.SAME_AS_MAP_TYPE_UUID);
 				sameAs = sameAs || (mapType.getName() != null && mapType.getName().equalsIgnoreCase("SAME-AS"));
 				ConceptReferenceTerm crt = mapping.getConceptReferenceTerm();
-				String sourceUrl = getSourceUrl(crt.getConceptSource(), allFhirConceptSources);
+				String sourceUrl = getSourceUrl(crt.getConceptSource());
 				if (sourceUrl != null) {
 					if (sameAs) {
 						addSystemToCodeMap(systemUrlToCodeMap, sourceUrl, "SAME-AS", crt.getCode());
@@ -107,23 +114,10 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 							return c;
 						}
 					} else {
-						Optional<ConceptSource> conceptSource = conceptSourceService
-						        .getConceptSourceByUrl(coding.getSystem());
-						if (conceptSource.isPresent()) {
-							List<Concept> allMatchingConcepts = conceptService
-							        .getConceptsWithAnyMappingInSource(conceptSource.get(), coding.getCode());
-							if (!allMatchingConcepts.isEmpty()) {
-								Map<String, Concept> mapTypeToConceptMap = new HashMap<>();
-								addConceptsToMap(mapTypeToConceptMap, allMatchingConcepts, conceptSource.get(),
-								    coding.getCode());
-								if (mapTypeToConceptMap.size() == 1) {
-									for (String mapType : mapTypeToConceptMap.keySet()) {
-										return mapTypeToConceptMap.get(mapType);
-									}
-								} else if (mapTypeToConceptMap.size() > 1 && mapTypeToConceptMap.containsKey("SAME-AS")) {
-									return mapTypeToConceptMap.get("SAME-AS");
-								}
-							}
+						Optional<Concept> c = conceptMappingCache.getConcept(coding.getSystem(), coding.getCode(),
+						    () -> getConceptForCode(coding.getSystem(), coding.getCode()));
+						if (c.isPresent()) {
+							return c.get();
 						}
 					}
 				}
@@ -133,6 +127,26 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 		return null;
 	}
 	
+	protected Concept getConceptForCode(@Nonnull String system, @Nonnull String code) {
+		Optional<ConceptSource> conceptSource = conceptSourceService.getConceptSourceByUrl(system);
+		if (conceptSource.isPresent()) {
+			List<Concept> allMatchingConcepts = conceptService.getConceptsWithAnyMappingInSource(conceptSource.get(), code);
+			if (!allMatchingConcepts.isEmpty()) {
+				Map<String, Concept> mapTypeToConceptMap = new HashMap<>();
+				addConceptsToMap(mapTypeToConceptMap, allMatchingConcepts, conceptSource.get(), code);
+				if (mapTypeToConceptMap.size() == 1) {
+					for (String mapType : mapTypeToConceptMap.keySet()) {
+						return mapTypeToConceptMap.get(mapType);
+					}
+				} else if (mapTypeToConceptMap.size() > 1 && mapTypeToConceptMap.containsKey("SAME-AS")) {
+					return mapTypeToConceptMap.get("SAME-AS");
+				}
+			}
+		}
+		
+		return null;
+	}
+	
 	private void addConceptCoding(Coding coding, String system, String code, Concept concept) {
 		coding.setSystem(system);
 		coding.setCode(code);
@@ -172,22 +186,11 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 		});
 	}
 	
-	private String getSourceUrl(ConceptSource conceptSource, Collection<FhirConceptSource> fhirConceptSources) {
-		String sourceUrl = null;
-		if (conceptSource != null) {
-			FhirConceptSource fhirConceptSource = fhirConceptSources.stream().filter(fcs -> fcs.getConceptSource() != null)
-			        .filter(fcs -> fcs.getConceptSource().getUuid().equals(conceptSource.getUuid())).findFirst()
-			        .orElse(null);
-			
-			if (fhirConceptSource != null && fhirConceptSource.getUrl() != null) {
-				sourceUrl = fhirConceptSource.getUrl();
-			} else {
-				sourceUrl = Duration.SNOMED_CT_CONCEPT_SOURCE_HL7_CODE.equals(conceptSource.getHl7Code())
-				        ? FhirConstants.SNOMED_SYSTEM_URI
-				        : null;
-			}
+	private String getSourceUrl(ConceptSource conceptSource) {
+		if (conceptSource == null) {
+			return null;
 		}
 		
-		return sourceUrl;
+		return conceptSourceService.getUrlForConceptSource(conceptSource);
 	}
 }
@@ -9,10 +9,16 @@
  */
 package org.openmrs.module.fhir2.api.translators.impl;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
+import org.openmrs.Person;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
 
 public class FhirTranslatorUtils {
 	
@@ -39,4 +45,24 @@ public class FhirTranslatorUtils {
 		return String.valueOf(lastUpdate.getTime());
 	}
 	
+	/**
+	 * Gets the active attributes of the given type from the attributes of the person, which are usually
+	 * already loaded by the time a person is translated, so that no further query is needed
+	 *
+	 * @param person the person whose attributes to return
+	 * @param personAttributeTypeUuid the uuid of the attribute type
+	 * @return the non-voided attributes of the given, non-retired type or an empty list if the person is
+	 *         voided
+	 */
+	public static List<PersonAttribute> getActiveAttributesOfType(Person person, String personAttributeTypeUuid) {
+		if (person == null || person.getPersonVoided() || personAttributeTypeUuid == null) {
+			return Collections.emptyList();
+		}
+		
+		return person.getActiveAttributes().stream().filter(attribute -> {
+			PersonAttributeType attributeType = attribute.getAttributeType();
+			return attributeType != null && !attributeType.getRetired()
+			        && personAttributeTypeUuid.equals(attributeType.getUuid());
+		}).collect(Collectors.toList());
+	}
 }
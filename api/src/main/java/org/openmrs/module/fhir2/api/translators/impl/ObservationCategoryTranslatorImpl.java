@@ -22,7 +22,6 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.impl.FhirObservationCategoryMapDaoImpl;
 import org.openmrs.module.fhir2.api.translators.ObservationCategoryTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -33,12 +32,12 @@ public class ObservationCategoryTranslatorImpl implements ObservationCategoryTra
 	private FhirObservationCategoryMapDaoImpl categoryMap;
 	
 	@Override
-	@Cacheable(value = "fhir2ObservationCategoryToCodeableConcept")
 	public CodeableConcept toFhirResource(@Nonnull Concept concept) {
 		if (concept == null || concept.getConceptClass() == null) {
 			return null;
 		}
 		
+		// served from the category map's in-memory snapshot, so no further caching is needed here
 		String category = categoryMap.getCategory(concept.getConceptClass().getUuid());
 		
 		if (category == null) {
@@ -33,6 +33,7 @@ import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.api.db.hibernate.HibernateUtil;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.cache.FhirTranslatedResourceCache;
 import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
 import org.openmrs.module.fhir2.api.translators.EncounterReferenceTranslator;
 import org.openmrs.module.fhir2.api.translators.ObservationBasedOnReferenceTranslator;
@@ -95,10 +96,17 @@ public class ObservationTranslatorImpl implements ObservationTranslator {
 	@Setter(value = PROTECTED, onMethod_ = @Autowired)
 	private ObservationEffectiveDatetimeTranslator datetimeTranslator;
 	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirTranslatedResourceCache translatedResourceCache;
+	
 	@Override
 	public Observation toFhirResource(@Nonnull Obs observation) {
 		notNull(observation, "The Obs object should not be null");
-		
+		return translatedResourceCache.get(observation, this::translate);
+	}
+	
+	protected Observation translate(@Nonnull Obs observation) {
 		Observation obs = new Observation();
 		obs.setId(observation.getUuid());
 		obs.setStatus(observationStatusTranslator.toFhirResource(observation));
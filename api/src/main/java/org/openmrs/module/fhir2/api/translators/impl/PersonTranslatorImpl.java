@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.translators.impl;
 
 import static lombok.AccessLevel.PROTECTED;
 import static org.apache.commons.lang3.Validate.notNull;
+import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getActiveAttributesOfType;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getLastUpdated;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getVersionId;
 
@@ -33,6 +34,7 @@ import org.openmrs.PersonAddress;
 import org.openmrs.PersonAttribute;
 import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
 import org.openmrs.module.fhir2.api.translators.BirthDateTranslator;
 import org.openmrs.module.fhir2.api.translators.GenderTranslator;
@@ -81,6 +83,10 @@ public class PersonTranslatorImpl implements PersonTranslator {
 	@Setter(value = PROTECTED, onMethod_ = @Autowired)
 	private PersonAttributeTranslator personAttributeTranslator;
 	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	@Override
 	public org.hl7.fhir.r4.model.Person toFhirResource(@Nonnull Person openmrsPerson) {
 		notNull(openmrsPerson, "The Openmrs Person object should not be null");
@@ -103,7 +109,11 @@ public class PersonTranslatorImpl implements PersonTranslator {
 			person.addAddress(addressTranslator.toFhirResource(address));
 		}
 		
-		person.addTelecom(telecomTranslator.toFhirResource(openmrsPerson));
+		String personContactAttributeType = globalPropertyService
+		        .getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE);
+		for (PersonAttribute contactAttribute : getActiveAttributesOfType(openmrsPerson, personContactAttributeType)) {
+			person.addTelecom(telecomTranslator.toFhirResource(contactAttribute));
+		}
 		
 		if (openmrsPerson.getIsPatient()) {
 			person.addLink(new org.hl7.fhir.r4.model.Person.PersonLinkComponent()
@@ -35,6 +35,7 @@ import org.openmrs.TestOrder;
 import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.cache.FhirReferenceDisplayCache;
 import org.openmrs.module.fhir2.api.translators.OrderIdentifierTranslator;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 
@@ -74,57 +75,24 @@ public final class ReferenceHandlingTranslator {
 	}
 	
 	public static Reference createLocationReference(@Nonnull Location location) {
-		return createReferenceOfType(location, FhirConstants.LOCATION).setDisplay(getMetadataTranslation(location));
+		return createReferenceOfType(location, FhirConstants.LOCATION).setDisplay(FhirReferenceDisplayCache
+		        .getDisplay(FhirConstants.LOCATION, location.getUuid(), () -> getMetadataTranslation(location)));
 	}
 	
 	public static Reference createPatientReference(@Nonnull Patient patient) {
-		Reference reference = createReferenceOfType(patient, FhirConstants.PATIENT);
-		
-		StringBuilder sb = new StringBuilder();
-		if (patient.getPersonName() != null) {
-			sb.append(patient.getPersonName().getFullName());
-		}
-		
-		PatientIdentifier identifier = patient.getPatientIdentifier();
-		if (identifier != null && identifier.getIdentifier() != null) {
-			if (sb.length() > 0) {
-				sb.append(" ");
-			}
-			sb.append("(");
-			
-			PatientIdentifierType identifierType = identifier.getIdentifierType();
-			if (identifierType != null && identifierType.getName() != null) {
-				sb.append(getMetadataTranslation(identifierType)).append(": ");
-			}
-			
-			sb.append(identifier.getIdentifier()).append(")");
-		}
-		
-		reference.setDisplay(sb.toString());
-		return reference;
+		return createReferenceOfType(patient, FhirConstants.PATIENT).setDisplay(FhirReferenceDisplayCache
+		        .getDisplay(FhirConstants.PATIENT, patient.getUuid(), () -> getPatientDisplay(patient)));
 	}
 	
 	public static Reference createPractitionerReference(@Nonnull User user) {
-		Reference reference = createReferenceOfType(user, FhirConstants.PRACTITIONER);
-		
-		if (user.getPerson() != null) {
-			if (user.getPerson().getPersonName() != null) {
-				reference.setDisplay(user.getPerson().getPersonName().getFullName());
-			}
-		}
-		
-		return reference;
+		return createReferenceOfType(user, FhirConstants.PRACTITIONER).setDisplay(FhirReferenceDisplayCache
+		        .getDisplay(FhirConstants.PRACTITIONER, user.getUuid(), () -> getPersonDisplay(user.getPerson())));
 	}
 	
 	public static Reference createPractitionerReference(@Nonnull Provider provider) {
 		Reference reference = createReferenceOfType(provider, FhirConstants.PRACTITIONER);
-		
-		if (provider.getPerson() != null) {
-			Person person = provider.getPerson();
-			if (person.getPersonName() != null) {
-				reference.setDisplay(person.getPersonName().getFullName());
-			}
-		}
+		reference.setDisplay(FhirReferenceDisplayCache.getDisplay(FhirConstants.PRACTITIONER, provider.getUuid(),
+		    () -> getPersonDisplay(provider.getPerson())));
 		
 		if (provider.getIdentifier() != null) {
 			reference.setIdentifier(new Identifier().setValue(provider.getIdentifier()));
@@ -198,6 +166,38 @@ public final class ReferenceHandlingTranslator {
 		return FhirUtils.referenceToId(reference.getReference());
 	}
 	
+	private static String getPatientDisplay(@Nonnull Patient patient) {
+		StringBuilder sb = new StringBuilder();
+		if (patient.getPersonName() != null) {
+			sb.append(patient.getPersonName().getFullName());
+		}
+		
+		PatientIdentifier identifier = patient.getPatientIdentifier();
+		if (identifier != null && identifier.getIdentifier() != null) {
+			if (sb.length() > 0) {
+				sb.append(" ");
+			}
+			sb.append("(");
+			
+			PatientIdentifierType identifierType = identifier.getIdentifierType();
+			if (identifierType != null && identifierType.getName() != null) {
+				sb.append(getMetadataTranslation(identifierType)).append(": ");
+			}
+			
+			sb.append(identifier.getIdentifier()).append(")");
+		}
+		
+		return sb.toString();
+	}
+	
+	private static String getPersonDisplay(Person person) {
+		if (person == null || person.getPersonName() == null) {
+			return null;
+		}
+		
+		return person.getPersonName().getFullName();
+	}
+	
 	private static Reference createReferenceOfType(@Nonnull OpenmrsObject object, @Nonnull String referenceType) {
 		return createReferenceOfType(object.getUuid(), referenceType);
 	}
@@ -16,9 +16,13 @@ import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.
 import javax.annotation.Nonnull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -34,7 +38,6 @@ import org.openmrs.ConceptSource;
 import org.openmrs.module.fhir2.api.FhirConceptSourceService;
 import org.openmrs.module.fhir2.api.translators.ValueSetReferenceTranslator;
 import org.openmrs.module.fhir2.api.translators.ValueSetTranslator;
-import org.openmrs.module.fhir2.model.FhirConceptSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -57,25 +60,11 @@ public class ValueSetTranslatorImpl implements ValueSetTranslator {
 	
 	@Override
 	public ValueSet toFhirResource(@Nonnull Concept concept) {
-		if (concept == null) {
+		ValueSet valueSet = toFhirResourceSummary(concept);
+		if (valueSet == null) {
 			return null;
 		}
 		
-		if (!concept.getSet()) {
-			return null;
-		}
-		
-		ValueSet valueSet = new ValueSet();
-		valueSet.setId(concept.getUuid());
-		valueSet.setTitle(Optional.ofNullable(concept.getName()).map(ConceptName::getName).orElse(""));
-		valueSet.setStatus(Enumerations.PublicationStatus.ACTIVE);
-		
-		valueSet.setDate((concept.getDateChanged() != null) ? concept.getDateChanged() : concept.getDateCreated());
-		
-		String description = (concept.getDescription() == null || concept.getDescription().getDescription() == null) ? ""
-		        : concept.getDescription().getDescription();
-		valueSet.setDescription(description);
-		
 		ValueSet.ValueSetComposeComponent compose = new ValueSet.ValueSetComposeComponent();
 		
 		Map<String, ValueSet.ConceptSetComponent> sets = new HashMap<>();
@@ -129,13 +118,82 @@ public class ValueSetTranslatorImpl implements ValueSetTranslator {
 		
 		compose.setInclude(new ArrayList<>(sets.values()));
 		valueSet.setCompose(compose);
+		return valueSet;
+	}
+	
+	@Override
+	public ValueSet toFhirResourceSummary(@Nonnull Concept concept) {
+		if (concept == null || !Boolean.TRUE.equals(concept.getSet())) {
+			return null;
+		}
+		
+		ValueSet valueSet = new ValueSet();
+		valueSet.setId(concept.getUuid());
+		valueSet.setTitle(Optional.ofNullable(concept.getName()).map(ConceptName::getName).orElse(""));
+		valueSet.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		
+		valueSet.setDate((concept.getDateChanged() != null) ? concept.getDateChanged() : concept.getDateCreated());
+		
+		String description = (concept.getDescription() == null || concept.getDescription().getDescription() == null) ? ""
+		        : concept.getDescription().getDescription();
+		valueSet.setDescription(description);
 		
 		valueSet.getMeta().setLastUpdated(getLastUpdated(concept));
 		valueSet.getMeta().setVersionId(getVersionId(concept));
 		return valueSet;
 	}
 	
+	@Override
+	public List<ValueSet.ValueSetExpansionContainsComponent> toExpansionContains(@Nonnull Concept concept) {
+		if (concept == null || !Boolean.TRUE.equals(concept.getSet())) {
+			return Collections.emptyList();
+		}
+		
+		List<ValueSet.ValueSetExpansionContainsComponent> contains = new ArrayList<>();
+		addExpansionContains(contains, concept, new HashSet<>(), new HashSet<>(), new HashMap<>());
+		return contains;
+	}
+	
+	private void addExpansionContains(List<ValueSet.ValueSetExpansionContainsComponent> contains, Concept conceptSet,
+	        Set<Concept> visitedSets, Set<Concept> addedMembers, Map<ConceptSource, String> conceptSourceCache) {
+		// guards against sets which (indirectly) contain themselves
+		if (!visitedSets.add(conceptSet)) {
+			return;
+		}
+		
+		for (ConceptSet conceptSetEntry : conceptSet.getConceptSets()) {
+			Concept conceptSetMember = conceptSetEntry.getConcept();
+			if (conceptSetMember == null) {
+				continue;
+			}
+			
+			if (Boolean.TRUE.equals(conceptSetMember.getSet())) {
+				addExpansionContains(contains, conceptSetMember, visitedSets, addedMembers, conceptSourceCache);
+				continue;
+			}
+			
+			if (!addedMembers.add(conceptSetMember)) {
+				continue;
+			}
+			
+			String display = conceptSetMember.getDisplayString();
+			contains.add(new ValueSet.ValueSetExpansionContainsComponent().setCode(conceptSetMember.getUuid())
+			        .setDisplay(display));
+			
+			if (conceptSetMember.getConceptMappings() != null) {
+				for (ConceptMap conceptMapping : conceptSetMember.getConceptMappings()) {
+					ConceptReferenceTerm crt = conceptMapping.getConceptReferenceTerm();
+					String sourceUrl = conceptSourceCache.computeIfAbsent(crt.getConceptSource(), this::conceptSourceToURL);
+					if (sourceUrl != null) {
+						contains.add(new ValueSet.ValueSetExpansionContainsComponent().setSystem(sourceUrl)
+						        .setCode(crt.getCode()).setDisplay(display));
+					}
+				}
+			}
+		}
+	}
+	
 	private String conceptSourceToURL(ConceptSource conceptSource) {
-		return conceptSourceService.getFhirConceptSource(conceptSource).map(FhirConceptSource::getUrl).orElse(null);
+		return conceptSourceService.getFhirConceptSourceUrl(conceptSource).orElse(null);
 	}
 }
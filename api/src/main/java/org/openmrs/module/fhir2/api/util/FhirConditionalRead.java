@@ -0,0 +1,124 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Holds the conditions of a conditional read, i.e., the If-None-Match and If-Modified-Since headers of
+ * the request being processed, so that services can tell that the client already has the current
+ * version of a resource as soon as they have loaded the OpenMRS object, without translating it. <br/>
+ * The conditions only apply to the single resource the request reads; other resources loaded while
+ * processing the request are never treated as unmodified. Like {@link FhirGlobalPropertyHolder}, the
+ * state of this class is static, as the conditions are set by the web layer and read by the services.
+ */
+public final class FhirConditionalRead {
+	
+	private static final ThreadLocal<Condition> currentCondition = new ThreadLocal<>();
+	
+	private FhirConditionalRead() {
+	}
+	
+	/**
+	 * Sets the conditions of the read of a single resource for the current thread
+	 *
+	 * @param resourceType the type of the resource being read, e.g., "Patient"
+	 * @param id the id of the resource being read
+	 * @param ifNoneMatch the value of the If-None-Match header or null if there is none
+	 * @param ifModifiedSince the value of the If-Modified-Since header or null if there is none
+	 */
+	public static void begin(@Nonnull String resourceType, @Nonnull String id, String ifNoneMatch, Date ifModifiedSince) {
+		Set<String> versionIds = parseEntityTags(ifNoneMatch);
+		if (versionIds.isEmpty() && ifModifiedSince == null) {
+			currentCondition.remove();
+			return;
+		}
+		
+		currentCondition.set(new Condition(resourceType, id, versionIds, ifModifiedSince));
+	}
+	
+	/**
+	 * Clears the conditions for the current thread
+	 */
+	public static void end() {
+		currentCondition.remove();
+	}
+	
+	/**
+	 * Determines whether the client already has the current version of the supplied resource. As
+	 * specified by HTTP, If-Modified-Since is ignored when If-None-Match is present.
+	 *
+	 * @param resourceType the type of the resource, e.g., "Patient"
+	 * @param id the id of the resource
+	 * @param versionId the current version id of the resource
+	 * @param lastUpdated the time the resource was last updated
+	 * @return true if the conditions of the current request show that the resource is not modified
+	 */
+	public static boolean isNotModified(@Nonnull String resourceType, @Nonnull String id, String versionId,
+	        Date lastUpdated) {
+		Condition condition = currentCondition.get();
+		if (condition == null || !condition.resourceType.equals(resourceType) || !condition.id.equals(id)) {
+			return false;
+		}
+		
+		if (!condition.versionIds.isEmpty()) {
+			return condition.versionIds.contains("*") || (versionId != null && condition.versionIds.contains(versionId));
+		}
+		
+		// HTTP dates only have a precision of seconds
+		return lastUpdated != null && lastUpdated.getTime() / 1000 <= condition.ifModifiedSince.getTime() / 1000;
+	}
+	
+	private static Set<String> parseEntityTags(String ifNoneMatch) {
+		Set<String> result = new HashSet<>();
+		if (StringUtils.isBlank(ifNoneMatch)) {
+			return result;
+		}
+		
+		for (String entityTag : ifNoneMatch.split(",")) {
+			entityTag = entityTag.trim();
+			// If-None-Match uses weak comparison, so W/"1" matches "1"
+			if (entityTag.startsWith("W/")) {
+				entityTag = entityTag.substring(2);
+			}
+			
+			entityTag = StringUtils.strip(entityTag, "\"");
+			if (!entityTag.isEmpty()) {
+				result.add(entityTag);
+			}
+		}
+		
+		return result;
+	}
+	
+	private static final class Condition {
+		
+		private final String resourceType;
+		
+		private final String id;
+		
+		private final Set<String> versionIds;
+		
+		private final Date ifModifiedSince;
+		
+		private Condition(String resourceType, String id, Set<String> versionIds, Date ifModifiedSince) {
+			this.resourceType = resourceType;
+			this.id = id;
+			this.versionIds = versionIds;
+			this.ifModifiedSince = ifModifiedSince;
+		}
+	}
+}
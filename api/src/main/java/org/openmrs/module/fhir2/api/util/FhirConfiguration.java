@@ -0,0 +1,72 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.openmrs.module.fhir2.FhirConstants.GLOBAL_PROPERTY_URI_PREFIX;
+import static org.openmrs.module.fhir2.FhirConstants.METRICS_ENABLED;
+import static org.openmrs.module.fhir2.FhirConstants.OBS_VALUE_TEXT_INDEX_ENABLED;
+import static org.openmrs.module.fhir2.FhirConstants.READ_CACHE_CONTROL;
+import static org.openmrs.module.fhir2.FhirConstants.REFERENCE_DISPLAY_CACHE_SECONDS;
+import static org.openmrs.module.fhir2.FhirConstants.SEARCH_CACHE_CONTROL;
+import static org.openmrs.module.fhir2.FhirConstants.SLOW_SEARCH_THRESHOLD_MILLIS;
+import static org.openmrs.module.fhir2.FhirConstants.STREAMING_BUNDLE_THRESHOLD;
+import static org.openmrs.module.fhir2.FhirConstants.TRANSLATED_RESOURCE_CACHE_SIZE;
+
+import lombok.Getter;
+
+/**
+ * An immutable, typed view of the global properties read while handling each request. An instance
+ * is built once from the values held by {@link FhirGlobalPropertyHolder} and replaced whenever one of
+ * the module's global properties changes, so that code on the request path reads plain fields
+ * instead of looking properties up by name and converting them.
+ *
+ * @see FhirGlobalPropertyHolder#getConfiguration()
+ */
+@Getter
+public final class FhirConfiguration {
+	
+	public static final String DEFAULT_READ_CACHE_CONTROL = "private, no-cache";
+	
+	public static final String DEFAULT_SEARCH_CACHE_CONTROL = "no-store";
+	
+	public static final int DEFAULT_STREAMING_BUNDLE_THRESHOLD = 50;
+	
+	private final String uriPrefix;
+	
+	private final boolean metricsEnabled;
+	
+	private final int slowSearchThresholdMillis;
+	
+	private final boolean obsValueTextIndexEnabled;
+	
+	private final int referenceDisplayCacheSeconds;
+	
+	private final int translatedResourceCacheSize;
+	
+	private final String readCacheControl;
+	
+	private final String searchCacheControl;
+	
+	private final int streamingBundleThreshold;
+	
+	FhirConfiguration() {
+		uriPrefix = FhirGlobalPropertyHolder.getGlobalProperty(GLOBAL_PROPERTY_URI_PREFIX);
+		metricsEnabled = FhirGlobalPropertyHolder.getGlobalPropertyAsBoolean(METRICS_ENABLED, false);
+		slowSearchThresholdMillis = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(SLOW_SEARCH_THRESHOLD_MILLIS, 0);
+		obsValueTextIndexEnabled = FhirGlobalPropertyHolder.getGlobalPropertyAsBoolean(OBS_VALUE_TEXT_INDEX_ENABLED, false);
+		referenceDisplayCacheSeconds = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(REFERENCE_DISPLAY_CACHE_SECONDS,
+		    0);
+		translatedResourceCacheSize = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(TRANSLATED_RESOURCE_CACHE_SIZE, 0);
+		readCacheControl = FhirGlobalPropertyHolder.getGlobalProperty(READ_CACHE_CONTROL, DEFAULT_READ_CACHE_CONTROL);
+		searchCacheControl = FhirGlobalPropertyHolder.getGlobalProperty(SEARCH_CACHE_CONTROL, DEFAULT_SEARCH_CACHE_CONTROL);
+		streamingBundleThreshold = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(STREAMING_BUNDLE_THRESHOLD,
+		    DEFAULT_STREAMING_BUNDLE_THRESHOLD);
+	}
+}
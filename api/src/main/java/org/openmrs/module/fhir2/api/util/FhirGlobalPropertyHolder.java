@@ -11,65 +11,72 @@ package org.openmrs.module.fhir2.api.util;
 
 import static org.openmrs.module.fhir2.FhirConstants.FHIR2_MODULE_ID;
 
+import javax.annotation.Nonnull;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.openmrs.GlobalProperty;
 import org.openmrs.api.APIException;
 import org.openmrs.api.GlobalPropertyListener;
 import org.openmrs.api.context.Context;
 import org.openmrs.util.PrivilegeConstants;
 
+/**
+ * Holds the values of the global properties used by this module. Values are held in an immutable
+ * snapshot, which is replaced whenever a value is loaded or changed, so that reading a value never
+ * takes a lock. Integer and boolean values are parsed once, when the value is loaded, rather than on
+ * every read. The properties read on every request are also exposed as fields of a typed
+ * {@link FhirConfiguration}, which is rebuilt after any change. <br/>
+ * Components which derive state from a global property can subscribe to changes to it using
+ * {@link #addListener(Consumer, String...)}.
+ */
 @Slf4j
 public class FhirGlobalPropertyHolder implements GlobalPropertyListener {
 	
-	private static final Map<String, String> globalPropertyCache = new ConcurrentHashMap<>(1 << 4 << 4);
+	private static final AtomicLong generation = new AtomicLong();
 	
-	// the idea of missing keys is essentially to store "cache misses" so we avoid needing to do unnecessary lookups
-	private static final Set<String> missingKeys = ConcurrentHashMap.newKeySet();
+	// missing properties are stored as values with a null value, so we avoid needing to do unnecessary lookups
+	private static volatile Map<String, GlobalPropertyValue> globalProperties = Collections.emptyMap();
 	
-	public static String getGlobalProperty(String globalProperty) {
-		if (missingKeys.contains(globalProperty)) {
-			return null;
-		} else {
-			if (!supportsProperty(globalProperty)) {
-				return null;
-			}
-			
-			return globalPropertyCache.computeIfAbsent(globalProperty, (gp) -> {
-				String gpValue = null;
-				
-				boolean hasUserContext = false;
-				try {
-					Context.addProxyPrivilege(PrivilegeConstants.GET_GLOBAL_PROPERTIES);
-					hasUserContext = true;
-				}
-				catch (APIException ignored) {}
-				
-				try {
-					gpValue = Context.getAdministrationService().getGlobalProperty(gp);
-				}
-				catch (APIException ignored) {
-					
-				}
-				finally {
-					if (hasUserContext) {
-						Context.removeProxyPrivilege(PrivilegeConstants.GET_GLOBAL_PROPERTIES);
-					}
-				}
-				
-				if (gpValue == null || gpValue.isEmpty()) {
-					missingKeys.add(gp);
-					return null;
+	private static final List<Pair<Set<String>, Consumer<String>>> listeners = new CopyOnWriteArrayList<>();
+	
+	private static final AtomicLong configurationVersion = new AtomicLong();
+	
+	private static volatile FhirConfiguration configuration;
+	
+	/**
+	 * @return the typed configuration built from the current values of the global properties
+	 */
+	public static FhirConfiguration getConfiguration() {
+		FhirConfiguration result = configuration;
+		if (result == null) {
+			long expectedVersion = configurationVersion.get();
+			result = new FhirConfiguration();
+			synchronized (FhirGlobalPropertyHolder.class) {
+				// a value changed while the configuration was being built, so it may already be stale
+				if (configurationVersion.get() == expectedVersion) {
+					configuration = result;
 				}
-				
-				return gpValue;
-			});
+			}
 		}
+		
+		return result;
+	}
+	
+	public static String getGlobalProperty(String globalProperty) {
+		return getGlobalPropertyValue(globalProperty).map(GlobalPropertyValue::getValue).orElse(null);
 	}
 	
 	public static String getGlobalProperty(String globalProperty, String defaultValue) {
@@ -77,20 +84,23 @@ public class FhirGlobalPropertyHolder implements GlobalPropertyListener {
 	}
 	
 	public static int getGlobalPropertyAsInteger(String globalProperty, int defaultValue) {
-		String globalPropertyValue = getGlobalProperty(globalProperty);
-		
-		if (globalPropertyValue == null || globalPropertyValue.isEmpty()) {
+		Optional<GlobalPropertyValue> globalPropertyValue = getGlobalPropertyValue(globalProperty);
+		if (!globalPropertyValue.isPresent() || globalPropertyValue.get().getValue() == null) {
 			return defaultValue;
 		}
 		
-		try {
-			return Integer.parseInt(globalPropertyValue);
-		}
-		catch (NumberFormatException e) {
+		Integer result = globalPropertyValue.get().getIntegerValue();
+		if (result == null) {
 			log.error("Error converting global property {} with value '{}' to an integer", globalProperty,
-			    globalPropertyValue, e);
+			    globalPropertyValue.get().getValue());
 			return defaultValue;
 		}
+		
+		return result;
+	}
+	
+	public static boolean getGlobalPropertyAsBoolean(String globalProperty, boolean defaultValue) {
+		return getGlobalPropertyValue(globalProperty).map(GlobalPropertyValue::getBooleanValue).orElse(defaultValue);
 	}
 	
 	public static Map<String, String> getGlobalProperties(String... globalProperties) {
@@ -105,9 +115,27 @@ public class FhirGlobalPropertyHolder implements GlobalPropertyListener {
 		return result;
 	}
 	
+	/**
+	 * Registers a listener to be called with the name of the global property whenever one of the
+	 * supplied global properties is changed or deleted
+	 *
+	 * @param listener the listener to call
+	 * @param globalProperties the names of the global properties the listener is interested in
+	 */
+	public static void addListener(@Nonnull Consumer<String> listener, @Nonnull String... globalProperties) {
+		listeners.add(Pair.of(new HashSet<>(Arrays.asList(globalProperties)), listener));
+	}
+	
+	public static void removeListener(@Nonnull Consumer<String> listener) {
+		listeners.removeIf(entry -> entry.getRight() == listener);
+	}
+	
 	public static void reset() {
-		globalPropertyCache.clear();
-		missingKeys.clear();
+		synchronized (FhirGlobalPropertyHolder.class) {
+			generation.incrementAndGet();
+			globalProperties = Collections.emptyMap();
+			invalidateConfiguration();
+		}
 	}
 	
 	@Override
@@ -117,18 +145,147 @@ public class FhirGlobalPropertyHolder implements GlobalPropertyListener {
 	
 	@Override
 	public void globalPropertyChanged(GlobalProperty globalProperty) {
-		globalPropertyCache.put(globalProperty.getProperty(), globalProperty.getPropertyValue());
-		missingKeys.remove(globalProperty.getProperty());
+		putGlobalPropertyValue(new GlobalPropertyValue(globalProperty.getProperty(), globalProperty.getPropertyValue()),
+		    true, generation.get());
+		notifyListeners(globalProperty.getProperty());
 	}
 	
 	@Override
 	public void globalPropertyDeleted(String globalProperty) {
-		globalPropertyCache.remove(globalProperty);
-		missingKeys.add(globalProperty);
+		putGlobalPropertyValue(new GlobalPropertyValue(globalProperty, null), true, generation.get());
+		notifyListeners(globalProperty);
+	}
+	
+	private static Optional<GlobalPropertyValue> getGlobalPropertyValue(String globalProperty) {
+		if (!supportsProperty(globalProperty)) {
+			return Optional.empty();
+		}
+		
+		GlobalPropertyValue result = globalProperties.get(globalProperty);
+		if (result == null) {
+			// the lookup is done without holding any lock, as it may need to wait for the database
+			long expectedGeneration = generation.get();
+			result = putGlobalPropertyValue(new GlobalPropertyValue(globalProperty, loadGlobalProperty(globalProperty)),
+			    false, expectedGeneration);
+		}
+		
+		return Optional.of(result);
+	}
+	
+	private static String loadGlobalProperty(String globalProperty) {
+		String gpValue = null;
+		
+		boolean hasUserContext = false;
+		try {
+			Context.addProxyPrivilege(PrivilegeConstants.GET_GLOBAL_PROPERTIES);
+			hasUserContext = true;
+		}
+		catch (APIException ignored) {}
+		
+		try {
+			gpValue = Context.getAdministrationService().getGlobalProperty(globalProperty);
+		}
+		catch (APIException ignored) {
+			
+		}
+		finally {
+			if (hasUserContext) {
+				Context.removeProxyPrivilege(PrivilegeConstants.GET_GLOBAL_PROPERTIES);
+			}
+		}
+		
+		return gpValue;
+	}
+	
+	private static GlobalPropertyValue putGlobalPropertyValue(GlobalPropertyValue value, boolean replace,
+	        long expectedGeneration) {
+		synchronized (FhirGlobalPropertyHolder.class) {
+			Map<String, GlobalPropertyValue> current = globalProperties;
+			GlobalPropertyValue existing = current.get(value.getProperty());
+			if (existing != null && !replace) {
+				return existing;
+			}
+			
+			// if the properties were reset while we were loading this value, it may already be stale
+			if (generation.get() != expectedGeneration) {
+				return value;
+			}
+			
+			Map<String, GlobalPropertyValue> updated = new HashMap<>(current);
+			updated.put(value.getProperty(), value);
+			globalProperties = Collections.unmodifiableMap(updated);
+			if (replace) {
+				invalidateConfiguration();
+			}
+			
+			return value;
+		}
+	}
+	
+	private static void invalidateConfiguration() {
+		configurationVersion.incrementAndGet();
+		configuration = null;
+	}
+	
+	private static void notifyListeners(String globalProperty) {
+		for (Pair<Set<String>, Consumer<String>> listener : listeners) {
+			if (listener.getLeft().contains(globalProperty)) {
+				try {
+					listener.getRight().accept(globalProperty);
+				}
+				catch (RuntimeException e) {
+					log.error("Exception caught while notifying listener of change to global property {}", globalProperty,
+					    e);
+				}
+			}
+		}
 	}
 	
 	private static boolean supportsProperty(String globalProperty) {
 		return globalProperty != null
 		        && (globalProperty.startsWith(FHIR2_MODULE_ID) || globalProperty.startsWith("allergy"));
 	}
+	
+	private static final class GlobalPropertyValue {
+		
+		private final String property;
+		
+		private final String value;
+		
+		private final Integer integerValue;
+		
+		private final Boolean booleanValue;
+		
+		private GlobalPropertyValue(String property, String value) {
+			this.property = property;
+			this.value = value == null || value.isEmpty() ? null : value;
+			
+			Integer parsedInteger = null;
+			if (this.value != null) {
+				try {
+					parsedInteger = Integer.parseInt(this.value.trim());
+				}
+				catch (NumberFormatException ignored) {}
+			}
+			
+			this.integerValue = parsedInteger;
+			this.booleanValue = this.value == null ? null : Boolean.parseBoolean(this.value.trim());
+		}
+		
+		private String getProperty() {
+			return property;
+		}
+		
+		private String getValue() {
+			return value;
+		}
+		
+		private Integer getIntegerValue() {
+			return integerValue;
+		}
+		
+		private Boolean getBooleanValue() {
+			return booleanValue;
+		}
+	}
 }
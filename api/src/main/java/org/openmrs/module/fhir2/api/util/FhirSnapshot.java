@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nonnull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds an immutable in-memory snapshot of data which is small and rarely changes, e.g., the contents
+ * of a small table. The snapshot is loaded on first use and kept until it is invalidated; readers
+ * always see either the previous or the next complete snapshot, never a partially built one.
+ *
+ * @param <T> the type of the snapshot
+ */
+public class FhirSnapshot<T> {
+	
+	private final T empty;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile T snapshot = null;
+	
+	/**
+	 * @param empty the snapshot to return when the snapshot cannot be loaded
+	 */
+	public FhirSnapshot(@Nonnull T empty) {
+		this.empty = empty;
+	}
+	
+	/**
+	 * Gets the current snapshot, loading it if there is none. If the loader fails, the empty snapshot is
+	 * returned and loading is retried on the next call.
+	 *
+	 * @param loader loads the snapshot, returning null if it could not be loaded
+	 * @return the current snapshot
+	 */
+	public T get(@Nonnull Supplier<T> loader) {
+		T result = snapshot;
+		if (result == null) {
+			synchronized (this) {
+				result = snapshot;
+				if (result == null) {
+					long expectedGeneration = generation.get();
+					result = loader.get();
+					if (result == null) {
+						return empty;
+					}
+					
+					// if the data changed while we were loading it, this snapshot may already be stale
+					if (generation.get() == expectedGeneration) {
+						snapshot = result;
+					}
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Discards the current snapshot, so that it is loaded again on next use
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		snapshot = null;
+	}
+}
@@ -29,6 +29,7 @@ import org.openmrs.Concept;
 import org.openmrs.OpenmrsMetadata;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.cache.FhirMetadataTranslationCache;
 
 @Slf4j
 public class FhirUtils {
@@ -200,16 +201,18 @@ public class FhirUtils {
 	 * @return localization for the given metadata, from message source, in the authenticated locale
 	 */
 	public static String getMetadataTranslation(OpenmrsMetadata metadata) {
-		String className = metadata.getClass().getSimpleName();
+		String className = getShortClassName(metadata.getClass().getSimpleName());
 		String uuid = metadata.getUuid();
 		
-		String localization = getLocalization(className, uuid);
-		
-		if (localization == null) {
-			return metadata.getName();
-		} else {
-			return localization;
-		}
+		return FhirMetadataTranslationCache.getTranslation(className, uuid, () -> {
+			String localization = getLocalization(className, uuid);
+			
+			if (localization == null) {
+				return metadata.getName();
+			} else {
+				return localization;
+			}
+		});
 	}
 	
 	public static String getMetadataTranslation(Concept concept) {
@@ -227,14 +230,7 @@ public class FhirUtils {
 	
 	// This code is from the REST module which derived it from the UI framework
 	private static String getLocalization(String shortClassName, String uuid) {
-		// in case this is a hibernate proxy, strip off anything after an underscore
-		// ie: EncounterType_$$_javassist_26 needs to be converted to EncounterType
-		int underscoreIndex = shortClassName.indexOf("_$");
-		if (underscoreIndex > 0) {
-			shortClassName = shortClassName.substring(0, underscoreIndex);
-		}
-		
-		String code = "ui.i18n." + shortClassName + ".name." + uuid;
+		String code = "ui.i18n." + getShortClassName(shortClassName) + ".name." + uuid;
 		String localization = null;
 		try {
 			localization = Context.getMessageSourceService().getMessage(code, null, Context.getLocale());
@@ -249,4 +245,15 @@ public class FhirUtils {
 			return localization;
 		}
 	}
+	
+	private static String getShortClassName(String shortClassName) {
+		// in case this is a hibernate proxy, strip off anything after an underscore
+		// ie: EncounterType_$$_javassist_26 needs to be converted to EncounterType
+		int underscoreIndex = shortClassName.indexOf("_$");
+		if (underscoreIndex > 0) {
+			return shortClassName.substring(0, underscoreIndex);
+		}
+		
+		return shortClassName;
+	}
 }
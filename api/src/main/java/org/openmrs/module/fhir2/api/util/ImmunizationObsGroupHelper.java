@@ -45,6 +45,7 @@ import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.ObsService;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.cache.FhirConceptMappingCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -67,6 +68,10 @@ public class ImmunizationObsGroupHelper {
 	@Setter(value = PROTECTED, onMethod_ = @Autowired)
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Getter(value = PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private FhirConceptMappingCache conceptMappingCache;
+	
 	public static UnprocessableEntityException createImmunizationRequestValidationError(@Nonnull String errMsg) {
 		return new UnprocessableEntityException(errMsg, createExceptionErrorOperationOutcome(errMsg));
 	}
@@ -205,12 +210,7 @@ public class ImmunizationObsGroupHelper {
 			return Optional.empty();
 		}
 		
-		Concept result = conceptService.getConceptByMapping(mapping[1], mapping[0]);
-		
-		if (result == null) {
-			return Optional.empty();
-		}
-		
-		return Optional.of(result);
+		return conceptMappingCache.getConceptBySourceName(mapping[0], mapping[1],
+		    () -> conceptService.getConceptByMapping(mapping[1], mapping[0]));
 	}
 }
@@ -0,0 +1,153 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static lombok.AccessLevel.PROTECTED;
+
+import javax.annotation.Nonnull;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.fhir.ucum.Decimal;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts quantities between UCUM units using the UCUM services configured for this module.
+ * Parsing and comparing units with the UCUM library is relatively expensive, so both the validity of
+ * each unit and the conversion between each pair of units are cached. Every conversion supported by
+ * UCUM is linear, or affine for units such as degrees Celsius, so a cached conversion is just a
+ * factor and an offset.
+ */
+@Slf4j
+@Component
+public class UcumUnitConverter {
+	
+	private static final int MAX_CACHED_UNITS = 10_000;
+	
+	@Getter(PROTECTED)
+	@Setter(value = PROTECTED, onMethod_ = @Autowired)
+	private List<UcumEssenceService> ucumServices;
+	
+	private final Cache<String, Boolean> validUnits = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_UNITS).build();
+	
+	private final Cache<Pair<String, String>, Optional<UnitConversion>> conversions = CacheBuilder.newBuilder()
+	        .maximumSize(MAX_CACHED_UNITS).build();
+	
+	/**
+	 * @param units the unit code to check
+	 * @return true if the unit code is valid according to any of the configured UCUM services
+	 */
+	public boolean isValidUnit(String units) {
+		if (StringUtils.isBlank(units)) {
+			return false;
+		}
+		
+		Boolean result = validUnits.getIfPresent(units);
+		if (result == null) {
+			result = ucumServices.stream().anyMatch(ucumService -> ucumService.validate(units) == null);
+			validUnits.put(units, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Gets the conversion from one UCUM unit to another
+	 *
+	 * @param sourceUnits the units the value to convert is expressed in
+	 * @param targetUnits the units to convert the value to
+	 * @return the {@link UnitConversion} between the two units or an empty optional if the units are not
+	 *         comparable
+	 */
+	public Optional<UnitConversion> getConversion(@Nonnull String sourceUnits, @Nonnull String targetUnits) {
+		if (sourceUnits.equals(targetUnits)) {
+			return Optional.of(UnitConversion.IDENTITY);
+		}
+		
+		Pair<String, String> key = Pair.of(sourceUnits, targetUnits);
+		Optional<UnitConversion> result = conversions.getIfPresent(key);
+		if (result == null) {
+			result = Optional.ofNullable(createConversion(sourceUnits, targetUnits));
+			conversions.put(key, result);
+		}
+		
+		return result;
+	}
+	
+	private UnitConversion createConversion(String sourceUnits, String targetUnits) {
+		if (!isValidUnit(sourceUnits) || !isValidUnit(targetUnits)) {
+			return null;
+		}
+		
+		for (UcumEssenceService ucumService : ucumServices) {
+			try {
+				if (ucumService.validate(sourceUnits) != null || ucumService.validate(targetUnits) != null
+				        || !ucumService.isComparable(sourceUnits, targetUnits)) {
+					continue;
+				}
+				
+				BigDecimal offset = toBigDecimal(ucumService.convert(new Decimal("0"), sourceUnits, targetUnits));
+				BigDecimal factor = toBigDecimal(ucumService.convert(new Decimal("1"), sourceUnits, targetUnits))
+				        .subtract(offset);
+				
+				// a conversion which does not preserve ordering cannot be used for range comparisons
+				if (factor.signum() > 0) {
+					return new UnitConversion(factor, offset);
+				}
+			}
+			catch (UcumException | RuntimeException e) {
+				log.debug("Unable to convert from {} to {}", sourceUnits, targetUnits, e);
+			}
+		}
+		
+		return null;
+	}
+	
+	private static BigDecimal toBigDecimal(Decimal decimal) {
+		return new BigDecimal(decimal.asDecimal());
+	}
+	
+	/**
+	 * An order-preserving conversion between two units, i.e., {@code target = source * factor + offset}
+	 */
+	public static final class UnitConversion implements UnaryOperator<BigDecimal> {
+		
+		static final UnitConversion IDENTITY = new UnitConversion(BigDecimal.ONE, BigDecimal.ZERO);
+		
+		@Getter
+		private final BigDecimal factor;
+		
+		@Getter
+		private final BigDecimal offset;
+		
+		UnitConversion(BigDecimal factor, BigDecimal offset) {
+			this.factor = factor;
+			this.offset = offset;
+		}
+		
+		@Override
+		public BigDecimal apply(BigDecimal value) {
+			return value.multiply(factor).add(offset);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * An observation whose entries in the word index over {@code obs.value_text} must be updated. These
+ * are recorded as soon as the transaction which changed the observation has completed and are only
+ * removed once the index has been updated, so that updates which are lost, e.g., because the server
+ * stopped first, are still made later.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_obs_value_text_pending")
+public class FhirObsValueTextPending {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "obs_value_text_pending_id")
+	private Integer id;
+	
+	@Column(name = "obs_uuid", nullable = false, length = 38)
+	private String obsUuid;
+	
+	public FhirObsValueTextPending(String obsUuid) {
+		this.obsUuid = obsUuid;
+	}
+}
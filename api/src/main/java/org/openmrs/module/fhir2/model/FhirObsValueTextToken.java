@@ -0,0 +1,51 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single word of the text value of an observation. Together these form a word index over
+ * {@code obs.value_text}, allowing value-string searches to find observations via an indexed lookup
+ * rather than a {@code LIKE} over every observation.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_obs_value_text_token")
+public class FhirObsValueTextToken {
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "obs_value_text_token_id")
+	private Integer id;
+	
+	@Column(name = "obs_id", nullable = false)
+	private Integer obsId;
+	
+	@Column(name = "token", nullable = false, length = 100)
+	private String token;
+	
+	public FhirObsValueTextToken(Integer obsId, String token) {
+		this.obsId = obsId;
+		this.token = token;
+	}
+}
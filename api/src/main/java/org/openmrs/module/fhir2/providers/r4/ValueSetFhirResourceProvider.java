@@ -15,6 +15,8 @@ import static lombok.AccessLevel.PROTECTED;
 import javax.annotation.Nonnull;
 
 import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.Search;
@@ -26,6 +28,8 @@ import lombok.Getter;
 import lombok.Setter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.r4.model.ValueSet;
 import org.openmrs.module.fhir2.api.FhirValueSetService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
@@ -54,6 +58,13 @@ public class ValueSetFhirResourceProvider implements IResourceProvider {
 		return valueSet;
 	}
 	
+	@Operation(name = "expand", idempotent = true)
+	public ValueSet expandValueSet(@IdParam @Nonnull IdType id, @OperationParam(name = "filter") StringType filter,
+	        @OperationParam(name = "offset") IntegerType offset, @OperationParam(name = "count") IntegerType count) {
+		return fhirValueSetService.expand(id.getIdPart(), filter == null ? null : filter.getValue(),
+		    offset == null ? null : offset.getValue(), count == null ? null : count.getValue());
+	}
+	
 	@Search
 	public IBundleProvider searchValueSets(@OptionalParam(name = ValueSet.SP_TITLE) StringAndListParam title) {
 		return fhirValueSetService.searchForValueSets(title);
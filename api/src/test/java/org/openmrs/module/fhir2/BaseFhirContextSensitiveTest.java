@@ -9,8 +9,11 @@
  */
 package org.openmrs.module.fhir2;
 
+import java.util.List;
+
 import org.junit.Before;
 import org.openmrs.api.cache.CacheConfig;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
 import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,10 +25,15 @@ public abstract class BaseFhirContextSensitiveTest extends BaseModuleContextSens
 	@Autowired
 	CacheConfig cacheConfig;
 	
+	@Autowired
+	List<FhirEntityChangeListener> entityChangeListeners;
+	
 	@Before
 	public void setupBaseFhirContextSensitive() {
 		// Needed until TRUNK-6299 in place
 		cacheConfig.cacheManager().getCacheNames().forEach(name -> cacheConfig.cacheManager().getCache(name).clear());
 		FhirGlobalPropertyHolder.reset();
+		// data sets are loaded outside of Hibernate, so in-memory snapshots won't see them unless reset
+		entityChangeListeners.forEach(FhirEntityChangeListener::reset);
 	}
 }
@@ -0,0 +1,81 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import javax.annotation.Nonnull;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.openmrs.Concept;
+import org.openmrs.OpenmrsObject;
+
+/**
+ * Caches which never cache anything, for unit tests of the components using them
+ */
+public final class FhirCacheTestUtils {
+	
+	private FhirCacheTestUtils() {
+	}
+	
+	public static FhirConceptTranslationCache uncachedConceptTranslations() {
+		return new FhirConceptTranslationCache() {
+			
+			@Override
+			public CodeableConcept get(@Nonnull Concept concept, @Nonnull Function<Concept, CodeableConcept> translator) {
+				return translator.apply(concept);
+			}
+		};
+	}
+	
+	public static FhirConceptMappingCache uncachedConceptMappings() {
+		return new FhirConceptMappingCache() {
+			
+			@Override
+			public Optional<Concept> getConcept(@Nonnull String systemUrl, @Nonnull String code,
+			        @Nonnull Supplier<Concept> loader) {
+				return Optional.ofNullable(loader.get());
+			}
+			
+			@Override
+			public Optional<Concept> getConceptBySourceName(@Nonnull String sourceName, @Nonnull String code,
+			        @Nonnull Supplier<Concept> loader) {
+				return Optional.ofNullable(loader.get());
+			}
+		};
+	}
+	
+	public static FhirValueSetExpansionCache uncachedValueSetExpansions() {
+		return new FhirValueSetExpansionCache() {
+			
+			@Override
+			public List<ValueSet.ValueSetExpansionContainsComponent> get(@Nonnull Concept conceptSet,
+			        @Nonnull Function<Concept, List<ValueSet.ValueSetExpansionContainsComponent>> expander) {
+				return expander.apply(conceptSet);
+			}
+		};
+	}
+	
+	public static FhirTranslatedResourceCache uncachedTranslatedResources() {
+		return new FhirTranslatedResourceCache() {
+			
+			@Override
+			public <U extends OpenmrsObject, T extends Resource> T get(@Nonnull U object,
+			        @Nonnull Function<U, T> translator) {
+				return translator.apply(object);
+			}
+		};
+	}
+}
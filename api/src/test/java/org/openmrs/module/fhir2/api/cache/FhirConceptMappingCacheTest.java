@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import co.unruly.matchers.OptionalMatchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.api.ConceptService;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+public class FhirConceptMappingCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String LOINC_URL = "http://loinc.org";
+	
+	private static final String WEIGHT_CODE = "29463-7";
+	
+	private static final String UNMAPPED_CODE = "00000-0";
+	
+	@Autowired
+	private FhirConceptMappingCache conceptMappingCache;
+	
+	@Autowired
+	@Qualifier("conceptService")
+	private ConceptService conceptService;
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private Concept weight;
+	
+	@Before
+	public void setup() {
+		weight = conceptService.getConcept(5089);
+	}
+	
+	@Test
+	public void getConcept_shouldCacheResolvedConcept() {
+		assertThat(conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight)),
+		    OptionalMatchers.contains(weight));
+		assertThat(conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight)),
+		    OptionalMatchers.contains(weight));
+		
+		assertThat(loads.get(), equalTo(1));
+	}
+	
+	@Test
+	public void getConcept_shouldCacheCodesWithoutConcept() {
+		assertThat(conceptMappingCache.getConcept(LOINC_URL, UNMAPPED_CODE, loader(null)), OptionalMatchers.empty());
+		assertThat(conceptMappingCache.getConcept(LOINC_URL, UNMAPPED_CODE, loader(null)), OptionalMatchers.empty());
+		
+		assertThat(loads.get(), equalTo(1));
+	}
+	
+	@Test
+	public void getConceptBySourceName_shouldNotShareEntriesWithSystemUrls() {
+		conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight));
+		conceptMappingCache.getConceptBySourceName(LOINC_URL, WEIGHT_CODE, loader(weight));
+		
+		assertThat(loads.get(), equalTo(2));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardEntriesForChangedCode() {
+		conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight));
+		conceptMappingCache.getConcept(LOINC_URL, UNMAPPED_CODE, loader(null));
+		
+		ConceptReferenceTerm term = new ConceptReferenceTerm();
+		term.setCode(UNMAPPED_CODE);
+		Object change = conceptMappingCache.describeChange(term);
+		conceptMappingCache.entitiesChanged(Collections.singletonList(change));
+		
+		conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight));
+		assertThat(loads.get(), equalTo(2));
+		
+		conceptMappingCache.getConcept(LOINC_URL, UNMAPPED_CODE, loader(null));
+		assertThat(loads.get(), equalTo(3));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardEntriesForChangedConcept() {
+		conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight));
+		
+		Object change = conceptMappingCache.describeChange(weight);
+		conceptMappingCache.entitiesChanged(Collections.singletonList(change));
+		conceptMappingCache.getConcept(LOINC_URL, WEIGHT_CODE, loader(weight));
+		
+		assertThat(loads.get(), equalTo(2));
+	}
+	
+	private Supplier<Concept> loader(Concept concept) {
+		return () -> {
+			loads.incrementAndGet();
+			return concept;
+		};
+	}
+}
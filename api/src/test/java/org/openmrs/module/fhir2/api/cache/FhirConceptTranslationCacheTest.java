@@ -0,0 +1,112 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.ConceptSource;
+import org.openmrs.api.ConceptService;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+public class FhirConceptTranslationCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final int WEIGHT_CONCEPT_ID = 5089;
+	
+	private static final int CD4_CONCEPT_ID = 5497;
+	
+	@Autowired
+	private FhirConceptTranslationCache conceptTranslationCache;
+	
+	@Autowired
+	@Qualifier("conceptService")
+	private ConceptService conceptService;
+	
+	private final AtomicInteger translations = new AtomicInteger();
+	
+	private final Function<Concept, CodeableConcept> translator = concept -> {
+		translations.incrementAndGet();
+		return new CodeableConcept().setText(concept.getUuid());
+	};
+	
+	private Concept weight;
+	
+	private Concept cd4;
+	
+	@Before
+	public void setup() {
+		weight = conceptService.getConcept(WEIGHT_CONCEPT_ID);
+		cd4 = conceptService.getConcept(CD4_CONCEPT_ID);
+	}
+	
+	@Test
+	public void get_shouldReturnCopiesOfCachedTranslation() {
+		CodeableConcept first = conceptTranslationCache.get(weight, translator);
+		CodeableConcept second = conceptTranslationCache.get(weight, translator);
+		
+		assertThat(translations.get(), equalTo(1));
+		assertThat(second, not(sameInstance(first)));
+		assertThat(second.equalsDeep(first), is(true));
+	}
+	
+	@Test
+	public void get_shouldNotShareChangesMadeByCallers() {
+		conceptTranslationCache.get(weight, translator).setText("changed");
+		
+		assertThat(conceptTranslationCache.get(weight, translator).getText(), equalTo(weight.getUuid()));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardTranslationsOfChangedConcept() {
+		conceptTranslationCache.get(weight, translator);
+		conceptTranslationCache.get(cd4, translator);
+		
+		Object change = conceptTranslationCache.describeChange(weight);
+		conceptTranslationCache.entitiesChanged(Collections.singletonList(change));
+		conceptTranslationCache.get(weight, translator);
+		conceptTranslationCache.get(cd4, translator);
+		
+		assertThat(translations.get(), equalTo(3));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardAllTranslationsWhenConceptSourceChanges() {
+		conceptTranslationCache.get(weight, translator);
+		conceptTranslationCache.get(cd4, translator);
+		
+		Object change = conceptTranslationCache.describeChange(new ConceptSource());
+		conceptTranslationCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(conceptTranslationCache.size(), equalTo(0L));
+	}
+	
+	@Test
+	public void getStatistics_shouldRecordHitsAndMisses() {
+		conceptTranslationCache.get(weight, translator);
+		conceptTranslationCache.get(weight, translator);
+		conceptTranslationCache.get(cd4, translator);
+		
+		assertThat(conceptTranslationCache.getStatistics().hitCount(), equalTo(1L));
+		assertThat(conceptTranslationCache.getStatistics().missCount(), equalTo(2L));
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.LoginCredential;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirCredentialCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String USERNAME = "admin";
+	
+	private static final String PASSWORD = "test";
+	
+	@Autowired
+	private FhirCredentialCache credentialCache;
+	
+	@After
+	public void tearDown() {
+		FhirCredentialCache.release();
+	}
+	
+	@Test
+	public void authenticate_shouldAuthenticateNewUserContextForVerifiedCredentials() {
+		UserContext verifiedUserContext = Context.getUserContext();
+		FhirCredentialCache.authenticated(USERNAME, PASSWORD, FhirCredentialCache.getGeneration());
+		
+		UserContext otherUserContext = new UserContext(Context.getAuthenticationScheme());
+		Context.setUserContext(otherUserContext);
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, PASSWORD), is(true));
+		UserContext cachedUserContext = Context.getUserContext();
+		assertThat(cachedUserContext, not(sameInstance(verifiedUserContext)));
+		assertThat(cachedUserContext, not(sameInstance(otherUserContext)));
+		assertThat(cachedUserContext.getAuthenticatedUser(), equalTo(verifiedUserContext.getAuthenticatedUser()));
+		
+		FhirCredentialCache.release();
+		assertThat(Context.getUserContext(), sameInstance(otherUserContext));
+		Context.setUserContext(verifiedUserContext);
+	}
+	
+	@Test
+	public void authenticate_shouldAuthenticateNewUserContextForEachRequest() {
+		UserContext verifiedUserContext = Context.getUserContext();
+		FhirCredentialCache.authenticated(USERNAME, PASSWORD, FhirCredentialCache.getGeneration());
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, PASSWORD), is(true));
+		UserContext firstUserContext = Context.getUserContext();
+		FhirCredentialCache.release();
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, PASSWORD), is(true));
+		assertThat(Context.getUserContext(), not(sameInstance(firstUserContext)));
+		FhirCredentialCache.release();
+		
+		assertThat(Context.getUserContext(), sameInstance(verifiedUserContext));
+	}
+	
+	@Test
+	public void authenticate_shouldNotAcceptOtherPassword() {
+		FhirCredentialCache.authenticated(USERNAME, PASSWORD, FhirCredentialCache.getGeneration());
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, "wrong"), is(false));
+	}
+	
+	@Test
+	public void authenticated_shouldNotCacheCredentialsChangedWhileVerifying() {
+		long generation = FhirCredentialCache.getGeneration();
+		Object change = credentialCache.describeChange(newLoginCredential());
+		credentialCache.entitiesChanged(Collections.singletonList(change));
+		FhirCredentialCache.authenticated(USERNAME, PASSWORD, generation);
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, PASSWORD), is(false));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardCredentialsWhenPasswordChanges() {
+		FhirCredentialCache.authenticated(USERNAME, PASSWORD, FhirCredentialCache.getGeneration());
+		
+		Object change = credentialCache.describeChange(newLoginCredential());
+		credentialCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(FhirCredentialCache.authenticate(USERNAME, PASSWORD), is(false));
+	}
+	
+	private LoginCredential newLoginCredential() {
+		LoginCredential loginCredential = new LoginCredential();
+		loginCredential.setUserId(Context.getAuthenticatedUser().getUserId());
+		return loginCredential;
+	}
+}
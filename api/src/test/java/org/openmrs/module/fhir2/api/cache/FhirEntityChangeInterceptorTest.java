@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirEntityChangeInterceptorTest {
+	
+	private static final String OBS_UUID = "b0a8a4d5-1f9c-4e2b-9a59-6f1d3c2e8a41";
+	
+	@Mock
+	private ApplicationContext applicationContext;
+	
+	@Mock
+	private FhirEntityChangeListener enabledListener;
+	
+	@Mock
+	private FhirEntityChangeListener disabledListener;
+	
+	private FhirEntityChangeInterceptor interceptor;
+	
+	private Obs obs;
+	
+	@Before
+	public void setup() {
+		Map<String, FhirEntityChangeListener> listeners = new LinkedHashMap<>();
+		listeners.put("enabledListener", enabledListener);
+		listeners.put("disabledListener", disabledListener);
+		when(applicationContext.getBeansOfType(FhirEntityChangeListener.class, false, false)).thenReturn(listeners);
+		
+		interceptor = new FhirEntityChangeInterceptor();
+		interceptor.setApplicationContext(applicationContext);
+		interceptor.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+		
+		obs = new Obs();
+		obs.setUuid(OBS_UUID);
+	}
+	
+	@Test
+	public void afterTransactionCompletion_shouldNotifyEnabledListenersWithTheirDescriptions() {
+		when(enabledListener.supports(any())).thenReturn(true);
+		when(enabledListener.isEnabled()).thenReturn(true);
+		when(enabledListener.describeChange(obs)).thenReturn(OBS_UUID);
+		when(disabledListener.supports(any())).thenReturn(true);
+		when(disabledListener.isEnabled()).thenReturn(false);
+		
+		interceptor.onSave(obs, null, null, null, null);
+		interceptor.onFlushDirty(obs, null, null, null, null, null);
+		interceptor.afterTransactionCompletion(null);
+		
+		verify(enabledListener).entitiesChanged(Collections.singleton(OBS_UUID));
+		verify(disabledListener, never()).describeChange(any());
+		verify(disabledListener, never()).entitiesChanged(any());
+	}
+	
+	@Test
+	public void afterTransactionCompletion_shouldDiscardRecordedChanges() {
+		when(enabledListener.supports(any())).thenReturn(true);
+		when(enabledListener.isEnabled()).thenReturn(true);
+		when(enabledListener.describeChange(obs)).thenReturn(OBS_UUID);
+		when(disabledListener.supports(any())).thenReturn(false);
+		
+		interceptor.onDelete(obs, null, null, null, null);
+		interceptor.afterTransactionCompletion(null);
+		interceptor.afterTransactionCompletion(null);
+		
+		verify(enabledListener, times(1)).entitiesChanged(any());
+	}
+	
+	@Test
+	public void afterTransactionCompletion_shouldNotNotifyListenersOfUnsupportedEntities() {
+		when(enabledListener.supports(any())).thenReturn(false);
+		when(disabledListener.supports(any())).thenReturn(false);
+		
+		interceptor.onSave(obs, null, null, null, null);
+		interceptor.afterTransactionCompletion(null);
+		
+		verify(enabledListener, never()).entitiesChanged(any());
+		verify(disabledListener, never()).entitiesChanged(any());
+	}
+}
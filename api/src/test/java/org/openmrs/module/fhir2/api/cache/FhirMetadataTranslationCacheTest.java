@@ -0,0 +1,80 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirMetadataTranslationCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String LOCATION_UUID = "8d6c993e-c2cc-11de-8d13-0010c6dffd0f";
+	
+	private static final String LOCATION_NAME = "Unknown Location";
+	
+	@Autowired
+	private FhirMetadataTranslationCache metadataTranslationCache;
+	
+	private Location location;
+	
+	private Locale locale;
+	
+	@Before
+	public void setup() {
+		location = Context.getLocationService().getLocationByUuid(LOCATION_UUID);
+		locale = Context.getLocale();
+	}
+	
+	@After
+	public void tearDown() {
+		Context.setLocale(locale);
+	}
+	
+	@Test
+	public void getMetadataTranslation_shouldReturnCachedTranslation() {
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo(LOCATION_NAME));
+		
+		location.setName("Renamed Location");
+		
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo(LOCATION_NAME));
+	}
+	
+	@Test
+	public void getMetadataTranslation_shouldCacheTranslationsPerLocale() {
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo(LOCATION_NAME));
+		
+		location.setName("Renamed Location");
+		Context.setLocale(Locale.FRENCH);
+		
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo("Renamed Location"));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardTranslationsOfChangedMetadata() {
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo(LOCATION_NAME));
+		
+		location.setName("Renamed Location");
+		Object change = metadataTranslationCache.describeChange(location);
+		metadataTranslationCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(FhirUtils.getMetadataTranslation(location), equalTo("Renamed Location"));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirReferenceDisplayCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String PATIENT_UUID = "da7f524f-27ce-4bb2-86d6-6d1d05312bd5";
+	
+	@Autowired
+	private FhirReferenceDisplayCache referenceDisplayCache;
+	
+	private final AtomicInteger displays = new AtomicInteger();
+	
+	private final Supplier<String> display = () -> "Display " + displays.incrementAndGet();
+	
+	@After
+	public void tearDown() {
+		FhirReferenceDisplayCache.endRequest();
+	}
+	
+	@Test
+	public void getDisplay_shouldNotCacheOutsideOfRequest() {
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display);
+		
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 2"));
+	}
+	
+	@Test
+	public void getDisplay_shouldCacheDisplaysForRestOfRequest() {
+		FhirReferenceDisplayCache.beginRequest();
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display);
+		
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 1"));
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PRACTITIONER, PATIENT_UUID, display),
+		    equalTo("Display 2"));
+	}
+	
+	@Test
+	public void getDisplay_shouldCacheMissingDisplays() {
+		FhirReferenceDisplayCache.beginRequest();
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, () -> {
+			displays.incrementAndGet();
+			return null;
+		});
+		
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display), nullValue());
+		assertThat(displays.get(), equalTo(1));
+	}
+	
+	@Test
+	public void getDisplay_shouldOnlyShareDisplaysBetweenRequestsWhenEnabled() {
+		FhirReferenceDisplayCache.beginRequest();
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display);
+		FhirReferenceDisplayCache.endRequest();
+		
+		FhirReferenceDisplayCache.beginRequest();
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 2"));
+		FhirReferenceDisplayCache.endRequest();
+		
+		enableSharedDisplays();
+		
+		FhirReferenceDisplayCache.beginRequest();
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display);
+		FhirReferenceDisplayCache.endRequest();
+		
+		FhirReferenceDisplayCache.beginRequest();
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 3"));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardDisplaysOfChangedPatient() {
+		enableSharedDisplays();
+		
+		FhirReferenceDisplayCache.beginRequest();
+		FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display);
+		
+		Patient patient = new Patient();
+		patient.setUuid(PATIENT_UUID);
+		Object change = referenceDisplayCache.describeChange(patient);
+		referenceDisplayCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 2"));
+		FhirReferenceDisplayCache.endRequest();
+		
+		FhirReferenceDisplayCache.beginRequest();
+		assertThat(FhirReferenceDisplayCache.getDisplay(FhirConstants.PATIENT, PATIENT_UUID, display),
+		    equalTo("Display 2"));
+	}
+	
+	private void enableSharedDisplays() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.REFERENCE_DISPLAY_CACHE_SECONDS, "60"));
+		FhirGlobalPropertyHolder.reset();
+	}
+}
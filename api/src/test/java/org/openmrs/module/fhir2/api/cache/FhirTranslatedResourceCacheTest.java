@@ -0,0 +1,201 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirTranslatedResourceCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String OBS_UUID = "39fb7f47-e80a-4056-9285-bd798be13c63";
+	
+	private static final String OTHER_OBS_UUID = "be48cdcb-6a76-47e3-9305-8a3e7ae5bb73";
+	
+	private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+	
+	@Autowired
+	private FhirTranslatedResourceCache translatedResourceCache;
+	
+	private final AtomicInteger translations = new AtomicInteger();
+	
+	private final Function<Obs, Observation> translator = obs -> {
+		translations.incrementAndGet();
+		Observation observation = new Observation();
+		observation.setId(obs.getUuid());
+		if (obs.getPerson() != null) {
+			observation.setSubject(new Reference("Patient/" + obs.getPerson().getUuid()).setDisplay("John Doe"));
+		}
+		
+		return observation;
+	};
+	
+	private Obs obs;
+	
+	private Obs otherObs;
+	
+	@Before
+	public void setup() {
+		obs = newObs(1, OBS_UUID);
+		otherObs = newObs(2, OTHER_OBS_UUID);
+	}
+	
+	@Test
+	public void get_shouldTranslateOnEveryCallWhenDisabled() {
+		translatedResourceCache.get(obs, translator);
+		translatedResourceCache.get(obs, translator);
+		
+		assertThat(translations.get(), equalTo(2));
+		assertThat(translatedResourceCache.size(), equalTo(0L));
+	}
+	
+	@Test
+	public void get_shouldReturnCopiesOfCachedTranslation() {
+		enableCache();
+		
+		Observation first = translatedResourceCache.get(obs, translator);
+		Observation second = translatedResourceCache.get(obs, translator);
+		
+		assertThat(translations.get(), equalTo(1));
+		assertThat(second, not(sameInstance(first)));
+		assertThat(second.equalsDeep(first), is(true));
+	}
+	
+	@Test
+	public void get_shouldTranslateNewVersionOfObject() {
+		enableCache();
+		
+		translatedResourceCache.get(obs, translator);
+		obs.setDateChanged(new Date(obs.getDateCreated().getTime() + 1000));
+		translatedResourceCache.get(obs, translator);
+		
+		assertThat(translations.get(), equalTo(2));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardTranslationOfVoidedObsAndItsGroup() {
+		enableCache();
+		
+		Obs member = newObs(3, "0c4a4e6e-4d9f-4b3c-9a33-4f4a8b0f7b6e");
+		obs.addGroupMember(member);
+		
+		translatedResourceCache.get(obs, translator);
+		translatedResourceCache.get(member, translator);
+		translatedResourceCache.get(otherObs, translator);
+		
+		member.setVoided(true);
+		Object change = translatedResourceCache.describeChange(member);
+		translatedResourceCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(translatedResourceCache.size(), equalTo(1L));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardAllTranslationsWhenConceptChanges() {
+		enableCache();
+		
+		translatedResourceCache.get(obs, translator);
+		translatedResourceCache.get(otherObs, translator);
+		
+		Object change = translatedResourceCache.describeChange(new Concept());
+		translatedResourceCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(translatedResourceCache.size(), equalTo(0L));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldDiscardTranslationsReferringToPatientWhenNameChanges() {
+		enableCache();
+		
+		Patient patient = new Patient(1);
+		patient.setUuid(PATIENT_UUID);
+		obs.setPerson(patient);
+		
+		translatedResourceCache.get(obs, translator);
+		translatedResourceCache.get(otherObs, translator);
+		
+		PersonName name = new PersonName("Jane", null, "Doe");
+		name.setPerson(patient);
+		Object change = translatedResourceCache.describeChange(name);
+		translatedResourceCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(translatedResourceCache.size(), equalTo(1L));
+		translatedResourceCache.get(obs, translator);
+		assertThat(translations.get(), equalTo(3));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldKeepTranslationsWhenUnreferencedEncounterChanges() {
+		enableCache();
+		
+		translatedResourceCache.get(obs, translator);
+		
+		Encounter encounter = new Encounter(1);
+		encounter.setUuid("6519d653-393b-4118-9c83-a3715b82d4ac");
+		Object change = translatedResourceCache.describeChange(encounter);
+		translatedResourceCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(translatedResourceCache.size(), equalTo(1L));
+	}
+	
+	@Test
+	public void entitiesChanged_shouldOnlyDiscardGroupWhenMemberIsAdded() {
+		enableCache();
+		
+		translatedResourceCache.get(obs, translator);
+		translatedResourceCache.get(otherObs, translator);
+		
+		Obs member = new Obs();
+		member.setUuid("0c4a4e6e-4d9f-4b3c-9a33-4f4a8b0f7b6e");
+		obs.addGroupMember(member);
+		Object change = translatedResourceCache.describeChange(member);
+		translatedResourceCache.entitiesChanged(Collections.singletonList(change));
+		
+		assertThat(change, equalTo(Collections.singletonList(OBS_UUID)));
+		assertThat(translatedResourceCache.size(), equalTo(1L));
+	}
+	
+	private void enableCache() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.TRANSLATED_RESOURCE_CACHE_SIZE, "1000"));
+		FhirGlobalPropertyHolder.reset();
+		translatedResourceCache.reset();
+	}
+	
+	private Obs newObs(int id, String uuid) {
+		Obs result = new Obs(id);
+		result.setUuid(uuid);
+		result.setDateCreated(new Date(1_000_000L));
+		return result;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.Collections;
+
+import co.unruly.matchers.OptionalMatchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirConceptSourceIndexDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String CONCEPT_SOURCE_FHIR_DATA = "org/openmrs/module/fhir2/api/dao/impl/FhirConceptSourceDaoImplTest_initial_data.xml";
+	
+	private static final String LOINC_URL = "http://loinc.org";
+	
+	private static final String LOINC_CONCEPT_SOURCE_UUID = "2b3c1ff8-768a-102f-83f4-12313b04a615";
+	
+	@Autowired
+	private FhirConceptSourceIndexDaoImpl conceptSourceIndex;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(CONCEPT_SOURCE_FHIR_DATA);
+	}
+	
+	@Test
+	public void getConceptSourceIds_shouldReturnConceptSourceForUrl() {
+		assertThat(conceptSourceIndex.getConceptSourceIds(LOINC_URL), contains(6));
+	}
+	
+	@Test
+	public void getConceptSourceIds_shouldReturnEmptySetForUnknownUrl() {
+		assertThat(conceptSourceIndex.getConceptSourceIds("http://example.com/unknown"), empty());
+	}
+	
+	@Test
+	public void getUrl_shouldReturnUrlForConceptSource() {
+		assertThat(conceptSourceIndex.getUrl(LOINC_CONCEPT_SOURCE_UUID), OptionalMatchers.contains(LOINC_URL));
+	}
+	
+	@Test
+	public void getUrl_shouldReturnEmptyForUnmappedConceptSource() {
+		assertThat(conceptSourceIndex.getUrl("00000000-0000-0000-0000-000000000000"), OptionalMatchers.empty());
+	}
+	
+	@Test
+	public void entitiesChanged_shouldReloadSnapshot() throws Exception {
+		assertThat(conceptSourceIndex.getConceptSourceIds(LOINC_URL), contains(6));
+		
+		// simulate an update made outside of Hibernate followed by the change notification
+		getConnection().createStatement()
+		        .execute("update fhir_concept_source set url = 'http://loinc.org/' where fhir_concept_source_id = 1");
+		conceptSourceIndex.entitiesChanged(Collections.singletonList(new FhirConceptSource()));
+		
+		assertThat(conceptSourceIndex.getConceptSourceIds(LOINC_URL), empty());
+		assertThat(conceptSourceIndex.getConceptSourceIds("http://loinc.org/"), contains(6));
+		assertThat(conceptSourceIndex.getUrl(LOINC_CONCEPT_SOURCE_UUID), OptionalMatchers.contains("http://loinc.org/"));
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+public class FhirObsValueTextIndexDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String OBS_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirObservationDaoImplTest_initial_data_suppl.xml";
+	
+	private static final String VALUE_TEXT_OBS_UUID = "785li1f8-bdbc-4950-833b-002244e9fa2b";
+	
+	@Autowired
+	private FhirObsValueTextIndexDaoImpl valueTextIndex;
+	
+	@Autowired
+	private FhirObservationDao observationDao;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(OBS_DATA_XML);
+		
+		setIndexEnabled(true);
+		
+		// the test data is not committed, so index it using the current session rather than a new one
+		Session session = sessionFactory.getCurrentSession();
+		Integer cursor = 0;
+		while (cursor != null) {
+			cursor = valueTextIndex.indexObservationsAfter(session, cursor);
+		}
+		valueTextIndex.setReady(true);
+	}
+	
+	@Test
+	public void tokenize_shouldSplitTextIntoLowerCaseWords() {
+		assertThat(FhirObsValueTextIndexDaoImpl.tokenize("Chest X-ray: NORMAL, chest clear"),
+		    contains("chest", "x", "ray", "normal", "clear"));
+	}
+	
+	@Test
+	public void tokenize_shouldReturnNoWordsForPunctuation() {
+		assertThat(FhirObsValueTextIndexDaoImpl.tokenize(" -- ,; "), empty());
+	}
+	
+	@Test
+	public void isReady_shouldReturnFalseIfIndexIsDisabled() {
+		setIndexEnabled(false);
+		
+		assertThat(valueTextIndex.isReady(), is(false));
+	}
+	
+	@Test
+	public void searchForObs_shouldFindObsByValueStringUsingIndex() {
+		List<Obs> results = observationDao.getSearchResults(valueString("afh"));
+		
+		assertThat(results, hasItem(hasProperty("uuid", is(VALUE_TEXT_OBS_UUID))));
+	}
+	
+	@Test
+	public void searchForObs_shouldFindObsContainingValueUsingIndex() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.VALUE_STRING_SEARCH_HANDLER,
+		    "valueText", new StringAndListParam().addAnd(new StringParam("FH56").setContains(true)));
+		
+		List<Obs> results = observationDao.getSearchResults(theParams);
+		
+		assertThat(results, hasItem(hasProperty("uuid", is(VALUE_TEXT_OBS_UUID))));
+	}
+	
+	@Test
+	public void rebuild_shouldIndexObsChangedWhileIndexWasDisabled() {
+		FhirObsValueTextIndexDaoImpl index = new FhirObsValueTextIndexDaoImpl() {
+			
+			@Override
+			protected <T> T inTransaction(Function<Session, T> work) {
+				return work.apply(sessionFactory.getCurrentSession());
+			}
+		};
+		index.setSessionFactory(sessionFactory);
+		
+		setIndexEnabled(false);
+		index.rebuild();
+		
+		Obs obs = observationDao.get(VALUE_TEXT_OBS_UUID);
+		Session session = sessionFactory.getCurrentSession();
+		session.createNativeQuery("update obs set value_text = 'renal ultrasound' where obs_id = " + obs.getObsId())
+		        .executeUpdate();
+		session.clear();
+		
+		setIndexEnabled(true);
+		index.indexNewObservations();
+		
+		assertThat(observationDao.getSearchResults(valueString("renal ultra")),
+		    hasItem(hasProperty("uuid", is(VALUE_TEXT_OBS_UUID))));
+	}
+	
+	@Test
+	public void indexNewObservations_shouldReindexPendingObs() {
+		FhirObsValueTextIndexDaoImpl index = new FhirObsValueTextIndexDaoImpl() {
+			
+			@Override
+			protected <T> T inTransaction(Function<Session, T> work) {
+				return work.apply(sessionFactory.getCurrentSession());
+			}
+		};
+		index.setSessionFactory(sessionFactory);
+		
+		Obs obs = observationDao.get(VALUE_TEXT_OBS_UUID);
+		Session session = sessionFactory.getCurrentSession();
+		session.createNativeQuery("update obs set value_text = 'renal ultrasound' where obs_id = " + obs.getObsId())
+		        .executeUpdate();
+		session.clear();
+		// as if the update recorded after the change was lost
+		index.savePending(session, Collections.singletonList(VALUE_TEXT_OBS_UUID));
+		
+		index.indexNewObservations();
+		
+		assertThat(observationDao.getSearchResults(valueString("renal ultra")),
+		    hasItem(hasProperty("uuid", is(VALUE_TEXT_OBS_UUID))));
+		assertThat(index.getPending(session, 10), empty());
+	}
+	
+	@Test
+	public void reindex_shouldReplaceWordsOfChangedObs() {
+		Obs obs = observationDao.get(VALUE_TEXT_OBS_UUID);
+		Session session = sessionFactory.getCurrentSession();
+		session.createNativeQuery("update obs set value_text = 'renal ultrasound' where obs_id = " + obs.getObsId())
+		        .executeUpdate();
+		session.clear();
+		
+		valueTextIndex.reindex(session, Collections.singletonList(obs.getObsId()));
+		
+		assertThat(observationDao.getSearchResults(valueString("AFH56")), empty());
+		assertThat(observationDao.getSearchResults(valueString("renal ultra")),
+		    hasItem(hasProperty("uuid", is(VALUE_TEXT_OBS_UUID))));
+	}
+	
+	private void setIndexEnabled(boolean enabled) {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(FhirConstants.OBS_VALUE_TEXT_INDEX_ENABLED, Boolean.toString(enabled)));
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	private SearchParameterMap valueString(String value) {
+		return new SearchParameterMap().addParameter(FhirConstants.VALUE_STRING_SEARCH_HANDLER, "valueText",
+		    new StringAndListParam().addAnd(new StringParam(value)));
+	}
+}
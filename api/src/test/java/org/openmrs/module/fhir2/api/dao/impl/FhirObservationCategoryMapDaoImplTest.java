@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.model.FhirObservationCategoryMap;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirObservationCategoryMapDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String OBSERVATION_CATEGORY_CONCEPT_CLASS_DATA = "org/openmrs/module/fhir2/mapping/FhirObservationCategoryTest_initial_data.xml";
+	
+	private static final String LABORATORY_CONCEPT_CLASS_UUID = "8d4907b2-c2cc-11de-8d13-0010c6dffd0f";
+	
+	private static final String UNMAPPED_CONCEPT_CLASS_UUID = "8d492026-c2cc-11de-8d13-0010c6dffd0f";
+	
+	@Autowired
+	private FhirObservationCategoryMapDaoImpl categoryMap;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(OBSERVATION_CATEGORY_CONCEPT_CLASS_DATA);
+	}
+	
+	@Test
+	public void getCategory_shouldReturnCategoryForMappedConceptClass() {
+		assertThat(categoryMap.getCategory(LABORATORY_CONCEPT_CLASS_UUID), equalTo("laboratory"));
+	}
+	
+	@Test
+	public void getCategory_shouldReturnNullForUnmappedConceptClass() {
+		assertThat(categoryMap.getCategory(UNMAPPED_CONCEPT_CLASS_UUID), nullValue());
+	}
+	
+	@Test
+	public void getConceptClassIds_shouldReturnConceptClassIdsForCategory() {
+		assertThat(categoryMap.getConceptClassIds("laboratory"), contains(1));
+	}
+	
+	@Test
+	public void getConceptClassIds_shouldMatchCategoryCaseInsensitively() {
+		assertThat(categoryMap.getConceptClassIds("Laboratory"), contains(1));
+	}
+	
+	@Test
+	public void getConceptClassIds_shouldReturnEmptySetForUnknownCategory() {
+		assertThat(categoryMap.getConceptClassIds("social-history"), empty());
+	}
+	
+	@Test
+	public void entitiesChanged_shouldReloadSnapshot() throws Exception {
+		assertThat(categoryMap.getConceptClassIds("exam"), contains(5));
+		
+		// simulate an update made outside of Hibernate followed by the change notification
+		getConnection().createStatement()
+		        .execute("update fhir_observation_category_map set observation_category = 'imaging' where concept_class_id = 5");
+		categoryMap.entitiesChanged(Collections.singletonList(new FhirObservationCategoryMap()));
+		
+		assertThat(categoryMap.getConceptClassIds("exam"), empty());
+		assertThat(categoryMap.getConceptClassIds("imaging"), contains(5));
+	}
+}
@@ -10,14 +10,24 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.Hibernate;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Obs;
@@ -37,6 +47,10 @@ public class FhirObservationDaoImplTest extends BaseFhirContextSensitiveTest {
 	
 	private static final String OBS_CONCEPT_ID = "5089";
 	
+	private static final String OBS_GROUP_UUID = "4efa62d2-6b8b-4803-a8fa-3f32ee54db4f";
+	
+	private static final String OBS_GROUP_MEMBER_UUID = "744b91f8-bdbc-4950-833b-002244e9fa2b";
+	
 	@Autowired
 	private FhirObservationDao dao;
 	
@@ -75,4 +89,31 @@ public class FhirObservationDaoImplTest extends BaseFhirContextSensitiveTest {
 		assertThat(obs, notNullValue());
 	}
 	
+	@Test
+	public void get_shouldInitializeGroupMembersOfReturnedObs() {
+		List<Obs> results = dao.get(Collections.singleton(OBS_GROUP_UUID));
+		
+		assertThat(results, hasSize(1));
+		assertThat(Hibernate.isInitialized(results.get(0).getGroupMembers(true)), is(true));
+		assertThat(results.get(0).getGroupMembers().stream().map(Obs::getUuid).collect(Collectors.toList()),
+		    hasItem(OBS_GROUP_MEMBER_UUID));
+	}
+	
+	@Test
+	public void get_shouldReturnGroupMembersAlreadyLoadedInSession() {
+		Obs obsGroup = dao.get(Collections.singleton(OBS_GROUP_UUID)).get(0);
+		Obs groupMember = obsGroup.getGroupMembers().iterator().next();
+		
+		List<Obs> results = dao.get(Collections.singleton(groupMember.getUuid()));
+		
+		assertThat(results, contains(sameInstance(groupMember)));
+	}
+	
+	@Test
+	public void get_shouldReturnObsInRequestedOrder() {
+		List<Obs> results = dao.get(Arrays.asList(OBS_GROUP_MEMBER_UUID, OBS_GROUP_UUID));
+		
+		assertThat(results.stream().map(Obs::getUuid).collect(Collectors.toList()),
+		    contains(OBS_GROUP_MEMBER_UUID, OBS_GROUP_UUID));
+	}
 }
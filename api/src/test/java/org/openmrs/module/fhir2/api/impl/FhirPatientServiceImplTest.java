@@ -24,11 +24,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.text.ParseException;
@@ -47,12 +50,14 @@ import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
 import com.github.dnault.xmlpatch.repackaged.joptsimple.internal.Strings;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.CodeableConcept;
 import org.hl7.fhir.r4.model.HumanName;
 import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Observation;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -73,6 +78,7 @@ import org.openmrs.module.fhir2.api.search.param.OpenmrsPatientSearchParams;
 import org.openmrs.module.fhir2.api.search.param.PatientSearchParams;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.module.fhir2.api.util.FhirConditionalRead;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FhirPatientServiceImplTest {
@@ -182,6 +188,11 @@ public class FhirPatientServiceImplTest {
 		fhirPatient.addName(humanName);
 	}
 	
+	@After
+	public void tearDown() {
+		FhirConditionalRead.end();
+	}
+	
 	@Test
 	public void getPatientByUuid_shouldRetrievePatientByUuid() {
 		when(dao.get(PATIENT_UUID)).thenReturn(patient);
@@ -194,6 +205,57 @@ public class FhirPatientServiceImplTest {
 		assertThat(result.getId(), equalTo(PATIENT_UUID));
 	}
 	
+	@Test
+	public void get_shouldThrowNotModifiedWhenIfNoneMatchHasCurrentVersion() {
+		patient.setDateCreated(new Date(1_000_000L));
+		when(dao.get(PATIENT_UUID)).thenReturn(patient);
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "W/\"1000000\"", null);
+		
+		try {
+			patientService.get(PATIENT_UUID);
+			fail("Expected NotModifiedException");
+		}
+		catch (NotModifiedException ignored) {}
+		
+		verify(patientTranslator, never()).toFhirResource(patient);
+	}
+	
+	@Test
+	public void get_shouldThrowNotModifiedWhenNotChangedSinceIfModifiedSince() {
+		patient.setDateCreated(new Date(1_000_000L));
+		when(dao.get(PATIENT_UUID)).thenReturn(patient);
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, null, new Date(1_000_000L));
+		
+		try {
+			patientService.get(PATIENT_UUID);
+			fail("Expected NotModifiedException");
+		}
+		catch (NotModifiedException ignored) {}
+		
+		verify(patientTranslator, never()).toFhirResource(patient);
+	}
+	
+	@Test
+	public void get_shouldTranslatePatientWhenIfNoneMatchHasOlderVersion() {
+		patient.setDateCreated(new Date(1_000_000L));
+		patient.setDateChanged(new Date(2_000_000L));
+		when(dao.get(PATIENT_UUID)).thenReturn(patient);
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "W/\"1000000\"", null);
+		
+		assertThat(patientService.get(PATIENT_UUID), equalTo(fhirPatient));
+	}
+	
+	@Test
+	public void get_shouldTranslatePatientWhenConditionIsForAnotherResource() {
+		patient.setDateCreated(new Date(1_000_000L));
+		when(dao.get(PATIENT_UUID)).thenReturn(patient);
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		FhirConditionalRead.begin("Patient", "another-uuid", "*", null);
+		
+		assertThat(patientService.get(PATIENT_UUID), equalTo(fhirPatient));
+	}
+	
 	@Test
 	public void getById_shouldReturnPatientById() {
 		when(dao.getPatientById(1)).thenReturn(patient);
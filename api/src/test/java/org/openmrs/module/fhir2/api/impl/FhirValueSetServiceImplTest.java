@@ -19,8 +19,12 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedValueSetExpansions;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -28,6 +32,8 @@ import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.StringOrListParam;
 import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.ValueSet;
 import org.junit.Before;
@@ -90,6 +96,7 @@ public class FhirValueSetServiceImplTest {
 		fhirValueSetService.setTranslator(translator);
 		fhirValueSetService.setSearchQuery(searchQuery);
 		fhirValueSetService.setSearchQueryInclude(searchQueryInclude);
+		fhirValueSetService.setExpansionCache(uncachedValueSetExpansions());
 		
 		concept = new Concept();
 		concept.setUuid(ROOT_CONCEPT_UUID);
@@ -149,4 +156,61 @@ public class FhirValueSetServiceImplTest {
 		assertThat(results, notNullValue());
 		assertThat(resultList, empty());
 	}
+	
+	@Test
+	public void expand_shouldReturnPageOfFilteredExpansion() {
+		concept.setSet(true);
+		when(dao.get(ROOT_CONCEPT_UUID)).thenReturn(concept);
+		when(translator.toFhirResourceSummary(concept)).thenReturn(valueSet);
+		when(translator.toExpansionContains(concept)).thenReturn(Arrays.asList(
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("1").setDisplay("Rice"),
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("2").setDisplay("Brown rice"),
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("3").setDisplay("Beans"),
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("4").setDisplay("Rice cakes")));
+		
+		ValueSet result = fhirValueSetService.expand(ROOT_CONCEPT_UUID, "rice", 1, 1);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getExpansion().getTotal(), equalTo(3));
+		assertThat(result.getExpansion().getOffset(), equalTo(1));
+		assertThat(result.getExpansion().getContains(), hasSize(1));
+		assertThat(result.getExpansion().getContainsFirstRep().getCode(), equalTo("2"));
+		verify(translator, never()).toFhirResource(concept);
+	}
+	
+	@Test
+	public void expand_shouldReturnAllEntriesWhenCountIsNotSupplied() {
+		concept.setSet(true);
+		when(dao.get(ROOT_CONCEPT_UUID)).thenReturn(concept);
+		when(translator.toFhirResourceSummary(concept)).thenReturn(valueSet);
+		when(translator.toExpansionContains(concept)).thenReturn(Arrays.asList(
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("1").setDisplay("Rice"),
+		    new ValueSet.ValueSetExpansionContainsComponent().setCode("2").setDisplay("Beans")));
+		
+		ValueSet result = fhirValueSetService.expand(ROOT_CONCEPT_UUID, null, null, null);
+		
+		assertThat(result.getExpansion().getTotal(), equalTo(2));
+		assertThat(result.getExpansion().getContains(), hasSize(2));
+	}
+	
+	@Test(expected = ResourceNotFoundException.class)
+	public void expand_shouldThrowResourceNotFoundForConceptWhichIsNotASet() {
+		concept.setSet(false);
+		when(dao.get(ROOT_CONCEPT_UUID)).thenReturn(concept);
+		
+		fhirValueSetService.expand(ROOT_CONCEPT_UUID, null, null, null);
+	}
+	
+	@Test(expected = ResourceNotFoundException.class)
+	public void expand_shouldThrowResourceNotFoundForConceptWithoutSetFlag() {
+		concept.setSet(null);
+		when(dao.get(ROOT_CONCEPT_UUID)).thenReturn(concept);
+		
+		fhirValueSetService.expand(ROOT_CONCEPT_UUID, null, null, null);
+	}
+	
+	@Test(expected = InvalidRequestException.class)
+	public void expand_shouldRejectNegativeOffset() {
+		fhirValueSetService.expand(ROOT_CONCEPT_UUID, null, -1, null);
+	}
 }
@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+public class FhirSlowSearchLogTest {
+	
+	@Test
+	public void describeParameters_shouldDescribeTokenParametersWithoutValues() {
+		TokenAndListParam code = new TokenAndListParam().addAnd(
+		    new TokenOrListParam().add(new TokenParam("http://loinc.org", "5085-2")).add(new TokenParam("5089-4")),
+		    new TokenOrListParam().add(new TokenParam("pulse").setModifier(TokenParamModifier.TEXT)));
+		SearchParameterMap searchParameters = new SearchParameterMap()
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, code);
+		
+		Map<String, Object> shape = FhirSlowSearchLog.describeParameters(searchParameters);
+		
+		assertThat(getShapes(shape, FhirConstants.CODED_SEARCH_HANDLER),
+		    contains("TokenParam[2] AND TokenParam:text[1]"));
+		assertThat(shape.toString(), not(containsString("5085-2")));
+		assertThat(shape.toString(), not(containsString("pulse")));
+	}
+	
+	@Test
+	public void describeParameters_shouldDescribeDatePrefixesAndPropertyNames() {
+		DateRangeParam dateRange = new DateRangeParam(new DateParam(ParamPrefixEnum.GREATERTHAN_OR_EQUALS, "2020-01-01"),
+		        new DateParam(ParamPrefixEnum.LESSTHAN_OR_EQUALS, "2020-12-31"));
+		SearchParameterMap searchParameters = new SearchParameterMap()
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", dateRange);
+		
+		Map<String, Object> shape = FhirSlowSearchLog.describeParameters(searchParameters);
+		
+		assertThat(getShapes(shape, FhirConstants.DATE_RANGE_SEARCH_HANDLER),
+		    contains("obsDatetime=DateParam ge[1] AND DateParam le[1]"));
+		assertThat(shape.toString(), not(containsString("2020")));
+	}
+	
+	@Test
+	public void describeParameters_shouldDescribeIncludes() {
+		SearchParameterMap searchParameters = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER,
+		    Collections.singleton(new Include("Observation:patient")));
+		
+		Map<String, Object> shape = FhirSlowSearchLog.describeParameters(searchParameters);
+		
+		assertThat(getShapes(shape, FhirConstants.INCLUDE_SEARCH_HANDLER), contains("[Observation:patient]"));
+	}
+	
+	@Test
+	public void describeSort_shouldDescribeChainedSort() {
+		SortSpec sort = new SortSpec("date", SortOrderEnum.DESC, new SortSpec("code"));
+		
+		assertThat(FhirSlowSearchLog.describeSort(sort), contains("date desc", "code asc"));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<String> getShapes(Map<String, Object> shape, String key) {
+		return (List<String>) shape.get(key);
+	}
+}
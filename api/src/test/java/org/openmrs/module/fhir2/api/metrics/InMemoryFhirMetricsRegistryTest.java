@@ -0,0 +1,91 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryFhirMetricsRegistryTest {
+	
+	private InMemoryFhirMetricsRegistry registry;
+	
+	@Before
+	public void setup() {
+		registry = new InMemoryFhirMetricsRegistry();
+	}
+	
+	@Test
+	public void record_shouldAggregateRequestsByResourceTypeAndOperation() {
+		registry.record(newRequestMetrics("Patient", "search-type", 3, 10));
+		registry.record(newRequestMetrics("Patient", "search-type", 5, 20));
+		registry.record(newRequestMetrics(null, "capabilities", 0, 1));
+		
+		Map<String, Object> snapshot = registry.getSnapshot();
+		assertThat(snapshot, hasKey("Patient search-type"));
+		assertThat(snapshot, hasKey("system capabilities"));
+		
+		Map<String, Object> search = getMap(snapshot, "Patient search-type");
+		assertThat(getMap(search, "latency").get("count"), equalTo(2L));
+		assertThat(getMap(search, "statements").get("total"), equalTo(8L));
+		assertThat(getMap(search, "statements").get("max"), equalTo(5L));
+		assertThat(getMap(search, "results").get("total"), equalTo(30L));
+	}
+	
+	@Test
+	public void record_shouldOnlyIncludePhasesWhichOccurred() {
+		FhirRequestMetrics metrics = newRequestMetrics("Observation", "search-type", 2, 5);
+		metrics.startPhase(FhirMetricsPhase.QUERY);
+		metrics.statementPrepared("select 1");
+		metrics.endPhase(FhirMetricsPhase.QUERY, 1_000_000L);
+		metrics.end();
+		registry.record(metrics);
+		
+		Map<String, Object> phases = getMap(getMap(registry.getSnapshot(), "Observation search-type"), "phases");
+		assertThat(phases, hasKey("query"));
+		assertThat(phases, not(hasKey("translation")));
+		assertThat(getMap(getMap(phases, "query"), "statements").get("total"), equalTo(1L));
+	}
+	
+	@Test
+	public void startPhase_shouldAttributeNestedPhasesToOuterPhase() {
+		FhirRequestMetrics metrics = new FhirRequestMetrics("Patient", "search-type");
+		
+		assertThat(metrics.startPhase(FhirMetricsPhase.INCLUDES), equalTo(true));
+		assertThat(metrics.startPhase(FhirMetricsPhase.QUERY), equalTo(false));
+		metrics.statementPrepared("select 1");
+		metrics.endPhase(FhirMetricsPhase.INCLUDES, 10L);
+		
+		assertThat(metrics.getPhaseStatements(FhirMetricsPhase.INCLUDES), equalTo(1));
+		assertThat(metrics.getPhaseStatements(FhirMetricsPhase.QUERY), equalTo(0));
+		assertThat(metrics.getPhaseNanos(FhirMetricsPhase.INCLUDES), equalTo(10L));
+	}
+	
+	private FhirRequestMetrics newRequestMetrics(String resourceType, String operation, int statements, int results) {
+		FhirRequestMetrics metrics = new FhirRequestMetrics(resourceType, operation);
+		for (int i = 0; i < statements; i++) {
+			metrics.statementPrepared("select 1");
+		}
+		metrics.addResults(results);
+		metrics.end();
+		return metrics;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> getMap(Map<String, Object> map, String key) {
+		return (Map<String, Object>) map.get(key);
+	}
+}
@@ -83,6 +83,8 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 	
 	private static final String OBS_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirObservationDaoImplTest_initial_data_suppl.xml";
 	
+	private static final String NON_UCUM_UNITS_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirObservationDaoImplTest_non_ucum_units.xml";
+	
 	private static final String OBS_UUID = "39fb7f47-e80a-4056-9285-bd798be13c63";
 	
 	private static final String OBS_GROUP_UUID = "4efa62d2-6b8b-4803-a8fa-3f32ee54db4f";
@@ -103,6 +105,10 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 	
 	private static final String EXPECTED_VALUE_DATE_AND_TIME = "2008-08-18 14:09:35.0";
 	
+	private static final String OBS_HEIGHT_UUID = "30ba0383-9377-46e9-aab3-5fee12e5ed0a";
+	
+	private static final String OBS_SYSTOLIC_UUID = "b0b9c14f-2123-4c0f-9a5c-918e192629f0";
+	
 	private static final String OBS_DATE = "2008-07-01";
 	
 	private static final String OBS_DATE_AND_TIME = "2008-07-01T00:00:00.0";
@@ -1180,6 +1186,59 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 		assertThat(resultList, hasSize(equalTo(1)));
 	}
 	
+	@Test
+	public void searchForObs_shouldSearchForObsByValueQuantityInComparableUcumUnits() {
+		QuantityAndListParam quantityAndListParam = new QuantityAndListParam().addAnd(new QuantityOrListParam()
+		        .add(new QuantityParam().setValue("1.882").setSystem(FhirConstants.UCUM_SYSTEM_URI).setUnits("m")));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.QUANTITY_SEARCH_HANDLER, "valueNumeric", quantityAndListParam);
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results, notNullValue());
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, hasItem(hasProperty("id", equalTo(OBS_HEIGHT_UUID))));
+	}
+	
+	@Test
+	public void searchForObs_shouldNotReturnObsByValueQuantityInIncomparableUcumUnits() {
+		QuantityAndListParam quantityAndListParam = new QuantityAndListParam().addAnd(new QuantityOrListParam()
+		        .add(new QuantityParam().setValue("188.2").setSystem(FhirConstants.UCUM_SYSTEM_URI).setUnits("kg")));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.QUANTITY_SEARCH_HANDLER, "valueNumeric", quantityAndListParam);
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results, notNullValue());
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, not(hasItem(hasProperty("id", equalTo(OBS_HEIGHT_UUID)))));
+	}
+	
+	@Test
+	public void searchForObs_shouldCompareValuesOfConceptsWithNonUcumUnitsDirectly() throws Exception {
+		executeDataSet(NON_UCUM_UNITS_DATA_XML);
+		
+		QuantityAndListParam quantityAndListParam = new QuantityAndListParam().addAnd(new QuantityOrListParam()
+		        .add(new QuantityParam().setValue("115").setSystem(FhirConstants.UCUM_SYSTEM_URI).setUnits("mm[Hg]")));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.QUANTITY_SEARCH_HANDLER, "valueNumeric", quantityAndListParam);
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results, notNullValue());
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, hasItem(hasProperty("id", equalTo(OBS_SYSTOLIC_UUID))));
+	}
+	
 	@Test
 	public void searchForObs_shouldSearchForObsByValueString() {
 		StringAndListParam stringAndListParam = new StringAndListParam().addAnd(new StringParam().setValue(VALUE_STRING));
@@ -0,0 +1,130 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirTableStatisticsDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchCostEstimatorTest {
+	
+	@Mock
+	private FhirTableStatisticsDao tableStatisticsDao;
+	
+	private SearchCostEstimator searchCostEstimator;
+	
+	@Before
+	public void setup() {
+		searchCostEstimator = new SearchCostEstimator();
+		searchCostEstimator.setTableStatisticsDao(tableStatisticsDao);
+	}
+	
+	@Test
+	public void estimate_shouldEstimateAnUnfilteredSearchAsTheWholeTable() {
+		when(tableStatisticsDao.getEstimatedRowCount(Obs.class)).thenReturn(5_000_000L);
+		
+		assertThat(searchCostEstimator.estimate(Obs.class, new SearchParameterMap()), equalTo(5_000_000L));
+	}
+	
+	@Test
+	public void estimate_shouldUseDefaultTableSizeWhenThereIsNoEstimate() {
+		assertThat(searchCostEstimator.estimate(null, new SearchParameterMap()), equalTo(100_000L));
+	}
+	
+	@Test
+	public void estimate_shouldReduceCostForPatientReference() {
+		when(tableStatisticsDao.getEstimatedRowCount(Obs.class)).thenReturn(5_000_000L);
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+		    new ReferenceAndListParam().addAnd(new ReferenceOrListParam().add(new ReferenceParam("Patient/123"))));
+		
+		assertThat(searchCostEstimator.estimate(Obs.class, theParams), equalTo(500L));
+	}
+	
+	@Test
+	public void estimateSelectivity_shouldAddUpAlternativesOfAnOrList() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.CODED_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam("5085-2"))
+		            .add(new TokenParam("5089-4")).add(new TokenParam("5090-2"))));
+		
+		assertThat(SearchCostEstimator.estimateSelectivity(theParams), closeTo(0.03, 1e-9));
+	}
+	
+	@Test
+	public void estimateSelectivity_shouldMultiplyAndedParameters() {
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER,
+		            new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam("5085-2"))))
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER,
+		            new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam("male"))));
+		
+		assertThat(SearchCostEstimator.estimateSelectivity(theParams), closeTo(0.005, 1e-9));
+	}
+	
+	@Test
+	public void estimateSelectivity_shouldNotReduceCostForContainsSearches() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY,
+		    new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("ohn").setContains(true))));
+		
+		assertThat(SearchCostEstimator.estimateSelectivity(theParams), equalTo(1.0));
+	}
+	
+	@Test
+	public void estimateSelectivity_shouldIgnoreIncludes() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER,
+		    new HashSet<>(Collections.singleton(new Include("Observation:patient"))));
+		
+		assertThat(SearchCostEstimator.estimateSelectivity(theParams), equalTo(1.0));
+	}
+	
+	@Test
+	public void estimateFanOut_shouldCountIncludesAndRevIncludes() {
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER,
+		            new HashSet<>(Collections.singleton(new Include("Observation:patient"))))
+		        .addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
+		            new HashSet<>(Collections.singleton(new Include("Observation:has-member"))));
+		
+		assertThat(SearchCostEstimator.estimateFanOut(theParams), equalTo(12L));
+	}
+	
+	@Test
+	public void estimateFanOut_shouldMultiplyIteratedRevIncludes() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER,
+		    new HashSet<>(Collections.singleton(new Include("Observation:has-member", true))));
+		
+		assertThat(SearchCostEstimator.estimateFanOut(theParams), equalTo(101L));
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+
+public class SearchQueryBundleProviderR3WrapperTest {
+	
+	private static final String PATIENT_UUID = "a7e04421-525f-442f-8138-05b619d16def";
+	
+	private static final String CONDITION_UUID = "2cc6880e-2c46-11e4-9138-a6c5e4d20fb7";
+	
+	private static final String DIAGNOSIS_UUID = "1d3b7c2a-6b82-4a6b-8a34-6f3b4e4a3b11";
+	
+	@Test
+	public void getResources_shouldConvertPageToR3() {
+		Patient patient = new Patient();
+		patient.setId(PATIENT_UUID);
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		org.hl7.fhir.dstu3.model.Patient r3Patient = new org.hl7.fhir.dstu3.model.Patient();
+		r3Patient.setId(PATIENT_UUID);
+		
+		List<IBaseResource> resources = getResources(patient, r3Patient);
+		
+		assertThat(resources, hasSize(2));
+		assertThat(resources.get(0), instanceOf(org.hl7.fhir.dstu3.model.Patient.class));
+		org.hl7.fhir.dstu3.model.Patient convertedPatient = (org.hl7.fhir.dstu3.model.Patient) resources.get(0);
+		assertThat(convertedPatient.getIdElement().getIdPart(), equalTo(PATIENT_UUID));
+		assertThat(convertedPatient.getGender(), equalTo(org.hl7.fhir.dstu3.model.Enumerations.AdministrativeGender.FEMALE));
+		assertThat(resources.get(1), sameInstance(r3Patient));
+	}
+	
+	@Test
+	public void getResources_shouldKeepClinicalStatusOfCondition() {
+		Condition condition = newCondition(CONDITION_UUID, FhirConstants.CONDITION_CATEGORY_CODE_CONDITION);
+		
+		List<IBaseResource> resources = getResources(condition);
+		
+		assertThat(resources, hasSize(1));
+		org.hl7.fhir.dstu3.model.Condition convertedCondition = (org.hl7.fhir.dstu3.model.Condition) resources.get(0);
+		assertThat(convertedCondition.getIdElement().getIdPart(), equalTo(CONDITION_UUID));
+		assertThat(convertedCondition.getClinicalStatus(),
+		    equalTo(org.hl7.fhir.dstu3.model.Condition.ConditionClinicalStatus.ACTIVE));
+	}
+	
+	@Test
+	public void getResources_shouldDropClinicalStatusOfDiagnosisWithoutChangingIt() {
+		Condition diagnosis = newCondition(DIAGNOSIS_UUID, FhirConstants.CONDITION_CATEGORY_CODE_DIAGNOSIS);
+		Condition condition = newCondition(CONDITION_UUID, FhirConstants.CONDITION_CATEGORY_CODE_CONDITION);
+		
+		List<IBaseResource> resources = getResources(diagnosis, condition);
+		
+		assertThat(resources, hasSize(2));
+		org.hl7.fhir.dstu3.model.Condition convertedDiagnosis = (org.hl7.fhir.dstu3.model.Condition) resources.get(0);
+		assertThat(convertedDiagnosis.getIdElement().getIdPart(), equalTo(DIAGNOSIS_UUID));
+		assertThat(convertedDiagnosis.hasClinicalStatus(), is(false));
+		assertThat(diagnosis.hasClinicalStatus(), is(true));
+		
+		org.hl7.fhir.dstu3.model.Condition convertedCondition = (org.hl7.fhir.dstu3.model.Condition) resources.get(1);
+		assertThat(convertedCondition.getClinicalStatus(),
+		    equalTo(org.hl7.fhir.dstu3.model.Condition.ConditionClinicalStatus.ACTIVE));
+	}
+	
+	private static List<IBaseResource> getResources(IBaseResource... resources) {
+		return new SearchQueryBundleProviderR3Wrapper(new SimpleBundleProvider(Arrays.asList(resources)))
+		        .getResources(0, resources.length);
+	}
+	
+	private static Condition newCondition(String uuid, String category) {
+		Condition condition = new Condition();
+		condition.setId(uuid);
+		condition.addCategory(
+		    new CodeableConcept().addCoding(new Coding(FhirConstants.CONDITION_CATEGORY_SYSTEM_URI, category, null)));
+		condition.setClinicalStatus(
+		    new CodeableConcept().addCoding(new Coding(FhirConstants.CONDITION_CLINICAL_STATUS_SYSTEM_URI, "active", null)));
+		return condition;
+	}
+}
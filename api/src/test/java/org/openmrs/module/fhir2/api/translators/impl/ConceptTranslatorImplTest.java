@@ -20,6 +20,8 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptMappings;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptTranslations;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -83,6 +85,8 @@ public class ConceptTranslatorImplTest {
 	public void setup() {
 		LocaleUtility.setLocalesAllowedListCache(Arrays.asList(Locale.ENGLISH));
 		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptTranslationCache(uncachedConceptTranslations());
+		conceptTranslator.setConceptMappingCache(uncachedConceptMappings());
 		conceptTranslator.setConceptService(conceptService);
 		conceptTranslator.setConceptSourceService(conceptSourceService);
 		
@@ -115,7 +119,8 @@ public class ConceptTranslatorImplTest {
 		fhirCiel.setConceptSource(ciel);
 		fhirCiel.setUrl(FhirTestConstants.CIEL_SYSTEM_URN);
 		when(conceptSourceService.getConceptSourceByUrl(FhirTestConstants.CIEL_SYSTEM_URN)).thenReturn(Optional.of(ciel));
-		when(conceptSourceService.getFhirConceptSources()).thenReturn(Arrays.asList(fhirLoinc, fhirCiel));
+		when(conceptSourceService.getUrlForConceptSource(loinc)).thenReturn(FhirTestConstants.LOINC_SYSTEM_URL);
+		when(conceptSourceService.getUrlForConceptSource(ciel)).thenReturn(FhirTestConstants.CIEL_SYSTEM_URN);
 	}
 	
 	@Test
@@ -16,6 +16,8 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptMappings;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptTranslations;
 
 import java.text.ParseException;
 import java.util.Arrays;
@@ -78,6 +80,8 @@ public class DosageTranslatorImplTest {
 	@Before
 	public void setup() {
 		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptTranslationCache(uncachedConceptTranslations());
+		conceptTranslator.setConceptMappingCache(uncachedConceptMappings());
 		conceptTranslator.setConceptService(conceptService);
 		conceptTranslator.setConceptSourceService(conceptSourceService);
 		
@@ -15,6 +15,8 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptMappings;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptTranslations;
 
 import java.util.Arrays;
 import java.util.Locale;
@@ -56,6 +58,8 @@ public class MedicationQuantityCodingTranslatorImplTest {
 	@Before
 	public void setup() {
 		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptTranslationCache(uncachedConceptTranslations());
+		conceptTranslator.setConceptMappingCache(uncachedConceptMappings());
 		conceptTranslator.setConceptService(conceptService);
 		conceptTranslator.setConceptSourceService(conceptSourceService);
 		
@@ -17,6 +17,8 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.when;
 import static org.openmrs.module.fhir2.FhirConstants.UCUM_SYSTEM_URI;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptMappings;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptTranslations;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -70,6 +72,8 @@ public class ObservationQuantityCodingTranslatorImplTest {
 	@Before
 	public void setup() throws UcumException, IOException {
 		ConceptTranslatorImpl conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptTranslationCache(uncachedConceptTranslations());
+		conceptTranslator.setConceptMappingCache(uncachedConceptMappings());
 		conceptTranslator.setConceptService(conceptService);
 		conceptTranslator.setConceptSourceService(conceptSourceService);
 		
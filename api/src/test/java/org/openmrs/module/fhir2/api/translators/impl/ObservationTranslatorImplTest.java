@@ -21,6 +21,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedTranslatedResources;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -129,6 +130,7 @@ public class ObservationTranslatorImplTest {
 		observationTranslator.setReferenceRangeTranslator(referenceRangeTranslator);
 		observationTranslator.setBasedOnReferenceTranslator(basedOnReferenceTranslator);
 		observationTranslator.setDatetimeTranslator(datetimeTranslator);
+		observationTranslator.setTranslatedResourceCache(uncachedTranslatedResources());
 	}
 	
 	@Test
@@ -18,6 +18,8 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.when;
 import static org.openmrs.module.fhir2.FhirConstants.RX_NORM_SYSTEM_URI;
 import static org.openmrs.module.fhir2.FhirConstants.UCUM_SYSTEM_URI;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptMappings;
+import static org.openmrs.module.fhir2.api.cache.FhirCacheTestUtils.uncachedConceptTranslations;
 
 import java.util.Date;
 
@@ -71,6 +73,8 @@ public class ObservationValueTranslatorImplTest {
 		FhirConceptServiceImpl fhirConceptService = new FhirConceptServiceImpl();
 		fhirConceptService.setDao(fhirConceptDao);
 		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptTranslationCache(uncachedConceptTranslations());
+		conceptTranslator.setConceptMappingCache(uncachedConceptMappings());
 		conceptTranslator.setConceptService(fhirConceptService);
 		conceptTranslator.setConceptSourceService(fhirConceptSourceService);
 		obsValueTranslator = new ObservationValueTranslatorImpl() {
@@ -55,7 +55,6 @@ import org.openmrs.PersonAttributeType;
 import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
-import org.openmrs.module.fhir2.api.dao.FhirPersonDao;
 import org.openmrs.module.fhir2.api.translators.BirthDateTranslator;
 import org.openmrs.module.fhir2.api.translators.GenderTranslator;
 import org.openmrs.module.fhir2.api.translators.PatientIdentifierTranslator;
@@ -103,9 +102,6 @@ public class PatientTranslatorImplTest {
 	@Mock
 	private PersonAddressTranslator addressTranslator;
 	
-	@Mock
-	private FhirPersonDao fhirPersonDao;
-	
 	@Mock
 	private TelecomTranslator<BaseOpenmrsData> telecomTranslator;
 	
@@ -127,7 +123,6 @@ public class PatientTranslatorImplTest {
 		patientTranslator.setGenderTranslator(genderTranslator);
 		patientTranslator.setAddressTranslator(addressTranslator);
 		patientTranslator.setTelecomTranslator(telecomTranslator);
-		patientTranslator.setFhirPersonDao(fhirPersonDao);
 		patientTranslator.setGlobalPropertyService(globalPropertyService);
 		patientTranslator.setBirthDateTranslator(birthDateTranslator);
 		patientTranslator.setPersonAttributeTranslator(personAttributeTranslator);
@@ -490,6 +485,39 @@ public class PatientTranslatorImplTest {
 		assertThat(contactPoints, notNullValue());
 	}
 	
+	@Test
+	public void getPatientContactDetails_shouldUseLoadedAttributesOfConfiguredType() {
+		PersonAttributeType attributeType = new PersonAttributeType();
+		attributeType.setName(PERSON_ATTRIBUTE_TYPE_NAME);
+		attributeType.setUuid(PERSON_ATTRIBUTE_TYPE_UUID);
+		PersonAttribute personAttribute = new PersonAttribute();
+		personAttribute.setUuid(PERSON_ATTRIBUTE_UUID);
+		personAttribute.setValue(PERSON_ATTRIBUTE_VALUE);
+		personAttribute.setAttributeType(attributeType);
+		
+		PersonAttributeType otherAttributeType = new PersonAttributeType();
+		otherAttributeType.setUuid("d5cc5f25-3c91-4b3b-9b1b-3a3e2b7e6e55");
+		PersonAttribute otherAttribute = new PersonAttribute();
+		otherAttribute.setValue(PERSON_ATTRIBUTE_VALUE);
+		otherAttribute.setAttributeType(otherAttributeType);
+		
+		org.openmrs.Patient patient = new org.openmrs.Patient();
+		patient.addAttribute(personAttribute);
+		patient.addAttribute(otherAttribute);
+		
+		ContactPoint contactPoint = new ContactPoint();
+		contactPoint.setId(PERSON_ATTRIBUTE_UUID);
+		
+		when(globalPropertyService.getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE))
+		        .thenReturn(PERSON_ATTRIBUTE_TYPE_UUID);
+		when(telecomTranslator.toFhirResource(personAttribute)).thenReturn(contactPoint);
+		
+		List<ContactPoint> contactPoints = patientTranslator.getPatientContactDetails(patient);
+		
+		assertThat(contactPoints, hasSize(1));
+		assertThat(contactPoints.get(0).getId(), equalTo(PERSON_ATTRIBUTE_UUID));
+	}
+	
 	@Test
 	public void shouldTranslateOpenMrsDateChangedToLastUpdatedDate() {
 		org.openmrs.Patient patient = new org.openmrs.Patient();
@@ -51,6 +51,7 @@ import org.openmrs.PersonAttributeType;
 import org.openmrs.PersonName;
 import org.openmrs.User;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
 import org.openmrs.module.fhir2.api.translators.BirthDateTranslator;
 import org.openmrs.module.fhir2.api.translators.GenderTranslator;
@@ -114,6 +115,9 @@ public class PersonTranslatorImplTest {
 	@Mock
 	private PersonAttributeTranslator personAttributeTranslator;
 	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	private Person personMock;
 	
 	@Before
@@ -127,6 +131,7 @@ public class PersonTranslatorImplTest {
 		personTranslator.setPatientReferenceTranslator(patientReferenceTranslator);
 		personTranslator.setBirthDateTranslator(birthDateTranslator);
 		personTranslator.setPersonAttributeTranslator(personAttributeTranslator);
+		personTranslator.setGlobalPropertyService(globalPropertyService);
 	}
 	
 	@Before
@@ -495,11 +500,17 @@ public class PersonTranslatorImplTest {
 		personAttribute.setValue(PERSON_ATTRIBUTE_VALUE);
 		personAttribute.setAttributeType(attributeType);
 		Person person = new Person();
+		person.addAttribute(personAttribute);
+		
+		when(globalPropertyService.getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE))
+		        .thenReturn(PERSON_ATTRIBUTE_TYPE_UUID);
+		when(telecomTranslator.toFhirResource(personAttribute)).thenReturn(contactPoint);
 		
 		org.hl7.fhir.r4.model.Person result = personTranslator.toFhirResource(person);
 		
 		assertThat(result, notNullValue());
-		assertThat(result.getTelecom(), notNullValue());
+		assertThat(result.getTelecom(), hasSize(1));
+		assertThat(result.getTelecom().get(0).getId(), equalTo(CONTACT_ID));
 	}
 	
 	@Test
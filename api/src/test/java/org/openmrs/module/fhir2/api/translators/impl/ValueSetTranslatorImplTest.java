@@ -13,8 +13,12 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -105,4 +109,27 @@ public class ValueSetTranslatorImplTest {
 		    notNullValue());
 	}
 	
+	@Test
+	public void toFhirResourceSummary_shouldTranslateMetadataWithoutCompose() {
+		ConceptName conceptName = new ConceptName();
+		conceptName.setName("test");
+		
+		when(concept.getUuid()).thenReturn(CONCEPT_UUID);
+		when(concept.getName()).thenReturn(conceptName);
+		when(concept.getSet()).thenReturn(true);
+		
+		ValueSet valueSet = valueSetTranslator.toFhirResourceSummary(concept);
+		
+		assertThat(valueSet.getId(), equalTo(CONCEPT_UUID));
+		assertThat(valueSet.getTitle(), equalTo("test"));
+		assertThat(valueSet.hasCompose(), is(false));
+		verify(concept, never()).getConceptSets();
+	}
+	
+	@Test
+	public void toFhirResourceSummary_shouldReturnNullForConceptWithoutSetFlag() {
+		when(concept.getSet()).thenReturn(null);
+		
+		assertThat(valueSetTranslator.toFhirResourceSummary(concept), nullValue());
+	}
 }
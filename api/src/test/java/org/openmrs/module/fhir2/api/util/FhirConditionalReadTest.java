@@ -0,0 +1,72 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FhirConditionalReadTest {
+	
+	private static final String PATIENT_UUID = "a7e04421-525f-442f-8138-05b619d16def";
+	
+	private static final String OTHER_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+	
+	private static final Date LAST_UPDATED = new Date(1_600_000_000_500L);
+	
+	@After
+	public void tearDown() {
+		FhirConditionalRead.end();
+	}
+	
+	@Test
+	public void isNotModified_shouldMatchWeakEntityTag() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "W/\"1\", W/\"2\"", null);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "2", LAST_UPDATED), is(true));
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "3", LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void isNotModified_shouldOnlyApplyToResourceBeingRead() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "*", null);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", OTHER_UUID, "1", LAST_UPDATED), is(false));
+		assertThat(FhirConditionalRead.isNotModified("Person", PATIENT_UUID, "1", LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void isNotModified_shouldCompareIfModifiedSinceToTheSecond() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, null, new Date(1_600_000_000_000L));
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, null, LAST_UPDATED), is(true));
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, null, new Date(1_600_000_001_000L)),
+		    is(false));
+	}
+	
+	@Test
+	public void isNotModified_shouldIgnoreIfModifiedSinceWhenIfNoneMatchIsPresent() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "\"1\"", new Date(1_600_000_000_000L));
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "2", LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void isNotModified_shouldReturnFalseAfterEnd() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "*", null);
+		FhirConditionalRead.end();
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "1", LAST_UPDATED), is(false));
+	}
+}
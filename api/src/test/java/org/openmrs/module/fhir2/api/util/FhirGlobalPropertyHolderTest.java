@@ -0,0 +1,121 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+
+public class FhirGlobalPropertyHolderTest {
+	
+	private final FhirGlobalPropertyHolder globalPropertyHolder = new FhirGlobalPropertyHolder();
+	
+	private final List<String> changedProperties = new ArrayList<>();
+	
+	private final Consumer<String> listener = changedProperties::add;
+	
+	@After
+	public void tearDown() {
+		FhirGlobalPropertyHolder.removeListener(listener);
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void getGlobalPropertyAsInteger_shouldReturnParsedValue() {
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, "25"));
+		
+		assertThat(FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, 10),
+		    equalTo(25));
+	}
+	
+	@Test
+	public void getGlobalPropertyAsInteger_shouldReturnDefaultForInvalidValue() {
+		globalPropertyHolder
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, "twenty"));
+		
+		assertThat(FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, 10),
+		    equalTo(10));
+	}
+	
+	@Test
+	public void getGlobalPropertyAsBoolean_shouldReturnParsedValue() {
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.OBS_VALUE_TEXT_INDEX_ENABLED, "true"));
+		
+		assertThat(FhirGlobalPropertyHolder.getGlobalPropertyAsBoolean(FhirConstants.OBS_VALUE_TEXT_INDEX_ENABLED, false),
+		    is(true));
+	}
+	
+	@Test
+	public void globalPropertyDeleted_shouldRemoveValue() {
+		globalPropertyHolder
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.GLOBAL_PROPERTY_URI_PREFIX, "http://openmrs.org"));
+		globalPropertyHolder.globalPropertyDeleted(FhirConstants.GLOBAL_PROPERTY_URI_PREFIX);
+		
+		assertThat(FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.GLOBAL_PROPERTY_URI_PREFIX), nullValue());
+	}
+	
+	@Test
+	public void globalPropertyChanged_shouldNotifyListenersOfSubscribedProperties() {
+		FhirGlobalPropertyHolder.addListener(listener, FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE);
+		
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, "25"));
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE, "50"));
+		
+		assertThat(changedProperties, contains(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE));
+	}
+	
+	@Test
+	public void removeListener_shouldStopNotifications() {
+		FhirGlobalPropertyHolder.addListener(listener, FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE);
+		FhirGlobalPropertyHolder.removeListener(listener);
+		
+		globalPropertyHolder.globalPropertyDeleted(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE);
+		
+		assertThat(changedProperties, empty());
+	}
+	
+	@Test
+	public void getConfiguration_shouldReturnTypedValues() {
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.SLOW_SEARCH_THRESHOLD_MILLIS, "250"));
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.METRICS_ENABLED, "true"));
+		
+		FhirConfiguration configuration = FhirGlobalPropertyHolder.getConfiguration();
+		
+		assertThat(configuration.getSlowSearchThresholdMillis(), equalTo(250));
+		assertThat(configuration.isMetricsEnabled(), is(true));
+		assertThat(configuration.getReadCacheControl(), equalTo(FhirConfiguration.DEFAULT_READ_CACHE_CONTROL));
+	}
+	
+	@Test
+	public void getConfiguration_shouldReturnSameInstanceUntilAPropertyChanges() {
+		FhirConfiguration configuration = FhirGlobalPropertyHolder.getConfiguration();
+		
+		assertThat(FhirGlobalPropertyHolder.getConfiguration(), sameInstance(configuration));
+		
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.SLOW_SEARCH_THRESHOLD_MILLIS, "250"));
+		
+		assertThat(FhirGlobalPropertyHolder.getConfiguration(), not(sameInstance(configuration)));
+		assertThat(FhirGlobalPropertyHolder.getConfiguration().getSlowSearchThresholdMillis(), equalTo(250));
+	}
+}
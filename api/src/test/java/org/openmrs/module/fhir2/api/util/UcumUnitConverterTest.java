@@ -0,0 +1,80 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.comparesEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UcumUnitConverterTest {
+	
+	private UcumUnitConverter converter;
+	
+	@Before
+	public void setup() throws UcumException, IOException {
+		List<UcumEssenceService> ucumServices = new ArrayList<>();
+		try (InputStream baseUcum = UcumService.class.getClassLoader().getResourceAsStream("ucum-essence.xml");
+		        InputStream fhirUcum = this.getClass().getClassLoader().getResourceAsStream("ucum-fhir-essence.xml")) {
+			ucumServices.add(new UcumEssenceService(baseUcum));
+			ucumServices.add(new UcumEssenceService(fhirUcum));
+		}
+		
+		converter = new UcumUnitConverter();
+		converter.setUcumServices(ucumServices);
+	}
+	
+	@Test
+	public void isValidUnit_shouldReturnTrueForValidUnits() {
+		assertThat(converter.isValidUnit("mmol/L"), is(true));
+		assertThat(converter.isValidUnit("cm"), is(true));
+	}
+	
+	@Test
+	public void isValidUnit_shouldReturnFalseForInvalidUnits() {
+		assertThat(converter.isValidUnit("not a unit"), is(false));
+		assertThat(converter.isValidUnit(""), is(false));
+		assertThat(converter.isValidUnit(null), is(false));
+	}
+	
+	@Test
+	public void getConversion_shouldConvertBetweenComparableUnits() {
+		UcumUnitConverter.UnitConversion conversion = converter.getConversion("mmol/L", "umol/L").get();
+		
+		assertThat(conversion.apply(new BigDecimal("5")), comparesEqualTo(new BigDecimal("5000")));
+	}
+	
+	@Test
+	public void getConversion_shouldReturnEmptyForIncomparableUnits() {
+		assertThat(converter.getConversion("kg", "cm").isPresent(), is(false));
+	}
+	
+	@Test
+	public void getConversion_shouldReturnEmptyForInvalidUnits() {
+		assertThat(converter.getConversion("not a unit", "cm").isPresent(), is(false));
+	}
+	
+	@Test
+	public void getConversion_shouldCacheConversions() {
+		assertThat(converter.getConversion("m", "cm").get(), sameInstance(converter.getConversion("m", "cm").get()));
+	}
+}
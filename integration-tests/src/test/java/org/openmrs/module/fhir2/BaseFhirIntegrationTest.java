@@ -23,6 +23,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.FhirContext;
@@ -42,6 +43,7 @@ import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
 import org.hl7.fhir.instance.model.api.IDomainResource;
 import org.junit.Before;
 import org.openmrs.api.cache.CacheConfig;
+import org.openmrs.module.fhir2.api.cache.FhirEntityChangeListener;
 import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.openmrs.module.fhir2.web.servlet.FhirRestServlet;
 import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
@@ -70,6 +72,9 @@ public abstract class BaseFhirIntegrationTest<T extends IResourceProvider, U ext
 	@Autowired
 	CacheConfig cacheConfig;
 	
+	@Autowired
+	List<FhirEntityChangeListener> entityChangeListeners;
+	
 	@Autowired
 	private ConfigurableApplicationContext ctx;
 	
@@ -95,6 +100,7 @@ public abstract class BaseFhirIntegrationTest<T extends IResourceProvider, U ext
 		cacheConfig.cacheManager().getCacheNames().forEach(name -> cacheConfig.cacheManager().getCache(name).clear());
 		
 		FhirGlobalPropertyHolder.reset();
+		entityChangeListeners.forEach(FhirEntityChangeListener::reset);
 		jsonParser = getFhirContext().newJsonParser();
 		xmlParser = getFhirContext().newXmlParser();
 		
@@ -50,6 +50,8 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	
 	private String templateFilename;
 	
+	private volatile String templateText;
+	
 	private final Set<String> appliesToDatatypes = new HashSet<>();
 	
 	/**
@@ -126,20 +128,31 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	}
 	
 	/**
+	 * The template is loaded the first time it is rendered and then kept for the lifetime of the
+	 * manifest, as the narrative generator asks for it again for every resource it renders.
+	 *
 	 * @return the template text
 	 */
 	@Override
 	public String getTemplateText() {
-		try {
-			return OpenmrsNarrativeTemplateManifest.loadResource(this.templateFilename);
-		}
-		catch (IOException e) {
-			throw new InternalErrorException(e);
+		String result = this.templateText;
+		if (result == null) {
+			try {
+				result = OpenmrsNarrativeTemplateManifest.loadResource(this.templateFilename);
+			}
+			catch (IOException e) {
+				throw new InternalErrorException(e);
+			}
+			
+			this.templateText = result;
 		}
+		
+		return result;
 	}
 	
 	protected void setTemplateFileName(String templateFileName) {
 		this.templateFilename = templateFileName;
+		this.templateText = null;
 	}
 	
 	/**
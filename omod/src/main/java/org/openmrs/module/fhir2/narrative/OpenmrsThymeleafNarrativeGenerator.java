@@ -21,9 +21,12 @@
 
 package org.openmrs.module.fhir2.narrative;
 
+import javax.annotation.Nonnull;
+
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.narrative2.ThymeleafNarrativeGenerator;
@@ -34,10 +37,19 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.context.MessageSource;
 
 /**
- * Class for carrying out the task of narrative generation
+ * Class for carrying out the task of narrative generation. <br/>
+ * While a REST request is handled, narratives are only generated for the resource types requested,
+ * see {@link #beginRequest(Set)}; outside of a request, they are generated for every resource.
  */
 public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenerator {
 	
+	/**
+	 * Requests narratives for all resource types
+	 */
+	public static final String ALL_RESOURCE_TYPES = "*";
+	
+	private static final ThreadLocal<Set<String>> requestResourceTypes = new ThreadLocal<>();
+	
 	private boolean isInitialized;
 	
 	@Getter
@@ -67,6 +79,12 @@ public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 	 */
 	@Override
 	public boolean populateResourceNarrative(FhirContext theFhirContext, IBaseResource theResource) {
+		Set<String> resourceTypes = requestResourceTypes.get();
+		if (resourceTypes != null && !resourceTypes.contains(ALL_RESOURCE_TYPES)
+		        && !resourceTypes.contains(theFhirContext.getResourceDefinition(theResource).getName().toUpperCase())) {
+			return false;
+		}
+		
 		if (!isInitialized) {
 			initialize();
 		}
@@ -74,6 +92,21 @@ public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 		return super.populateResourceNarrative(theFhirContext, theResource);
 	}
 	
+	/**
+	 * Limits narrative generation on the current thread to the supplied resource types until
+	 * {@link #endRequest()} is called
+	 *
+	 * @param resourceTypes the upper-case names of the resource types to generate narratives for, which
+	 *            may include {@link #ALL_RESOURCE_TYPES}
+	 */
+	public static void beginRequest(@Nonnull Set<String> resourceTypes) {
+		requestResourceTypes.set(resourceTypes);
+	}
+	
+	public static void endRequest() {
+		requestResourceTypes.remove();
+	}
+	
 	/**
 	 * Sets property file paths for the narrative generator
 	 *
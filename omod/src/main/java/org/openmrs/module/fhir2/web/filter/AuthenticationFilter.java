@@ -25,6 +25,7 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.UsernamePasswordCredentials;
+import org.openmrs.module.fhir2.api.cache.FhirCredentialCache;
 
 public class AuthenticationFilter implements Filter {
 	
@@ -51,11 +52,17 @@ public class AuthenticationFilter implements Filter {
 							basicAuth = basicAuth.substring(6); // remove the leading "Basic "
 							String decoded = new String(Base64.decodeBase64(basicAuth), StandardCharsets.UTF_8);
 							String[] userAndPass = decoded.split(":");
-							UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(userAndPass[0],
-							        userAndPass[1]);
-							Context.authenticate(credentials);
+							// clients which send their credentials with every request only need them verified once
+							if (!FhirCredentialCache.authenticate(userAndPass[0], userAndPass[1])) {
+								long generation = FhirCredentialCache.getGeneration();
+								UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(userAndPass[0],
+								        userAndPass[1]);
+								Context.authenticate(credentials);
+								FhirCredentialCache.authenticated(userAndPass[0], userAndPass[1], generation);
+							}
 						}
 						catch (Exception e) {
+							FhirCredentialCache.release();
 							HttpServletResponse httpResponse = (HttpServletResponse) response;
 							httpResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
 							return;
@@ -68,7 +75,12 @@ public class AuthenticationFilter implements Filter {
 			}
 		}
 		
-		chain.doFilter(request, response);
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			FhirCredentialCache.release();
+		}
 	}
 	
 	@Override
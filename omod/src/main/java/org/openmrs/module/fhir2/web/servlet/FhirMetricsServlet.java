@@ -0,0 +1,80 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.servlet;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.CacheStats;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirActivator;
+import org.openmrs.module.fhir2.api.cache.FhirConceptTranslationCache;
+import org.openmrs.module.fhir2.api.metrics.FhirMetrics;
+import org.openmrs.module.fhir2.web.util.SpillingPagingProvider;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * Serves the metrics recorded by {@link FhirMetrics}, along with the statistics of the
+ * {@link SpillingPagingProvider} and the {@link FhirConceptTranslationCache}, as JSON. Only users who
+ * can view administration functions may read them.
+ */
+public class FhirMetricsServlet extends HttpServlet {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
+			return;
+		}
+		
+		if (!Context.hasPrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, "Not authorized");
+			return;
+		}
+		
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType("application/json");
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader("Cache-Control", "no-store");
+		
+		Map<String, Object> snapshot = new LinkedHashMap<>(FhirMetrics.getSnapshot());
+		snapshot.put(SpillingPagingProvider.class.getSimpleName(), SpillingPagingProvider.getStatistics());
+		if (FhirActivator.getApplicationContext() != null) {
+			FhirConceptTranslationCache conceptTranslationCache = FhirActivator.getApplicationContext()
+			        .getBean(FhirConceptTranslationCache.class);
+			snapshot.put(FhirConceptTranslationCache.class.getSimpleName(),
+			    getStatistics(conceptTranslationCache.getStatistics(), conceptTranslationCache.size()));
+		}
+		
+		objectMapper.writeValue(response.getOutputStream(), snapshot);
+	}
+	
+	private static Map<String, Object> getStatistics(CacheStats stats, long size) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("size", size);
+		result.put("hits", stats.hitCount());
+		result.put("misses", stats.missCount());
+		result.put("hitRate", stats.hitRate());
+		result.put("evictions", stats.evictionCount());
+		return result;
+	}
+}
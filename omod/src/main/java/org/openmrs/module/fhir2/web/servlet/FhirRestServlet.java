@@ -15,6 +15,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
@@ -28,7 +29,6 @@ import java.util.stream.Collectors;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.server.BasePagingProvider;
-import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.IServerAddressStrategy;
 import ca.uhn.fhir.rest.server.RestfulServer;
@@ -44,14 +44,22 @@ import org.openmrs.module.fhir2.FhirActivator;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.cache.FhirReferenceDisplayCache;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
 import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
 import org.openmrs.module.fhir2.web.authentication.RequireAuthenticationInterceptor;
-import org.openmrs.module.fhir2.web.util.DisableCacheInterceptor;
+import org.openmrs.module.fhir2.web.util.CacheControlInterceptor;
+import org.openmrs.module.fhir2.web.util.ConditionalReadInterceptor;
+import org.openmrs.module.fhir2.web.util.LongRunningRequestExecutor;
+import org.openmrs.module.fhir2.web.util.MetadataCacheInterceptor;
+import org.openmrs.module.fhir2.web.util.MetricsInterceptor;
 import org.openmrs.module.fhir2.web.util.NarrativeUtils;
+import org.openmrs.module.fhir2.web.util.SpillingPagingProvider;
+import org.openmrs.module.fhir2.web.util.StreamingBundleInterceptor;
 import org.openmrs.module.fhir2.web.util.SummaryInterceptor;
 import org.openmrs.module.fhir2.web.util.SupportMergePatchInterceptor;
 import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -78,6 +86,10 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	
 	private boolean started = false;
 	
+	private transient LongRunningRequestExecutor longRunningRequestExecutor;
+	
+	private final transient MetadataCacheInterceptor metadataCacheInterceptor = new MetadataCacheInterceptor();
+	
 	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Qualifier("messageSourceService"), @Autowired })
 	private MessageSource messageSource;
 	
@@ -146,11 +158,20 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 		setPagingProvider(createPagingProvider());
 		setDefaultResponseEncoding(EncodingEnum.JSON);
 
+		if (longRunningRequestExecutor == null) {
+			longRunningRequestExecutor = new LongRunningRequestExecutor();
+		}
+
 		registerInterceptor(loggingInterceptor);
+		registerInterceptor(new MetricsInterceptor());
 		registerInterceptor(new RequireAuthenticationInterceptor());
-		registerInterceptor(new DisableCacheInterceptor());
+		registerInterceptor(new CacheControlInterceptor());
+		registerInterceptor(new ConditionalReadInterceptor());
 		registerInterceptor(new SummaryInterceptor());
 		registerInterceptor(new SupportMergePatchInterceptor());
+		registerInterceptor(metadataCacheInterceptor);
+		// must be registered last, as it writes the response itself
+		registerInterceptor(new StreamingBundleInterceptor());
 
 		String narrativesOverridePropertyFile = NarrativeUtils.getValidatedPropertiesFilePath(
 				globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_OVERRIDE_PROPERTY_FILE, null));
@@ -189,7 +210,25 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	@Override
 	protected void service(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
 		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
-		super.service(theReq, theResp);
+		if (longRunningRequestExecutor == null) {
+			serviceRequest(theReq, theResp);
+		} else {
+			longRunningRequestExecutor.execute(theReq, theResp, this::serviceRequest);
+		}
+	}
+	
+	private void serviceRequest(HttpServletRequest theReq, HttpServletResponse theResp)
+	        throws ServletException, IOException {
+		FhirReferenceDisplayCache.beginRequest();
+		OpenmrsThymeleafNarrativeGenerator.beginRequest(NarrativeUtils.getNarrativeResourceTypes(theReq,
+		    globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVE_RESOURCE_TYPES, null)));
+		try {
+			super.service(theReq, theResp);
+		}
+		finally {
+			OpenmrsThymeleafNarrativeGenerator.endRequest();
+			FhirReferenceDisplayCache.endRequest();
+		}
 	}
 	
 	@Override
@@ -218,7 +257,19 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 		int maximumPageSize = globalPropertyService.getGlobalPropertyAsInteger(FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE,
 		    100);
 		
-		BasePagingProvider pagingProvider = new FifoMemoryPagingProvider(100);
+		int memoryLimitMegabytes = globalPropertyService
+		        .getGlobalPropertyAsInteger(FhirConstants.PAGING_MEMORY_LIMIT_MEGABYTES, 32);
+		int diskLimitMegabytes = globalPropertyService.getGlobalPropertyAsInteger(FhirConstants.PAGING_DISK_LIMIT_MEGABYTES,
+		    256);
+		int expiryMinutes = globalPropertyService.getGlobalPropertyAsInteger(FhirConstants.PAGING_EXPIRY_MINUTES, 60);
+		// with no memory at all, every search would be written out as soon as it is stored
+		long memoryLimit = (memoryLimitMegabytes > 0 ? memoryLimitMegabytes : 32) * 1024L * 1024L;
+		long diskLimit = Math.max(0, diskLimitMegabytes) * 1024L * 1024L;
+		long expiryMillis = (expiryMinutes > 0 ? expiryMinutes : 60) * 60L * 1000L;
+		String directory = "fhir2/paging/" + getFhirContext().getVersion().getVersion().name().toLowerCase();
+		
+		BasePagingProvider pagingProvider = new SpillingPagingProvider(memoryLimit, diskLimit, expiryMillis,
+		        () -> new File(OpenmrsUtil.getApplicationDataDirectory(), directory).toPath());
 		pagingProvider.setDefaultPageSize(defaultPageSize);
 		pagingProvider.setMaximumPageSize(maximumPageSize);
 		return pagingProvider;
@@ -257,10 +308,15 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 				        .collect(Collectors.toList()));
 				
 				registerInterceptor(ctx.getBean("hapiLoggingInterceptor", LoggingInterceptor.class));
+				registerInterceptor(new MetricsInterceptor());
 				registerInterceptor(new RequireAuthenticationInterceptor());
-				registerInterceptor(new DisableCacheInterceptor());
+				registerInterceptor(new CacheControlInterceptor());
+				registerInterceptor(new ConditionalReadInterceptor());
 				registerInterceptor(new SummaryInterceptor());
 				registerInterceptor(new SupportMergePatchInterceptor());
+				metadataCacheInterceptor.invalidate();
+				registerInterceptor(metadataCacheInterceptor);
+				registerInterceptor(new StreamingBundleInterceptor());
 				
 				setAdministrationService(ctx.getBean("adminService", AdministrationService.class));
 				setGlobalPropertyService(ctx.getBean(FhirGlobalPropertyService.class));
@@ -298,6 +354,10 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 			
 		}
 		
+		if (longRunningRequestExecutor != null) {
+			longRunningRequestExecutor.shutdown();
+		}
+		
 		super.destroy();
 	}
 }
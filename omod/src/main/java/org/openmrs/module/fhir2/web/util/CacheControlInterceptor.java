@@ -15,15 +15,29 @@ import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 
+/**
+ * Adds the Cache-Control header configured by the fhir2.readCacheControl and
+ * fhir2.searchCacheControl global properties to the responses to reads and searches. By default,
+ * clients may keep the results of reads, but have to revalidate them, which they can do cheaply with
+ * a conditional read (see {@link ConditionalReadInterceptor}), while search results are never stored.
+ */
 @Interceptor
-public class DisableCacheInterceptor {
+public class CacheControlInterceptor {
 	
 	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
 	public boolean handleOutgoingResponse(RequestDetails requestDetails) {
-		if (requestDetails.getRestOperationType() == RestOperationTypeEnum.READ
-		        || requestDetails.getRestOperationType() == RestOperationTypeEnum.SEARCH_TYPE) {
-			requestDetails.getResponse().addHeader(Constants.HEADER_CACHE_CONTROL, "no-store");
+		String cacheControl = null;
+		if (requestDetails.getRestOperationType() == RestOperationTypeEnum.READ) {
+			cacheControl = FhirGlobalPropertyHolder.getConfiguration().getReadCacheControl();
+		} else if (requestDetails.getRestOperationType() == RestOperationTypeEnum.SEARCH_TYPE) {
+			cacheControl = FhirGlobalPropertyHolder.getConfiguration().getSearchCacheControl();
+		}
+		
+		if (StringUtils.isNotBlank(cacheControl)) {
+			requestDetails.getResponse().addHeader(Constants.HEADER_CACHE_CONTROL, cacheControl.trim());
 		}
 		
 		return true;
@@ -0,0 +1,68 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import java.util.Date;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.openmrs.module.fhir2.api.util.FhirConditionalRead;
+
+/**
+ * Passes the If-None-Match and If-Modified-Since headers of reads to the services via
+ * {@link FhirConditionalRead}, so that a read of a resource the client already has is answered with
+ * 304 Not Modified as soon as the OpenMRS object is loaded, rather than after it has been translated.
+ */
+@Interceptor
+public class ConditionalReadInterceptor {
+	
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean handleIncomingRequest(RequestDetails requestDetails) {
+		IIdType id = requestDetails.getId();
+		if (requestDetails.getRestOperationType() != RestOperationTypeEnum.READ || id == null || !id.hasIdPart()
+		        || id.hasVersionIdPart()) {
+			FhirConditionalRead.end();
+			return true;
+		}
+		
+		FhirConditionalRead.begin(requestDetails.getResourceName(), id.getIdPart(),
+		    requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH), getIfModifiedSince(requestDetails));
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void handleProcessingCompleted(RequestDetails requestDetails) {
+		FhirConditionalRead.end();
+	}
+	
+	private Date getIfModifiedSince(RequestDetails requestDetails) {
+		if (!(requestDetails instanceof ServletRequestDetails)) {
+			return null;
+		}
+		
+		try {
+			long ifModifiedSince = ((ServletRequestDetails) requestDetails).getServletRequest()
+			        .getDateHeader(HEADER_IF_MODIFIED_SINCE);
+			return ifModifiedSince < 0 ? null : new Date(ifModifiedSince);
+		}
+		catch (IllegalArgumentException e) {
+			// a malformed date is ignored, as if the header was not sent
+			return null;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.openmrs.module.fhir2.FhirConstants.LONG_RUNNING_REQUEST_CONCURRENCY;
+import static org.openmrs.module.fhir2.FhirConstants.LONG_RUNNING_REQUEST_QUEUE_SIZE;
+import static org.openmrs.module.fhir2.FhirConstants.LONG_RUNNING_REQUEST_VIRTUAL_THREADS;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.api.cache.FhirCredentialCache;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.util.OpenmrsClassLoader;
+
+/**
+ * Limits the number of long-running requests, i.e., $everything, $lastn and $export operations and
+ * searches using _include or _revinclude, that are processed at the same time, so that a few of them
+ * cannot occupy all of the container's worker threads and stall cheap reads. <br/>
+ * Each type of operation may run on at most fhir2.longRunningRequestConcurrency threads. Where the
+ * request supports asynchronous processing, it is handed to a separate executor, which uses virtual
+ * threads if fhir2.longRunningRequestVirtualThreads is true and the JVM supports them, and the
+ * container's thread is released; at most fhir2.longRunningRequestQueueSize further requests wait for
+ * one of the threads. Otherwise the request is processed on the container's thread if one of the
+ * threads is free, since a waiting request would hold on to a container thread. Any other request is
+ * rejected with a 503 response. Setting the concurrency to 0 processes all requests as they arrive.
+ */
+@Slf4j
+public class LongRunningRequestExecutor {
+	
+	public enum OperationType {
+		EVERYTHING,
+		LASTN,
+		EXPORT,
+		SEARCH
+	}
+	
+	@FunctionalInterface
+	public interface RequestHandler {
+		
+		void handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+	}
+	
+	private static final int DEFAULT_CONCURRENCY = 4;
+	
+	private static final int DEFAULT_QUEUE_SIZE = 20;
+	
+	private static final String RETRY_AFTER_SECONDS = "10";
+	
+	private static final Configuration DISABLED = new Configuration(false, null);
+	
+	private final Consumer<String> configurationListener = globalProperty -> reset();
+	
+	// the lanes outlive configuration changes, so that requests which are in flight are still counted
+	private final Map<OperationType, Lane> lanes = new EnumMap<>(OperationType.class);
+	
+	private volatile Configuration configuration = null;
+	
+	public LongRunningRequestExecutor() {
+		for (OperationType operationType : OperationType.values()) {
+			lanes.put(operationType, new Lane());
+		}
+		
+		FhirGlobalPropertyHolder.addListener(configurationListener, LONG_RUNNING_REQUEST_CONCURRENCY,
+		    LONG_RUNNING_REQUEST_QUEUE_SIZE, LONG_RUNNING_REQUEST_VIRTUAL_THREADS);
+	}
+	
+	/**
+	 * Processes the supplied request with the supplied handler, either straight away or, if it is a
+	 * long-running request, once there is capacity for it
+	 *
+	 * @param request the request to process
+	 * @param response the response to the request
+	 * @param handler processes the request
+	 */
+	public void execute(HttpServletRequest request, HttpServletResponse response, RequestHandler handler)
+	        throws ServletException, IOException {
+		OperationType operationType = getOperationType(request);
+		Configuration currentConfiguration = operationType == null ? DISABLED : getConfiguration();
+		if (!currentConfiguration.limited) {
+			handler.handle(request, response);
+			return;
+		}
+		
+		Lane lane = lanes.get(operationType);
+		if (!lane.admitted.tryAcquire()) {
+			reject(response, operationType);
+			return;
+		}
+		
+		if (request.isAsyncSupported() && currentConfiguration.executor != null) {
+			executeAsync(request, response, handler, lane, currentConfiguration.executor);
+			return;
+		}
+		
+		try {
+			// without asynchronous processing, waiting for a thread would hold on to the container's thread
+			if (!lane.running.tryAcquire()) {
+				reject(response, operationType);
+				return;
+			}
+			
+			try {
+				handler.handle(request, response);
+			}
+			finally {
+				lane.running.release();
+			}
+		}
+		finally {
+			lane.admitted.release();
+		}
+	}
+	
+	/**
+	 * Stops accepting long-running requests; requests which have already been admitted are still
+	 * processed
+	 */
+	public void shutdown() {
+		FhirGlobalPropertyHolder.removeListener(configurationListener);
+		Configuration previous = configuration;
+		configuration = DISABLED;
+		if (previous != null && previous.executor != null) {
+			previous.executor.shutdown();
+		}
+	}
+	
+	protected void reset() {
+		Configuration previous;
+		synchronized (this) {
+			previous = configuration;
+			if (previous == DISABLED) {
+				// we've been shut down
+				return;
+			}
+			
+			configuration = null;
+		}
+		
+		if (previous != null && previous.executor != null) {
+			previous.executor.shutdown();
+		}
+	}
+	
+	static OperationType getOperationType(HttpServletRequest request) {
+		String requestURI = request.getRequestURI();
+		if (requestURI == null) {
+			return null;
+		}
+		
+		String lastSegment = requestURI.substring(requestURI.lastIndexOf('/') + 1);
+		switch (lastSegment) {
+			case "$everything":
+				return OperationType.EVERYTHING;
+			case "$lastn":
+			case "$lastn-encounters":
+				return OperationType.LASTN;
+			case "$export":
+				return OperationType.EXPORT;
+		}
+		
+		// the parameters of other POST requests are in the body, which must be left for HAPI to read
+		if ("GET".equals(request.getMethod()) || ("POST".equals(request.getMethod()) && "_search".equals(lastSegment))) {
+			if (request.getParameter("_include") != null || request.getParameter("_revinclude") != null) {
+				return OperationType.SEARCH;
+			}
+		}
+		
+		return null;
+	}
+	
+	private static void reject(HttpServletResponse response, OperationType operationType) throws IOException {
+		log.warn("Rejecting {} request as too many are already being processed", operationType);
+		response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+		    "Too many " + operationType + " requests are being processed");
+	}
+	
+	private void executeAsync(HttpServletRequest request, HttpServletResponse response, RequestHandler handler, Lane lane,
+	        ExecutorService executor) throws IOException {
+		UserContext userContext = Context.getUserContext();
+		AsyncContext asyncContext = request.startAsync(request, response);
+		// long-running requests take as long as they take; the client can give up if it wants to
+		asyncContext.setTimeout(0);
+		// the worker keeps the user context; the container thread goes back to the one it had before
+		FhirCredentialCache.detach();
+		
+		try {
+			executor.execute(() -> {
+				try {
+					processAsync(asyncContext, userContext, handler, lane);
+				}
+				finally {
+					lane.admitted.release();
+					asyncContext.complete();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			// the executor was replaced after this request was admitted
+			lane.admitted.release();
+			response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			asyncContext.complete();
+		}
+	}
+	
+	private void processAsync(AsyncContext asyncContext, UserContext userContext, RequestHandler handler, Lane lane) {
+		HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+		HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+		
+		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
+		lane.running.acquireUninterruptibly();
+		try {
+			Context.openSession();
+			try {
+				Context.setUserContext(userContext);
+				handler.handle(request, response);
+			}
+			finally {
+				Context.clearUserContext();
+				Context.closeSession();
+			}
+		}
+		catch (Exception e) {
+			log.error("Exception caught while processing {}", request.getRequestURI(), e);
+			if (!response.isCommitted()) {
+				try {
+					response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				}
+				catch (IOException ignored) {
+					
+				}
+			}
+		}
+		finally {
+			lane.running.release();
+		}
+	}
+	
+	private Configuration getConfiguration() {
+		Configuration result = configuration;
+		if (result == null) {
+			synchronized (this) {
+				result = configuration;
+				if (result == null) {
+					result = loadConfiguration();
+					configuration = result;
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private Configuration loadConfiguration() {
+		int concurrency = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(LONG_RUNNING_REQUEST_CONCURRENCY,
+		    DEFAULT_CONCURRENCY);
+		if (concurrency <= 0) {
+			return new Configuration(false, null);
+		}
+		
+		int queueSize = Math.max(0,
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(LONG_RUNNING_REQUEST_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+		
+		for (Lane lane : lanes.values()) {
+			lane.resize(concurrency, queueSize);
+		}
+		
+		ExecutorService executor = null;
+		if (FhirGlobalPropertyHolder.getGlobalPropertyAsBoolean(LONG_RUNNING_REQUEST_VIRTUAL_THREADS, false)) {
+			executor = newVirtualThreadExecutor();
+		}
+		
+		if (executor == null) {
+			// the number of threads is bounded by the number of requests the lanes admit
+			executor = Executors.newCachedThreadPool(
+			    new ThreadFactoryBuilder().setNameFormat("fhir2-long-running-request-%d").setDaemon(true).build());
+		}
+		
+		return new Configuration(true, executor);
+	}
+	
+	private static ExecutorService newVirtualThreadExecutor() {
+		// this module is built for Java 8, so virtual threads can only be reached reflectively
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			log.warn("Virtual threads are not supported by this JVM; long-running requests will use platform threads");
+			return null;
+		}
+	}
+	
+	private static final class Configuration {
+		
+		private final boolean limited;
+		
+		private final ExecutorService executor;
+		
+		private Configuration(boolean limited, ExecutorService executor) {
+			this.limited = limited;
+			this.executor = executor;
+		}
+	}
+	
+	private static final class Lane {
+		
+		// requests which are either running or waiting to run
+		private final ResizableSemaphore admitted = new ResizableSemaphore(false);
+		
+		private final ResizableSemaphore running = new ResizableSemaphore(true);
+		
+		private int concurrency = 0;
+		
+		private int queueSize = 0;
+		
+		/**
+		 * Changes the number of requests this lane admits. Requests which are in flight keep their permits,
+		 * so if the limits are lowered, no further requests are admitted until enough of them complete.
+		 */
+		private synchronized void resize(int concurrency, int queueSize) {
+			admitted.resize(this.concurrency + this.queueSize, concurrency + queueSize);
+			running.resize(this.concurrency, concurrency);
+			this.concurrency = concurrency;
+			this.queueSize = queueSize;
+		}
+	}
+	
+	private static final class ResizableSemaphore extends Semaphore {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private ResizableSemaphore(boolean fair) {
+			super(0, fair);
+		}
+		
+		private void resize(int previousPermits, int permits) {
+			if (permits > previousPermits) {
+				release(permits - previousPermits);
+			} else if (permits < previousPermits) {
+				reducePermits(previousPermits - permits);
+			}
+		}
+	}
+}
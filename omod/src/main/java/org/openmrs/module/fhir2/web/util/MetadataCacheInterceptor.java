@@ -0,0 +1,168 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Triple;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * Serves the CapabilityStatement returned by the /metadata endpoint from memory. The first request
+ * for each server base URL, encoding and pretty-printing setting is answered by HAPI as usual and
+ * its CapabilityStatement is encoded and stored, together with a gzip-compressed copy; later requests
+ * are answered with the stored bytes before HAPI generates a new CapabilityStatement. <br/>
+ * Requests with any parameter other than _format and _pretty, such as _summary, _elements or mode,
+ * are always left to HAPI, as the key only covers the base URL, the encoding and pretty-printing. The
+ * CapabilityStatement only depends on the registered providers, so the servlet calls
+ * {@link #invalidate()} whenever it re-registers its providers.
+ */
+@Slf4j
+@Interceptor
+public class MetadataCacheInterceptor {
+	
+	// the server base URL is taken from the request, so we limit how many variants we keep
+	private static final int MAXIMUM_SIZE = 16;
+	
+	// the only parameters which may change the response and are part of the key
+	private static final Set<String> KEY_PARAMETERS = Collections
+	        .unmodifiableSet(new HashSet<>(Arrays.asList(Constants.PARAM_FORMAT, Constants.PARAM_PRETTY)));
+	
+	private final Cache<Triple<String, EncodingEnum, Boolean>, EncodedResponse> responses = CacheBuilder.newBuilder()
+	        .maximumSize(MAXIMUM_SIZE).build();
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean handleIncomingRequest(RequestDetails requestDetails, HttpServletResponse response) throws IOException {
+		Triple<String, EncodingEnum, Boolean> key = getKey(requestDetails);
+		if (key == null) {
+			return true;
+		}
+		
+		EncodedResponse encodedResponse = responses.getIfPresent(key);
+		if (encodedResponse == null) {
+			return true;
+		}
+		
+		byte[] body;
+		if (RestfulServerUtils.respondGzip(requestDetails)) {
+			response.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			body = encodedResponse.gzippedBody;
+		} else {
+			body = encodedResponse.body;
+		}
+		
+		response.setStatus(Constants.STATUS_HTTP_200_OK);
+		response.setContentType(encodedResponse.contentType);
+		response.setCharacterEncoding(Constants.CHARSET_NAME_UTF8);
+		response.setContentLength(body.length);
+		
+		try (OutputStream outputStream = response.getOutputStream()) {
+			outputStream.write(body);
+		}
+		
+		return false;
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean handleOutgoingResponse(RequestDetails requestDetails, ResponseDetails responseDetails) {
+		IBaseResource capabilityStatement = responseDetails.getResponseResource();
+		Triple<String, EncodingEnum, Boolean> key = getKey(requestDetails);
+		if (key == null || capabilityStatement == null
+		        || responseDetails.getResponseCode() != Constants.STATUS_HTTP_200_OK) {
+			return true;
+		}
+		
+		try {
+			IParser parser = key.getMiddle().newParser(requestDetails.getFhirContext());
+			parser.setPrettyPrint(key.getRight());
+			parser.setServerBaseUrl(key.getLeft());
+			
+			byte[] body = parser.encodeResourceToString(capabilityStatement).getBytes(StandardCharsets.UTF_8);
+			responses.put(key, new EncodedResponse(
+			        RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getResourceContentType(), body,
+			        gzip(body)));
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("Exception caught while encoding the CapabilityStatement; it will not be cached", e);
+		}
+		
+		// HAPI still writes this response itself
+		return true;
+	}
+	
+	/**
+	 * Discards every stored response, so that the next request for each variant is answered by HAPI
+	 */
+	public void invalidate() {
+		responses.invalidateAll();
+	}
+	
+	private Triple<String, EncodingEnum, Boolean> getKey(RequestDetails requestDetails) {
+		if (requestDetails.getRestOperationType() != RestOperationTypeEnum.METADATA
+		        || !KEY_PARAMETERS.containsAll(requestDetails.getParameters().keySet())) {
+			return null;
+		}
+		
+		EncodingEnum encoding = RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getEncoding();
+		if (encoding != EncodingEnum.JSON && encoding != EncodingEnum.XML) {
+			return null;
+		}
+		
+		return Triple.of(requestDetails.getFhirServerBase(), encoding,
+		    RestfulServerUtils.prettyPrintResponse(requestDetails.getServer(), requestDetails));
+	}
+	
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream(body.length / 4);
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(result)) {
+			gzipOutputStream.write(body);
+		}
+		
+		return result.toByteArray();
+	}
+	
+	private static final class EncodedResponse {
+		
+		private final String contentType;
+		
+		private final byte[] body;
+		
+		private final byte[] gzippedBody;
+		
+		private EncodedResponse(String contentType, byte[] body, byte[] gzippedBody) {
+			this.contentType = contentType;
+			this.body = body;
+			this.gzippedBody = gzippedBody;
+		}
+	}
+}
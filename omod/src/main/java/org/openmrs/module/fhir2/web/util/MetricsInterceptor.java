@@ -0,0 +1,89 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir2.api.metrics.FhirMetrics;
+import org.openmrs.module.fhir2.api.metrics.FhirMetricsPhase;
+
+/**
+ * Records the metrics of each request via {@link FhirMetrics}, labelled with the resource type and
+ * operation of the request. The time spent encoding the response is measured from the moment HAPI
+ * has the response resource until processing completes, so this interceptor must be registered
+ * before any interceptor which writes the response itself.
+ */
+@Interceptor
+public class MetricsInterceptor {
+	
+	private static final String ENCODING_START = MetricsInterceptor.class.getName() + ".encodingStart";
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean handleIncomingRequest(RequestDetails requestDetails) {
+		if (FhirMetrics.isEnabled()) {
+			FhirMetrics.beginRequest(requestDetails.getResourceName(), getOperation(requestDetails));
+		}
+		
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean handleOutgoingResponse(RequestDetails requestDetails, ResponseDetails responseDetails) {
+		if (!FhirMetrics.isEnabled()) {
+			return true;
+		}
+		
+		// the resources in bundles are counted as they are loaded
+		IBaseResource resource = responseDetails.getResponseResource();
+		if (resource != null && !(resource instanceof IBaseBundle)) {
+			FhirMetrics.addResults(1);
+		}
+		
+		long start = FhirMetrics.startTimer(FhirMetricsPhase.ENCODING);
+		if (start >= 0) {
+			requestDetails.getUserData().put(ENCODING_START, start);
+		}
+		
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void handleProcessingCompleted(RequestDetails requestDetails) {
+		Object start = requestDetails.getUserData().remove(ENCODING_START);
+		if (start instanceof Long) {
+			FhirMetrics.stopTimer(FhirMetricsPhase.ENCODING, (Long) start);
+		}
+		
+		FhirMetrics.endRequest();
+	}
+	
+	private static String getOperation(RequestDetails requestDetails) {
+		RestOperationTypeEnum operationType = requestDetails.getRestOperationType();
+		if (operationType == null) {
+			return "unknown";
+		}
+		
+		// extended operations are labelled with their name, e.g., "$everything"
+		if ((operationType == RestOperationTypeEnum.EXTENDED_OPERATION_SERVER
+		        || operationType == RestOperationTypeEnum.EXTENDED_OPERATION_TYPE
+		        || operationType == RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE)
+		        && requestDetails.getOperation() != null) {
+			return requestDetails.getOperation();
+		}
+		
+		return operationType.getCode();
+	}
+}
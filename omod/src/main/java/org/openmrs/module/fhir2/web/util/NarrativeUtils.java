@@ -10,12 +10,52 @@
 package org.openmrs.module.fhir2.web.util;
 
 import javax.annotation.Nonnull;
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
 
 @Slf4j
 public class NarrativeUtils {
 	
+	public static final String NARRATIVE_PARAMETER = "_narrative";
+	
+	private static final Set<String> ALL_RESOURCE_TYPES = Collections
+	        .singleton(OpenmrsThymeleafNarrativeGenerator.ALL_RESOURCE_TYPES);
+	
+	/**
+	 * Determines the resource types to generate narratives for while handling a request. Narratives
+	 * are generated for all resource types if the request has {@code _narrative=true} or
+	 * {@code _summary=text}, for none if it has {@code _narrative=false} and otherwise only for those
+	 * configured.
+	 *
+	 * @param request the request
+	 * @param defaultResourceTypes a comma-separated list of resource types, or "*" for all
+	 * @return the upper-case names of the resource types to generate narratives for
+	 */
+	public static Set<String> getNarrativeResourceTypes(@Nonnull HttpServletRequest request, String defaultResourceTypes) {
+		String narrative = request.getParameter(NARRATIVE_PARAMETER);
+		if (narrative != null) {
+			return Boolean.parseBoolean(narrative.trim()) ? ALL_RESOURCE_TYPES : Collections.emptySet();
+		}
+		
+		if ("text".equalsIgnoreCase(request.getParameter("_summary"))) {
+			return ALL_RESOURCE_TYPES;
+		}
+		
+		if (defaultResourceTypes == null || defaultResourceTypes.trim().isEmpty()) {
+			return Collections.emptySet();
+		}
+		
+		return Arrays.stream(defaultResourceTypes.split(",")).map(String::trim).filter(type -> !type.isEmpty())
+		        .map(String::toUpperCase).collect(Collectors.toSet());
+	}
+	
 	public static String getValidatedPropertiesFilePath(String path) {
 		if (path == null || path.isEmpty()) {
 			return null;
@@ -16,7 +16,6 @@ import javax.servlet.http.HttpServletRequest;
 
 import ca.uhn.fhir.rest.server.IServerAddressStrategy;
 import org.apache.commons.lang.StringUtils;
-import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.springframework.stereotype.Component;
 
@@ -25,7 +24,7 @@ public class OpenmrsFhirAddressStrategy implements IServerAddressStrategy {
 	
 	@Override
 	public String determineServerBase(ServletContext context, HttpServletRequest request) {
-		String gpPrefix = FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.GLOBAL_PROPERTY_URI_PREFIX);
+		String gpPrefix = FhirGlobalPropertyHolder.getConfiguration().getUriPrefix();
 		
 		if (StringUtils.isNotBlank(gpPrefix)) {
 			StringBuilder gpUrl = new StringBuilder().append(gpPrefix);
@@ -0,0 +1,618 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.BasePagingProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.util.OpenmrsClassLoader;
+
+/**
+ * A paging provider which bounds the memory used by stored searches by their estimated size rather
+ * than their number. Once the searches held in memory exceed the memory limit, the least recently
+ * used ones are written to a directory on disk, from which they are read back when their next page
+ * is requested, so paging sessions survive bursts of searches. <br/>
+ * Most searches are only stored as their parameters and are re-run for each page, so they are small;
+ * only these are written to disk. Their parameters may still identify patients, e.g., by name,
+ * identifier or birth date, so where the file system supports POSIX permissions, the directory and
+ * the files in it can only be accessed by the user running the server. Searches whose results are
+ * held in memory, like $everything, are weighed by the number of resources they hold and are
+ * discarded when they are evicted, as are searches which cannot be serialized and the oldest searches
+ * on disk once the disk limit is reached. Searches expire once they have not been used for the expiry
+ * time, whether they are held in memory or on disk, and any searches left on disk by a previous
+ * provider are deleted when a provider is created. Only the classes searches are made of are read
+ * back from disk.
+ */
+@Slf4j
+public class SpillingPagingProvider extends BasePagingProvider {
+	
+	// the estimated size of a search which is stored as its parameters
+	static final long SEARCH_BYTES = 2 * 1024;
+	
+	// the estimated size of each resource held by a search
+	static final long RESOURCE_BYTES = 4 * 1024;
+	
+	private static final String FILE_SUFFIX = ".search";
+	
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+	
+	private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+	
+	private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+	
+	// expired searches are looked for at most this often, though an expired search is never returned
+	private static final long SWEEP_INTERVAL_MILLIS = 60 * 1000;
+	
+	private static final Pattern SEARCH_ID = Pattern
+	        .compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+	
+	private static final Set<SpillingPagingProvider> providers = Collections.newSetFromMap(new WeakHashMap<>());
+	
+	private static final AtomicLong stored = new AtomicLong();
+	
+	private static final AtomicLong spilled = new AtomicLong();
+	
+	private static final AtomicLong reloaded = new AtomicLong();
+	
+	private static final AtomicLong discarded = new AtomicLong();
+	
+	private final long memoryLimit;
+	
+	private final long diskLimit;
+	
+	private final long expiryMillis;
+	
+	private final Supplier<Path> directorySupplier;
+	
+	private Path directory = null;
+	
+	// in access order, so the least recently used search is evicted first
+	private final LinkedHashMap<String, StoredSearch> memory = new LinkedHashMap<>(16, 0.75f, true);
+	
+	// searches which have been evicted but are still being written out
+	private final Map<String, StoredSearch> spilling = new HashMap<>();
+	
+	// in the order the searches were written out
+	private final LinkedHashMap<String, SpilledSearch> disk = new LinkedHashMap<>();
+	
+	private long memoryBytes = 0;
+	
+	private long diskBytes = 0;
+	
+	private long nextSweep = 0;
+	
+	/**
+	 * @param memoryLimit the estimated number of bytes the searches held in memory may use
+	 * @param diskLimit the number of bytes the searches written to disk may use, or 0 to discard
+	 *            searches evicted from memory
+	 * @param expiryMillis the number of milliseconds after which a search which has not been used is
+	 *            discarded
+	 * @param directorySupplier supplies the directory to write searches to, which is only created once
+	 *            it is needed
+	 */
+	public SpillingPagingProvider(long memoryLimit, long diskLimit, long expiryMillis,
+	    @Nonnull Supplier<Path> directorySupplier) {
+		this.memoryLimit = memoryLimit;
+		this.diskLimit = diskLimit;
+		this.expiryMillis = expiryMillis;
+		this.directorySupplier = directorySupplier;
+		
+		// searches written out by a previous provider may be of any age, so none of them are kept
+		purge(directorySupplier.get());
+		
+		synchronized (providers) {
+			providers.add(this);
+		}
+	}
+	
+	@Override
+	public String storeResultList(@Nullable RequestDetails theRequestDetails, IBundleProvider theList) {
+		String searchId = UUID.randomUUID().toString();
+		long now = System.currentTimeMillis();
+		StoredSearch search = new StoredSearch(theList, estimateSize(theList), now);
+		
+		List<String> expired;
+		List<Map.Entry<String, StoredSearch>> evicted;
+		synchronized (this) {
+			expired = expire(now);
+			memory.put(searchId, search);
+			memoryBytes += search.size;
+			evicted = evict();
+		}
+		
+		stored.incrementAndGet();
+		deleteAll(expired);
+		spill(evicted);
+		return searchId;
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId) {
+		if (!SEARCH_ID.matcher(theSearchId).matches()) {
+			return null;
+		}
+		
+		long now = System.currentTimeMillis();
+		List<String> expired;
+		IBundleProvider held = null;
+		boolean onDisk = false;
+		synchronized (this) {
+			expired = expire(now);
+			StoredSearch search = memory.get(theSearchId);
+			if (search != null && isExpired(search.lastUsed, now)) {
+				memory.remove(theSearchId);
+				memoryBytes -= search.size;
+				discarded.incrementAndGet();
+				search = null;
+			} else if (search == null) {
+				search = spilling.get(theSearchId);
+			}
+			
+			if (search != null) {
+				search.lastUsed = now;
+				held = search.bundleProvider;
+			} else if (diskLimit > 0 && getDirectory() != null) {
+				SpilledSearch spilledSearch = disk.get(theSearchId);
+				if (spilledSearch != null && isExpired(spilledSearch.lastUsed, now)) {
+					disk.remove(theSearchId);
+					diskBytes -= spilledSearch.fileSize;
+					discarded.incrementAndGet();
+					expired.add(theSearchId);
+				} else {
+					onDisk = spilledSearch != null;
+				}
+			}
+		}
+		
+		deleteAll(expired);
+		if (!onDisk) {
+			return held;
+		}
+		
+		IBundleProvider result = read(theSearchId);
+		
+		List<Map.Entry<String, StoredSearch>> evicted = Collections.emptyList();
+		synchronized (this) {
+			// another request for the same search may have read it back first
+			StoredSearch loaded = memory.get(theSearchId);
+			if (loaded != null) {
+				loaded.lastUsed = now;
+				return loaded.bundleProvider;
+			}
+			
+			SpilledSearch spilledSearch = disk.remove(theSearchId);
+			if (spilledSearch != null) {
+				diskBytes -= spilledSearch.fileSize;
+			}
+			
+			if (result != null) {
+				StoredSearch search = new StoredSearch(result, estimateSize(result), now);
+				memory.put(theSearchId, search);
+				memoryBytes += search.size;
+				evicted = evict();
+			}
+		}
+		
+		delete(theSearchId);
+		if (result != null) {
+			reloaded.incrementAndGet();
+		}
+		
+		spill(evicted);
+		return result;
+	}
+	
+	/**
+	 * @return the number of searches stored, written to disk, read back and discarded by all paging
+	 *         providers, with the space their searches currently use
+	 */
+	public static Map<String, Object> getStatistics() {
+		long memoryBytes = 0, diskBytes = 0, memorySearches = 0, diskSearches = 0;
+		synchronized (providers) {
+			for (SpillingPagingProvider provider : providers) {
+				synchronized (provider) {
+					memoryBytes += provider.memoryBytes;
+					diskBytes += provider.diskBytes;
+					memorySearches += provider.memory.size();
+					diskSearches += provider.disk.size();
+				}
+			}
+		}
+		
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("stored", stored.get());
+		result.put("spilled", spilled.get());
+		result.put("reloaded", reloaded.get());
+		result.put("discarded", discarded.get());
+		result.put("searchesInMemory", memorySearches);
+		result.put("estimatedMemoryBytes", memoryBytes);
+		result.put("searchesOnDisk", diskSearches);
+		result.put("diskBytes", diskBytes);
+		return result;
+	}
+	
+	static long estimateSize(IBundleProvider bundleProvider) {
+		if (bundleProvider instanceof SimpleBundleProvider) {
+			Integer size = bundleProvider.size();
+			return SEARCH_BYTES + (size == null ? 0 : size) * RESOURCE_BYTES;
+		}
+		
+		return SEARCH_BYTES;
+	}
+	
+	private boolean isExpired(long lastUsed, long now) {
+		return now - lastUsed >= expiryMillis;
+	}
+	
+	/**
+	 * Discards the searches which have expired, if they have not been looked for recently. Must be
+	 * called while holding the lock on this.
+	 *
+	 * @return the ids of the expired searches whose files must be deleted
+	 */
+	private List<String> expire(long now) {
+		List<String> result = new ArrayList<>();
+		if (now < nextSweep) {
+			return result;
+		}
+		
+		nextSweep = now + Math.min(expiryMillis, SWEEP_INTERVAL_MILLIS);
+		
+		Iterator<StoredSearch> memoryIterator = memory.values().iterator();
+		while (memoryIterator.hasNext()) {
+			StoredSearch search = memoryIterator.next();
+			if (isExpired(search.lastUsed, now)) {
+				memoryIterator.remove();
+				memoryBytes -= search.size;
+				discarded.incrementAndGet();
+			}
+		}
+		
+		Iterator<Map.Entry<String, SpilledSearch>> diskIterator = disk.entrySet().iterator();
+		while (diskIterator.hasNext()) {
+			Map.Entry<String, SpilledSearch> entry = diskIterator.next();
+			if (isExpired(entry.getValue().lastUsed, now)) {
+				diskIterator.remove();
+				diskBytes -= entry.getValue().fileSize;
+				discarded.incrementAndGet();
+				result.add(entry.getKey());
+			}
+		}
+		
+		return result;
+	}
+	
+	// must be called while holding the lock on this
+	private List<Map.Entry<String, StoredSearch>> evict() {
+		if (memoryBytes <= memoryLimit || memory.size() <= 1) {
+			return Collections.emptyList();
+		}
+		
+		List<Map.Entry<String, StoredSearch>> result = new ArrayList<>();
+		Iterator<Map.Entry<String, StoredSearch>> iterator = memory.entrySet().iterator();
+		// the most recently used search is always kept, however large it is
+		while (memoryBytes > memoryLimit && memory.size() > 1 && iterator.hasNext()) {
+			Map.Entry<String, StoredSearch> entry = iterator.next();
+			iterator.remove();
+			memoryBytes -= entry.getValue().size;
+			
+			if (diskLimit > 0) {
+				spilling.put(entry.getKey(), entry.getValue());
+			}
+			
+			result.add(entry);
+		}
+		
+		return result;
+	}
+	
+	private void spill(List<Map.Entry<String, StoredSearch>> evicted) {
+		Path directory = evicted.isEmpty() || diskLimit <= 0 ? null : getDirectory();
+		for (Map.Entry<String, StoredSearch> entry : evicted) {
+			String searchId = entry.getKey();
+			StoredSearch search = entry.getValue();
+			long fileSize = directory != null ? write(directory, searchId, search.bundleProvider) : -1;
+			
+			List<String> overflow = new ArrayList<>();
+			synchronized (this) {
+				spilling.remove(searchId);
+				if (fileSize >= 0) {
+					disk.put(searchId, new SpilledSearch(fileSize, search.lastUsed));
+					diskBytes += fileSize;
+					
+					Iterator<Map.Entry<String, SpilledSearch>> iterator = disk.entrySet().iterator();
+					while (diskBytes > diskLimit && iterator.hasNext()) {
+						Map.Entry<String, SpilledSearch> oldest = iterator.next();
+						iterator.remove();
+						diskBytes -= oldest.getValue().fileSize;
+						overflow.add(oldest.getKey());
+					}
+				}
+			}
+			
+			if (fileSize >= 0) {
+				spilled.incrementAndGet();
+			} else {
+				discarded.incrementAndGet();
+			}
+			
+			for (String overflowSearchId : overflow) {
+				delete(overflowSearchId);
+				discarded.incrementAndGet();
+			}
+		}
+	}
+	
+	private long write(Path directory, String searchId, IBundleProvider bundleProvider) {
+		// searches holding their results hold whole resources, which are never written to disk
+		if (bundleProvider instanceof SimpleBundleProvider) {
+			log.debug("Discarding search {} as it holds its resources", searchId);
+			return -1;
+		}
+		
+		if (!(bundleProvider instanceof Serializable)) {
+			log.debug("Discarding search {} as {} cannot be serialized", searchId, bundleProvider.getClass());
+			return -1;
+		}
+		
+		Path file = directory.resolve(searchId + FILE_SUFFIX);
+		Path temporaryFile = directory.resolve(searchId + TEMPORARY_FILE_SUFFIX);
+		try {
+			Files.deleteIfExists(temporaryFile);
+			Files.createFile(temporaryFile, getPermissions(directory, FILE_PERMISSIONS));
+			try (OutputStream out = Files.newOutputStream(temporaryFile);
+			        ObjectOutputStream objectOut = new ObjectOutputStream(new GZIPOutputStream(out))) {
+				objectOut.writeObject(bundleProvider);
+			}
+			
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return Files.size(file);
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("Discarding search {} as it could not be written to disk", searchId, e);
+			try {
+				Files.deleteIfExists(temporaryFile);
+			}
+			catch (IOException ignored) {}
+			
+			return -1;
+		}
+	}
+	
+	private IBundleProvider read(String searchId) {
+		try (InputStream in = Files.newInputStream(getFile(searchId));
+		        ObjectInputStream objectIn = new ModuleObjectInputStream(new GZIPInputStream(in))) {
+			Object result = objectIn.readObject();
+			return result instanceof IBundleProvider ? (IBundleProvider) result : null;
+		}
+		catch (IOException | ClassNotFoundException | RuntimeException e) {
+			log.warn("Unable to read stored search {}", searchId, e);
+			return null;
+		}
+	}
+	
+	private void deleteAll(List<String> searchIds) {
+		for (String searchId : searchIds) {
+			delete(searchId);
+		}
+	}
+	
+	private void delete(String searchId) {
+		try {
+			Files.deleteIfExists(getFile(searchId));
+		}
+		catch (IOException e) {
+			log.warn("Unable to delete stored search {}", searchId, e);
+		}
+	}
+	
+	private synchronized Path getFile(String searchId) {
+		return directory.resolve(searchId + FILE_SUFFIX);
+	}
+	
+	/**
+	 * Creates the directory the first time it is needed
+	 *
+	 * @return the directory, or null if it could not be created
+	 */
+	private synchronized Path getDirectory() {
+		if (directory != null) {
+			return directory;
+		}
+		
+		Path result = directorySupplier.get();
+		try {
+			Files.createDirectories(result, getPermissions(result, DIRECTORY_PERMISSIONS));
+			// the directory may have been created before with broader permissions
+			if (isPosix(result)) {
+				Files.setPosixFilePermissions(result, DIRECTORY_PERMISSIONS);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Unable to create the directory for stored searches {}", result, e);
+			return null;
+		}
+		
+		directory = result;
+		return result;
+	}
+	
+	private static boolean isPosix(Path path) {
+		return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+	}
+	
+	private static FileAttribute<?>[] getPermissions(Path path, Set<PosixFilePermission> permissions) {
+		return isPosix(path) ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(permissions) }
+		        : new FileAttribute<?>[0];
+	}
+	
+	private static void purge(Path directory) {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+		    "*{" + FILE_SUFFIX + "," + TEMPORARY_FILE_SUFFIX + "}")) {
+			stream.forEach(files::add);
+		}
+		catch (IOException e) {
+			log.warn("Unable to list the stored searches in {}", directory, e);
+			return;
+		}
+		
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			}
+			catch (IOException e) {
+				log.warn("Unable to delete stored search {}", file, e);
+			}
+		}
+	}
+	
+	private static final class StoredSearch {
+		
+		private final IBundleProvider bundleProvider;
+		
+		private final long size;
+		
+		// guarded by the lock on the provider
+		private long lastUsed;
+		
+		private StoredSearch(IBundleProvider bundleProvider, long size, long lastUsed) {
+			this.bundleProvider = bundleProvider;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+	
+	private static final class SpilledSearch {
+		
+		private final long fileSize;
+		
+		private final long lastUsed;
+		
+		private SpilledSearch(long fileSize, long lastUsed) {
+			this.fileSize = fileSize;
+			this.lastUsed = lastUsed;
+		}
+	}
+	
+	/**
+	 * Resolves classes with the OpenMRS class loader, so that classes from this and other modules can
+	 * be read back, but only if they belong to the packages stored searches are made of. Java 8 has no
+	 * ObjectInputFilter, so the classes are checked before each one is loaded.
+	 */
+	private static final class ModuleObjectInputStream extends ObjectInputStream {
+		
+		// packages whose classes may be read, but not their sub-packages
+		private static final Set<String> ALLOWED_PACKAGES = new HashSet<>(Arrays.asList("java.lang", "java.util",
+		    "java.math"));
+		
+		// the map SearchParameterMap holds its parameters in
+		private static final Set<String> ALLOWED_CLASSES = Collections
+		        .singleton("org.springframework.util.LinkedCaseInsensitiveMap");
+		
+		// packages whose classes and sub-packages' classes may be read
+		private static final List<String> ALLOWED_PACKAGE_PREFIXES = Arrays.asList("org.openmrs.module.fhir2.",
+		    "ca.uhn.fhir.rest.param.", "ca.uhn.fhir.rest.api.", "ca.uhn.fhir.model.", "org.hl7.fhir.instance.model.api.");
+		
+		private ModuleObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if (!isAllowed(desc.getName())) {
+				throw new InvalidClassException(desc.getName(), "not allowed in a stored search");
+			}
+			
+			try {
+				return Class.forName(desc.getName(), false, OpenmrsClassLoader.getInstance());
+			}
+			catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+		
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws InvalidClassException {
+			throw new InvalidClassException("Proxy classes are not allowed in a stored search");
+		}
+		
+		private static boolean isAllowed(String className) {
+			// arrays are described as, e.g., [Ljava.lang.String; or [I
+			String elementClassName = className.replaceFirst("^\\[+", "");
+			if (elementClassName.length() == 1) {
+				return true;
+			}
+			
+			if (elementClassName.startsWith("L") && elementClassName.endsWith(";")) {
+				elementClassName = elementClassName.substring(1, elementClassName.length() - 1);
+			}
+			
+			if (ALLOWED_CLASSES.contains(elementClassName)) {
+				return true;
+			}
+			
+			int lastDot = elementClassName.lastIndexOf('.');
+			if (lastDot > 0 && ALLOWED_PACKAGES.contains(elementClassName.substring(0, lastDot))) {
+				return true;
+			}
+			
+			for (String prefix : ALLOWED_PACKAGE_PREFIXES) {
+				if (elementClassName.startsWith(prefix)) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+
+/**
+ * Writes large JSON search results to the response one entry at a time. HAPI normally encodes the
+ * whole page as a single document; here the metadata of the bundle is written first and each entry
+ * is then encoded straight to the response and released, so that the encoder never holds more than
+ * one entry and the client starts receiving data as soon as the first entry is encoded. <br/>
+ * Only R4 searchset bundles with at least fhir2.streamingBundleThreshold entries are streamed, and
+ * only when the response is neither pretty-printed nor restricted with _summary or _elements; every
+ * other response is left to HAPI. As this interceptor replaces HAPI's own response handling, it must
+ * be registered after any other interceptor that adds response headers.
+ */
+@Slf4j
+@Interceptor
+public class StreamingBundleInterceptor {
+	
+	private final ThreadLocal<IParser> parsers = new ThreadLocal<>();
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean handleOutgoingResponse(RequestDetails requestDetails, ResponseDetails responseDetails) {
+		if (!(responseDetails.getResponseResource() instanceof Bundle) || !isStreamable(requestDetails)) {
+			return true;
+		}
+		
+		Bundle bundle = (Bundle) responseDetails.getResponseResource();
+		int threshold = FhirGlobalPropertyHolder.getConfiguration().getStreamingBundleThreshold();
+		if (threshold <= 0 || bundle.getType() != Bundle.BundleType.SEARCHSET || bundle.getEntry().size() < threshold
+		        || bundle.hasSignature() || !bundle.getEntry().stream().allMatch(StreamingBundleInterceptor::isStreamable)) {
+			return true;
+		}
+		
+		IParser parser = getParser(requestDetails.getFhirContext());
+		parser.setServerBaseUrl(requestDetails.getFhirServerBase());
+		
+		String contentType = RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails)
+		        .getResourceContentType();
+		try {
+			Writer writer = requestDetails.getResponse().getResponseWriter(responseDetails.getResponseCode(), null,
+			    contentType, Constants.CHARSET_NAME_UTF8, RestfulServerUtils.respondGzip(requestDetails));
+			writeBundle(parser, bundle, writer);
+			requestDetails.getResponse().sendWriterResponse(responseDetails.getResponseCode(), contentType,
+			    Constants.CHARSET_NAME_UTF8, writer);
+		}
+		catch (IOException e) {
+			log.debug("Exception caught while streaming bundle", e);
+			throw new InternalErrorException("Failed to write the response", e);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Writes the supplied bundle as JSON, releasing each entry once it has been written. The entries of
+	 * the bundle are discarded, so the bundle must not be used afterwards.
+	 *
+	 * @param parser the JSON parser used to encode the bundle and each of its resources
+	 * @param bundle the bundle to write
+	 * @param writer the writer to write the bundle to
+	 */
+	static void writeBundle(IParser parser, Bundle bundle, Writer writer) throws IOException {
+		List<Bundle.BundleEntryComponent> entries = bundle.getEntry();
+		bundle.setEntry(null);
+		
+		// the entry element comes after every other element of a searchset bundle, so it can be appended
+		String metadata = parser.encodeResourceToString(bundle).trim();
+		if (entries.isEmpty()) {
+			writer.write(metadata);
+			writer.flush();
+			return;
+		}
+		
+		writer.write(metadata, 0, metadata.length() - 1);
+		
+		// resources are encoded through a writer that cannot be closed by the parser
+		Writer resourceWriter = new FilterWriter(writer) {
+			
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		
+		writer.write(",\"entry\":[");
+		for (int i = 0; i < entries.size(); i++) {
+			Bundle.BundleEntryComponent entry = entries.set(i, null);
+			if (i > 0) {
+				writer.write(',');
+			}
+			
+			writer.write('{');
+			boolean first = true;
+			if (entry.hasFullUrl()) {
+				writer.write("\"fullUrl\":");
+				writeString(writer, entry.getFullUrl());
+				first = false;
+			}
+			
+			if (entry.hasResource()) {
+				if (!first) {
+					writer.write(',');
+				}
+				
+				writer.write("\"resource\":");
+				parser.encodeResourceToWriter(entry.getResource(), resourceWriter);
+				first = false;
+			}
+			
+			if (entry.hasSearch()) {
+				if (!first) {
+					writer.write(',');
+				}
+				
+				writer.write("\"search\":{");
+				Bundle.BundleEntrySearchComponent search = entry.getSearch();
+				if (search.hasMode()) {
+					writer.write("\"mode\":");
+					writeString(writer, search.getMode().toCode());
+				}
+				
+				if (search.hasScore()) {
+					if (search.hasMode()) {
+						writer.write(',');
+					}
+					
+					writer.write("\"score\":");
+					writer.write(search.getScore().toPlainString());
+				}
+				
+				writer.write('}');
+			}
+			
+			writer.write('}');
+		}
+		
+		writer.write("]}");
+		writer.flush();
+	}
+	
+	private IParser getParser(FhirContext fhirContext) {
+		IParser parser = parsers.get();
+		if (parser == null) {
+			parser = fhirContext.newJsonParser();
+			parsers.set(parser);
+		}
+		
+		return parser;
+	}
+	
+	private static boolean isStreamable(RequestDetails requestDetails) {
+		RestOperationTypeEnum operationType = requestDetails.getRestOperationType();
+		if (operationType != RestOperationTypeEnum.SEARCH_TYPE && operationType != RestOperationTypeEnum.GET_PAGE) {
+			return false;
+		}
+		
+		if (requestDetails.getParameters().containsKey(Constants.PARAM_SUMMARY)
+		        || requestDetails.getParameters().containsKey(Constants.PARAM_ELEMENTS)) {
+			return false;
+		}
+		
+		return RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getEncoding() == EncodingEnum.JSON
+		        && !RestfulServerUtils.prettyPrintResponse(requestDetails.getServer(), requestDetails);
+	}
+	
+	private static boolean isStreamable(Bundle.BundleEntryComponent entry) {
+		return !entry.hasId() && !entry.hasExtension() && !entry.hasModifierExtension() && !entry.hasLink()
+		        && !entry.hasRequest() && !entry.hasResponse()
+		        && (!entry.hasSearch() || (!entry.getSearch().hasId() && !entry.getSearch().hasExtension()
+		                && !entry.getSearch().hasModifierExtension()));
+	}
+	
+	private static void writeString(Writer writer, String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				default:
+					if (c < 0x20) {
+						writer.write(String.format("\\u%04x", (int) c));
+					} else {
+						writer.write(c);
+					}
+			}
+		}
+		
+		writer.write('"');
+	}
+}
@@ -11,11 +11,14 @@ package org.openmrs.module.fhir2.narrative;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
 import org.junit.Test;
 
 /**
@@ -27,6 +30,11 @@ public class PatientNarrativeTest extends BaseFhirNarrativeTest {
 	
 	private static final String EXPECTED_NARRATIVE_PATH = "org/openmrs/module/fhir2/narrative/expected/patient-expected.html";
 	
+	@After
+	public void tearDown() {
+		OpenmrsThymeleafNarrativeGenerator.endRequest();
+	}
+	
 	/**
 	 * Check that the expected narrative is generated for some example Patient resource
 	 * 
@@ -44,4 +52,26 @@ public class PatientNarrativeTest extends BaseFhirNarrativeTest {
 		assertThat(result.getText().getStatusAsString(), equalTo("generated"));
 		assertThat(result.getText().getDivAsString(), equalTo(readNarrativeFile(EXPECTED_NARRATIVE_PATH)));
 	}
+	
+	@Test
+	public void shouldNotGeneratePatientNarrativeWhenNotRequested() {
+		Patient given = parser.parseResource(Patient.class,
+		    getClass().getClassLoader().getResourceAsStream(EXAMPLE_RESOURCE_PATH));
+		
+		OpenmrsThymeleafNarrativeGenerator.beginRequest(Collections.singleton("ENCOUNTER"));
+		Patient result = parser.parseResource(Patient.class, parser.encodeResourceToString(given));
+		
+		assertThat(result.getText().isEmpty(), is(true));
+	}
+	
+	@Test
+	public void shouldGeneratePatientNarrativeWhenRequested() throws IOException {
+		Patient given = parser.parseResource(Patient.class,
+		    getClass().getClassLoader().getResourceAsStream(EXAMPLE_RESOURCE_PATH));
+		
+		OpenmrsThymeleafNarrativeGenerator.beginRequest(Collections.singleton("PATIENT"));
+		Patient result = parser.parseResource(Patient.class, parser.encodeResourceToString(given));
+		
+		assertThat(result.getText().getDivAsString(), equalTo(readNarrativeFile(EXPECTED_NARRATIVE_PATH)));
+	}
 }
@@ -11,14 +11,30 @@ package org.openmrs.module.fhir2.web.filter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.After;
 import org.junit.Before;
@@ -26,7 +42,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
 import org.openmrs.User;
+import org.openmrs.api.UserService;
 import org.openmrs.api.context.Authenticated;
 import org.openmrs.api.context.AuthenticationScheme;
 import org.openmrs.api.context.BasicAuthenticated;
@@ -34,12 +52,18 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
 import org.openmrs.api.context.Credentials;
 import org.openmrs.api.context.ServiceContext;
+import org.openmrs.api.context.UserContext;
 import org.openmrs.api.context.UsernamePasswordCredentials;
 import org.openmrs.api.db.ContextDAO;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.cache.FhirCredentialCache;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.util.PrivilegeConstants;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AuthenticationFilterTest {
@@ -48,6 +72,8 @@ public class AuthenticationFilterTest {
 	
 	private static final String PASSWORD = "Admin123";
 	
+	private static final Integer USER_ID = 1;
+	
 	private AuthenticationFilter authenticationFilter;
 	
 	private MockFilterChain filterChain;
@@ -58,6 +84,11 @@ public class AuthenticationFilterTest {
 	@Mock
 	private User user;
 	
+	@Mock
+	private UserService userService;
+	
+	private ServiceContext mockServiceContext;
+	
 	static class InMemoryAuthenticationScheme implements AuthenticationScheme {
 		
 		@Override
@@ -68,7 +99,7 @@ public class AuthenticationFilterTest {
 			} else {
 				UsernamePasswordCredentials userPassCreds = (UsernamePasswordCredentials) credentials;
 				if (userPassCreds.getUsername().equals(USERNAME) && userPassCreds.getPassword().equals(PASSWORD)) {
-					User user = new User();
+					User user = new User(USER_ID);
 					user.setUsername(userPassCreds.getUsername());
 					return new BasicAuthenticated(user, "IN MEMORY AUTH SCHEME");
 				} else {
@@ -82,7 +113,7 @@ public class AuthenticationFilterTest {
 	public void setup() throws NoSuchFieldException, IllegalAccessException {
 		Context.setDAO(contextDAO);
 		
-		ServiceContext mockServiceContext = mock(ServiceContext.class);
+		mockServiceContext = mock(ServiceContext.class);
 		Class<?> serviceContextHolderClass = ServiceContext.class.getDeclaredClasses()[0];
 		Field instanceField = serviceContextHolderClass.getDeclaredField("instance");
 		instanceField.setAccessible(true);
@@ -119,6 +150,87 @@ public class AuthenticationFilterTest {
 		assertThat(servletResponse.getStatus(), equalTo(200));
 	}
 	
+	@Test
+	public void shouldNotShareSessionUserContextWithConcurrentRequestsWithoutSession() throws Exception {
+		when(mockServiceContext.getUserService()).thenReturn(userService);
+		when(userService.getUser(USER_ID)).thenReturn(user);
+		FhirGlobalPropertyHolder globalPropertyHolder = new FhirGlobalPropertyHolder();
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.CREDENTIAL_CACHE_SECONDS, "60"));
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.CREDENTIAL_CACHE_SIZE, "100"));
+		FhirCredentialCache credentialCache = new FhirCredentialCache();
+		credentialCache.afterPropertiesSet();
+		
+		try {
+			// the first request starts a session, which keeps the user context it authenticated
+			UserContext sessionUserContext = new UserContext(Context.getAuthenticationScheme());
+			Context.setUserContext(sessionUserContext);
+			MockHttpServletRequest sessionRequest = newBasicAuthenticationRequest();
+			sessionRequest.setSession(new MockHttpSession());
+			
+			authenticationFilter.doFilter(sessionRequest, new MockHttpServletResponse(), filterChain);
+			
+			assertThat(Context.getUserContext(), sameInstance(sessionUserContext));
+			assertThat(sessionUserContext.getAuthenticatedUser().getUserId(), equalTo(USER_ID));
+			
+			// later requests with the same credentials but without the session cookie run at the same time
+			int requests = 2;
+			CyclicBarrier inFilterChain = new CyclicBarrier(requests);
+			List<UserContext> requestUserContexts = new CopyOnWriteArrayList<>();
+			FilterChain capturingFilterChain = (request, response) -> {
+				UserContext userContext = Context.getUserContext();
+				userContext.addProxyPrivilege(PrivilegeConstants.GET_PATIENTS);
+				requestUserContexts.add(userContext);
+				try {
+					inFilterChain.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+					throw new ServletException(e);
+				}
+			};
+			
+			ExecutorService executor = Executors.newFixedThreadPool(requests);
+			try {
+				List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+				for (int i = 0; i < requests; i++) {
+					responses.add(executor.submit(() -> {
+						UserContext anonymousUserContext = new UserContext(Context.getAuthenticationScheme());
+						Context.setUserContext(anonymousUserContext);
+						try {
+							MockHttpServletResponse response = new MockHttpServletResponse();
+							authenticationFilter.doFilter(newBasicAuthenticationRequest(), response,
+							    capturingFilterChain);
+							assertThat(Context.getUserContext(), sameInstance(anonymousUserContext));
+							return response;
+						}
+						finally {
+							Context.clearUserContext();
+						}
+					}));
+				}
+				
+				for (Future<MockHttpServletResponse> response : responses) {
+					assertThat(response.get(10, TimeUnit.SECONDS).getStatus(), equalTo(200));
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+			
+			assertThat(requestUserContexts, hasSize(requests));
+			assertThat(requestUserContexts.get(0), not(sameInstance(requestUserContexts.get(1))));
+			for (UserContext requestUserContext : requestUserContexts) {
+				assertThat(requestUserContext, not(sameInstance(sessionUserContext)));
+				assertThat(requestUserContext.getAuthenticatedUser(), sameInstance(user));
+			}
+			assertThat(sessionUserContext.getAuthenticatedUser().getUserId(), equalTo(USER_ID));
+			assertThat(sessionUserContext.hasPrivilege(PrivilegeConstants.GET_PATIENTS), is(false));
+		}
+		finally {
+			credentialCache.destroy();
+			FhirGlobalPropertyHolder.reset();
+		}
+	}
+	
 	@Test
 	public void shouldReturn401WhenAuthenticationFails() throws Exception {
 		MockHttpServletRequest servletRequest = new MockHttpServletRequest();
@@ -156,4 +268,12 @@ public class AuthenticationFilterTest {
 		
 		assertThat(servletResponse.getStatus(), equalTo(200));
 	}
+	
+	private MockHttpServletRequest newBasicAuthenticationRequest() {
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+		servletRequest.setRequestURI("/openmrs/ws/fhir2/Patient?_id=aa1c7cf0-6a54-4a06-9d77-b26107ad9144");
+		servletRequest.addHeader(HttpHeaders.AUTHORIZATION,
+		    "Basic " + Base64.getEncoder().encodeToString((USERNAME + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8)));
+		return servletRequest;
+	}
 }
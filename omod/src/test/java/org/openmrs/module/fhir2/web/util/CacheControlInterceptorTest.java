@@ -0,0 +1,89 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.IRestfulResponse;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CacheControlInterceptorTest {
+	
+	@Mock
+	private RequestDetails requestDetails;
+	
+	@Mock
+	private IRestfulResponse response;
+	
+	private final CacheControlInterceptor interceptor = new CacheControlInterceptor();
+	
+	@After
+	public void tearDown() {
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void handleOutgoingResponse_shouldRequireRevalidationOfReadsByDefault() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getResponse()).thenReturn(response);
+		
+		assertThat(interceptor.handleOutgoingResponse(requestDetails), is(true));
+		
+		verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "private, no-cache");
+	}
+	
+	@Test
+	public void handleOutgoingResponse_shouldNotStoreSearchResultsByDefault() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.SEARCH_TYPE);
+		when(requestDetails.getResponse()).thenReturn(response);
+		
+		interceptor.handleOutgoingResponse(requestDetails);
+		
+		verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "no-store");
+	}
+	
+	@Test
+	public void handleOutgoingResponse_shouldUseConfiguredValue() {
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.READ_CACHE_CONTROL, " private, max-age=60 "));
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getResponse()).thenReturn(response);
+		
+		interceptor.handleOutgoingResponse(requestDetails);
+		
+		verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "private, max-age=60");
+	}
+	
+	@Test
+	public void handleOutgoingResponse_shouldNotAddHeaderToOtherOperations() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.CREATE);
+		
+		interceptor.handleOutgoingResponse(requestDetails);
+		
+		verify(requestDetails, never()).getResponse();
+		verify(response, never()).addHeader(anyString(), anyString());
+	}
+}
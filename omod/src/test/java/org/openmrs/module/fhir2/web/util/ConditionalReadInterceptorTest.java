@@ -0,0 +1,112 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.Date;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.r4.model.IdType;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.util.FhirConditionalRead;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConditionalReadInterceptorTest {
+	
+	private static final String PATIENT_UUID = "a7e04421-525f-442f-8138-05b619d16def";
+	
+	private static final Date LAST_UPDATED = new Date(1_000_000L);
+	
+	@Mock
+	private ServletRequestDetails requestDetails;
+	
+	@Mock
+	private HttpServletRequest servletRequest;
+	
+	private final ConditionalReadInterceptor interceptor = new ConditionalReadInterceptor();
+	
+	@After
+	public void tearDown() {
+		FhirConditionalRead.end();
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldPassIfNoneMatchToServices() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getId()).thenReturn(new IdType("Patient", PATIENT_UUID));
+		when(requestDetails.getResourceName()).thenReturn("Patient");
+		when(requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH)).thenReturn("W/\"1000000\"");
+		when(requestDetails.getServletRequest()).thenReturn(servletRequest);
+		when(servletRequest.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+		
+		interceptor.handleIncomingRequest(requestDetails);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "1000000", LAST_UPDATED), is(true));
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "2000000", LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldPassIfModifiedSinceToServices() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getId()).thenReturn(new IdType("Patient", PATIENT_UUID));
+		when(requestDetails.getResourceName()).thenReturn("Patient");
+		when(requestDetails.getServletRequest()).thenReturn(servletRequest);
+		when(servletRequest.getDateHeader("If-Modified-Since")).thenReturn(LAST_UPDATED.getTime());
+		
+		interceptor.handleIncomingRequest(requestDetails);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, null, LAST_UPDATED), is(true));
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, null, new Date(2_000_000L)), is(false));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldIgnoreMalformedIfModifiedSince() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getId()).thenReturn(new IdType("Patient", PATIENT_UUID));
+		when(requestDetails.getResourceName()).thenReturn("Patient");
+		when(requestDetails.getServletRequest()).thenReturn(servletRequest);
+		when(servletRequest.getDateHeader("If-Modified-Since")).thenThrow(new IllegalArgumentException());
+		
+		interceptor.handleIncomingRequest(requestDetails);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, null, LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldNotApplyConditionsToVersionedReads() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getId()).thenReturn(new IdType("Patient", PATIENT_UUID, "1000000"));
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "*", null);
+		
+		interceptor.handleIncomingRequest(requestDetails);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "1000000", LAST_UPDATED), is(false));
+	}
+	
+	@Test
+	public void handleProcessingCompleted_shouldClearConditions() {
+		FhirConditionalRead.begin("Patient", PATIENT_UUID, "*", null);
+		
+		interceptor.handleProcessingCompleted(requestDetails);
+		
+		assertThat(FhirConditionalRead.isNotModified("Patient", PATIENT_UUID, "1000000", LAST_UPDATED), is(false));
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.web.util.LongRunningRequestExecutor.OperationType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LongRunningRequestExecutorTest {
+	
+	private static final String EVERYTHING_URI = "/openmrs/ms/fhir2Servlet/Patient/123/$everything";
+	
+	@Mock
+	private HttpServletRequest request;
+	
+	private LongRunningRequestExecutor longRunningRequestExecutor;
+	
+	private ExecutorService requestThreads;
+	
+	@Before
+	public void setup() {
+		FhirGlobalPropertyHolder globalPropertyHolder = new FhirGlobalPropertyHolder();
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.LONG_RUNNING_REQUEST_CONCURRENCY, "1"));
+		globalPropertyHolder.globalPropertyChanged(new GlobalProperty(FhirConstants.LONG_RUNNING_REQUEST_QUEUE_SIZE, "20"));
+		globalPropertyHolder
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.LONG_RUNNING_REQUEST_VIRTUAL_THREADS, "false"));
+		longRunningRequestExecutor = new LongRunningRequestExecutor();
+		requestThreads = Executors.newSingleThreadExecutor();
+	}
+	
+	@After
+	public void tearDown() {
+		requestThreads.shutdownNow();
+		longRunningRequestExecutor.shutdown();
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void execute_shouldRejectSynchronousRequestWhileAllThreadsAreBusy() throws Exception {
+		CountDownLatch finish = new CountDownLatch(1);
+		Future<MockHttpServletResponse> running = startBlockingRequest(finish);
+		
+		AtomicBoolean handled = new AtomicBoolean();
+		MockHttpServletResponse response = execute((req, res) -> handled.set(true));
+		
+		assertThat(response.getStatus(), equalTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+		assertThat(response.getHeader("Retry-After"), notNullValue());
+		assertThat(handled.get(), is(false));
+		
+		finish.countDown();
+		assertThat(running.get(10, TimeUnit.SECONDS).getStatus(), equalTo(HttpServletResponse.SC_OK));
+	}
+	
+	@Test
+	public void execute_shouldCountRequestsInFlightAfterConfigurationChanges() throws Exception {
+		CountDownLatch finish = new CountDownLatch(1);
+		Future<MockHttpServletResponse> running = startBlockingRequest(finish);
+		
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.LONG_RUNNING_REQUEST_CONCURRENCY, "1"));
+		
+		AtomicBoolean handled = new AtomicBoolean();
+		assertThat(execute((req, res) -> handled.set(true)).getStatus(),
+		    equalTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+		assertThat(handled.get(), is(false));
+		
+		finish.countDown();
+		running.get(10, TimeUnit.SECONDS);
+		
+		assertThat(execute((req, res) -> handled.set(true)).getStatus(), equalTo(HttpServletResponse.SC_OK));
+		assertThat(handled.get(), is(true));
+	}
+	
+	@Test
+	public void getOperationType_shouldClassifyEverythingOperation() {
+		when(request.getRequestURI()).thenReturn("/openmrs/ms/fhir2Servlet/Patient/123/$everything");
+		
+		assertThat(LongRunningRequestExecutor.getOperationType(request), equalTo(OperationType.EVERYTHING));
+	}
+	
+	@Test
+	public void getOperationType_shouldClassifyLastnOperations() {
+		when(request.getRequestURI()).thenReturn("/openmrs/ms/fhir2Servlet/Observation/$lastn",
+		    "/openmrs/ms/fhir2Servlet/Observation/$lastn-encounters");
+		
+		assertThat(LongRunningRequestExecutor.getOperationType(request), equalTo(OperationType.LASTN));
+		assertThat(LongRunningRequestExecutor.getOperationType(request), equalTo(OperationType.LASTN));
+	}
+	
+	@Test
+	public void getOperationType_shouldClassifySearchWithRevinclude() {
+		when(request.getRequestURI()).thenReturn("/openmrs/ms/fhir2Servlet/Patient");
+		when(request.getMethod()).thenReturn("GET");
+		when(request.getParameter("_revinclude")).thenReturn("Observation:patient");
+		
+		assertThat(LongRunningRequestExecutor.getOperationType(request), equalTo(OperationType.SEARCH));
+	}
+	
+	@Test
+	public void getOperationType_shouldNotClassifyRead() {
+		when(request.getRequestURI()).thenReturn("/openmrs/ms/fhir2Servlet/Patient/123");
+		when(request.getMethod()).thenReturn("GET");
+		
+		assertThat(LongRunningRequestExecutor.getOperationType(request), nullValue());
+	}
+	
+	@Test
+	public void getOperationType_shouldNotReadParametersOfCreate() {
+		when(request.getRequestURI()).thenReturn("/openmrs/ms/fhir2Servlet/Patient");
+		when(request.getMethod()).thenReturn("POST");
+		
+		assertThat(LongRunningRequestExecutor.getOperationType(request), nullValue());
+		verify(request, never()).getParameter("_include");
+	}
+	
+	private Future<MockHttpServletResponse> startBlockingRequest(CountDownLatch finish) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		Future<MockHttpServletResponse> result = requestThreads.submit(() -> execute((req, res) -> {
+			started.countDown();
+			try {
+				finish.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		
+		assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+		return result;
+	}
+	
+	private MockHttpServletResponse execute(LongRunningRequestExecutor.RequestHandler handler) throws Exception {
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", EVERYTHING_URI);
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		longRunningRequestExecutor.execute(servletRequest, servletResponse, handler);
+		return servletResponse;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class MetadataCacheInterceptorTest {
+	
+	private static final String SERVER_BASE = "http://localhost:8080/openmrs/ws/fhir2/R4";
+	
+	private static final RestfulServer server = new RestfulServer(FhirContext.forR4());
+	
+	private MetadataCacheInterceptor interceptor;
+	
+	@Before
+	public void setup() {
+		interceptor = new MetadataCacheInterceptor();
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldAnswerRepeatedRequestFromCache() throws Exception {
+		cacheResponse(newRequest(new HashMap<>()), "OpenMRS");
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(interceptor.handleIncomingRequest(newRequest(new HashMap<>()), response), is(false));
+		assertThat(response.getStatus(), is(Constants.STATUS_HTTP_200_OK));
+		assertThat(response.getContentType(), containsString(Constants.CT_FHIR_JSON_NEW));
+		assertThat(response.getContentAsString(), containsString("\"publisher\":\"OpenMRS\""));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldNotAnswerFirstRequest() throws Exception {
+		assertThat(interceptor.handleIncomingRequest(newRequest(new HashMap<>()), new MockHttpServletResponse()),
+		    is(true));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldKeepEncodingsSeparate() throws Exception {
+		cacheResponse(newRequest(new HashMap<>()), "OpenMRS");
+		
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put(Constants.PARAM_FORMAT, new String[] { "xml" });
+		
+		assertThat(interceptor.handleIncomingRequest(newRequest(parameters), new MockHttpServletResponse()), is(true));
+	}
+	
+	@Test
+	public void handleIncomingRequest_shouldLeaveRequestsWithOtherParametersToHapi() throws Exception {
+		cacheResponse(newRequest(new HashMap<>()), "OpenMRS");
+		
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("mode", new String[] { "terminology" });
+		cacheResponse(newRequest(parameters), "terminology");
+		
+		assertThat(interceptor.handleIncomingRequest(newRequest(parameters), new MockHttpServletResponse()), is(true));
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.handleIncomingRequest(newRequest(new HashMap<>()), response);
+		assertThat(response.getContentAsString(), containsString("\"publisher\":\"OpenMRS\""));
+	}
+	
+	@Test
+	public void invalidate_shouldDiscardStoredResponses() throws Exception {
+		cacheResponse(newRequest(new HashMap<>()), "OpenMRS");
+		
+		interceptor.invalidate();
+		
+		assertThat(interceptor.handleIncomingRequest(newRequest(new HashMap<>()), new MockHttpServletResponse()),
+		    is(true));
+	}
+	
+	private void cacheResponse(ServletRequestDetails requestDetails, String publisher) {
+		CapabilityStatement capabilityStatement = new CapabilityStatement();
+		capabilityStatement.setPublisher(publisher);
+		
+		ResponseDetails responseDetails = new ResponseDetails(capabilityStatement);
+		responseDetails.setResponseCode(Constants.STATUS_HTTP_200_OK);
+		
+		interceptor.handleOutgoingResponse(requestDetails, responseDetails);
+	}
+	
+	private ServletRequestDetails newRequest(Map<String, String[]> parameters) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/fhir2/R4/metadata");
+		
+		ServletRequestDetails requestDetails = new ServletRequestDetails(server.getInterceptorService());
+		requestDetails.setServer(server);
+		requestDetails.setServletRequest(request);
+		requestDetails.setServletResponse(new MockHttpServletResponse());
+		requestDetails.setRestOperationType(RestOperationTypeEnum.METADATA);
+		requestDetails.setFhirServerBase(SERVER_BASE);
+		requestDetails.setParameters(parameters);
+		return requestDetails;
+	}
+}
@@ -10,10 +10,13 @@
 package org.openmrs.module.fhir2.web.util;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 
 public class NarrativeUtilTest {
 	
@@ -71,4 +74,36 @@ public class NarrativeUtilTest {
 		assertThat(propFilePathResult, nullValue());
 	}
 	
+	@Test
+	public void getNarrativeResourceTypes_shouldReturnConfiguredResourceTypes() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		
+		assertThat(NarrativeUtils.getNarrativeResourceTypes(request, "Patient, Encounter"),
+		    containsInAnyOrder("PATIENT", "ENCOUNTER"));
+		assertThat(NarrativeUtils.getNarrativeResourceTypes(request, null), empty());
+	}
+	
+	@Test
+	public void getNarrativeResourceTypes_shouldReturnAllResourceTypesWhenRequested() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter(NarrativeUtils.NARRATIVE_PARAMETER, "true");
+		
+		assertThat(NarrativeUtils.getNarrativeResourceTypes(request, null), containsInAnyOrder("*"));
+	}
+	
+	@Test
+	public void getNarrativeResourceTypes_shouldReturnAllResourceTypesForTextSummary() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter("_summary", "text");
+		
+		assertThat(NarrativeUtils.getNarrativeResourceTypes(request, null), containsInAnyOrder("*"));
+	}
+	
+	@Test
+	public void getNarrativeResourceTypes_shouldReturnNoResourceTypesWhenNarrativesAreNotWanted() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addParameter(NarrativeUtils.NARRATIVE_PARAMETER, "false");
+		
+		assertThat(NarrativeUtils.getNarrativeResourceTypes(request, "*"), empty());
+	}
 }
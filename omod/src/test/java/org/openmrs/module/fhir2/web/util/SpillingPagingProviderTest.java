@@ -0,0 +1,240 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillingPagingProviderTest {
+	
+	// fits exactly one search which is stored as its parameters
+	private static final long MEMORY_LIMIT = SpillingPagingProvider.SEARCH_BYTES;
+	
+	private static final long DISK_LIMIT = 1024 * 1024;
+	
+	private static final long EXPIRY_MILLIS = 60 * 60 * 1000;
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private Path directory;
+	
+	@Before
+	public void setup() throws IOException {
+		directory = temporaryFolder.newFolder("paging").toPath();
+	}
+	
+	@Test
+	public void retrieveResultList_shouldReturnSearchesHeldInMemory() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		IBundleProvider search = newSearch("1", "2");
+		
+		String searchId = pagingProvider.storeResultList(null, search);
+		
+		assertThat(pagingProvider.retrieveResultList(null, searchId), sameInstance(search));
+		assertThat(directory.toFile().list().length, equalTo(0));
+	}
+	
+	@Test
+	public void storeResultList_shouldWriteLeastRecentlyUsedSearchesToDisk() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		pagingProvider.storeResultList(null, newSearch("3", "4"));
+		
+		assertThat(directory.resolve(firstSearchId + ".search").toFile().isFile(), equalTo(true));
+		
+		IBundleProvider result = pagingProvider.retrieveResultList(null, firstSearchId);
+		
+		assertThat(result, notNullValue());
+		assertThat(getIds(result), contains("Patient/1", "Patient/2"));
+		assertThat(directory.resolve(firstSearchId + ".search").toFile().exists(), equalTo(false));
+	}
+	
+	@Test
+	public void storeResultList_shouldOnlyAllowOwnerToAccessSearchesOnDisk() throws IOException {
+		assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxr-xr-x"));
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		pagingProvider.storeResultList(null, newSearch("3", "4"));
+		
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)), equalTo("rwx------"));
+		Path file = directory.resolve(firstSearchId + ".search");
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), equalTo("rw-------"));
+	}
+	
+	@Test
+	public void storeResultList_shouldNotWriteSearchesHoldingResourcesToDisk() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		
+		String firstSearchId = pagingProvider.storeResultList(null, newResourceSearch("1", "2"));
+		String secondSearchId = pagingProvider.storeResultList(null, newResourceSearch("3", "4"));
+		
+		assertThat(pagingProvider.retrieveResultList(null, firstSearchId), nullValue());
+		assertThat(pagingProvider.retrieveResultList(null, secondSearchId), notNullValue());
+		assertThat(directory.toFile().list().length, equalTo(0));
+	}
+	
+	@Test
+	public void shouldDeleteSearchesWrittenByPreviousProvider() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		pagingProvider.storeResultList(null, newSearch("3", "4"));
+		assertThat(directory.toFile().list().length, equalTo(1));
+		
+		SpillingPagingProvider restartedPagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		
+		assertThat(directory.toFile().list().length, equalTo(0));
+		assertThat(restartedPagingProvider.retrieveResultList(null, firstSearchId), nullValue());
+	}
+	
+	@Test
+	public void retrieveResultList_shouldDiscardExpiredSearches() throws InterruptedException {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, 1);
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		String secondSearchId = pagingProvider.storeResultList(null, newSearch("3", "4"));
+		
+		Thread.sleep(10);
+		
+		assertThat(pagingProvider.retrieveResultList(null, firstSearchId), nullValue());
+		assertThat(pagingProvider.retrieveResultList(null, secondSearchId), nullValue());
+		assertThat(directory.toFile().list().length, equalTo(0));
+	}
+	
+	@Test
+	public void retrieveResultList_shouldNotReadClassesSearchesAreNotMadeOf() throws IOException {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		pagingProvider.storeResultList(null, newSearch("3", "4"));
+		
+		SerializableSearch search = new SerializableSearch(Arrays.asList("1", "2"));
+		search.payload = new File("payload");
+		try (OutputStream out = Files.newOutputStream(directory.resolve(firstSearchId + ".search"));
+		        ObjectOutputStream objectOut = new ObjectOutputStream(new GZIPOutputStream(out))) {
+			objectOut.writeObject(search);
+		}
+		
+		assertThat(pagingProvider.retrieveResultList(null, firstSearchId), nullValue());
+	}
+	
+	@Test
+	public void storeResultList_shouldDiscardEvictedSearchesWithoutDiskLimit() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(0, EXPIRY_MILLIS);
+		
+		String firstSearchId = pagingProvider.storeResultList(null, newSearch("1", "2"));
+		String secondSearchId = pagingProvider.storeResultList(null, newSearch("3", "4"));
+		
+		assertThat(pagingProvider.retrieveResultList(null, firstSearchId), nullValue());
+		assertThat(pagingProvider.retrieveResultList(null, secondSearchId), notNullValue());
+		assertThat(directory.toFile().list().length, equalTo(0));
+	}
+	
+	@Test
+	public void retrieveResultList_shouldIgnoreInvalidSearchIds() {
+		SpillingPagingProvider pagingProvider = newPagingProvider(DISK_LIMIT, EXPIRY_MILLIS);
+		
+		assertThat(pagingProvider.retrieveResultList(null, ".." + File.separator + "secrets"), nullValue());
+	}
+	
+	private SpillingPagingProvider newPagingProvider(long diskLimit, long expiryMillis) {
+		return new SpillingPagingProvider(MEMORY_LIMIT, diskLimit, expiryMillis, () -> directory);
+	}
+	
+	private static IBundleProvider newSearch(String... patientIds) {
+		return new SerializableSearch(Arrays.asList(patientIds));
+	}
+	
+	private static IBundleProvider newResourceSearch(String... patientIds) {
+		return new SimpleBundleProvider(toPatients(Arrays.asList(patientIds)));
+	}
+	
+	private static List<IBaseResource> toPatients(List<String> patientIds) {
+		return patientIds.stream().<IBaseResource> map(id -> new Patient().setId("Patient/" + id))
+		        .collect(Collectors.toList());
+	}
+	
+	private static List<String> getIds(IBundleProvider bundleProvider) {
+		return bundleProvider.getAllResources().stream().map(resource -> resource.getIdElement().getValue())
+		        .collect(Collectors.toList());
+	}
+	
+	/**
+	 * A search which is stored as its parameters, here the ids of the patients it finds
+	 */
+	private static final class SerializableSearch implements IBundleProvider, Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final ArrayList<String> patientIds;
+		
+		private Object payload;
+		
+		private SerializableSearch(List<String> patientIds) {
+			this.patientIds = new ArrayList<>(patientIds);
+		}
+		
+		@Override
+		public IPrimitiveType<Date> getPublished() {
+			return null;
+		}
+		
+		@Override
+		public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+			return toPatients(patientIds.subList(theFromIndex, Math.min(theToIndex, patientIds.size())));
+		}
+		
+		@Override
+		public String getUuid() {
+			return null;
+		}
+		
+		@Override
+		public Integer preferredPageSize() {
+			return null;
+		}
+		
+		@Override
+		public Integer size() {
+			return patientIds.size();
+		}
+	}
+}
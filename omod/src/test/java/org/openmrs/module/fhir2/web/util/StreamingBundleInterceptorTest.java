@@ -0,0 +1,73 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+
+public class StreamingBundleInterceptorTest {
+	
+	private static final FhirContext fhirContext = FhirContext.forR4();
+	
+	@Test
+	public void writeBundle_shouldWriteSameBundleAsParser() throws Exception {
+		Bundle bundle = new Bundle();
+		bundle.setId("3c3d4a1e-6a4e-4a7b-8c11-5d7e0b5f2a61");
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		bundle.setTotal(3);
+		bundle.addLink().setRelation("self").setUrl("http://localhost/ws/fhir2/R4/Patient?name=\"quoted\"");
+		
+		for (int i = 0; i < 3; i++) {
+			Patient patient = new Patient();
+			patient.setId("patient-" + i);
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			patient.addName().setFamily("Name\\" + i);
+			
+			Bundle.BundleEntryComponent entry = bundle.addEntry().setFullUrl("http://localhost/Patient/\"patient-" + i)
+			        .setResource(patient);
+			entry.getSearch().setMode(i < 2 ? Bundle.SearchEntryMode.MATCH : Bundle.SearchEntryMode.INCLUDE);
+		}
+		bundle.getEntryFirstRep().getSearch().setScore(new BigDecimal("0.5"));
+		
+		Bundle expected = bundle.copy();
+		IParser parser = fhirContext.newJsonParser();
+		
+		StringWriter writer = new StringWriter();
+		StreamingBundleInterceptor.writeBundle(parser, bundle, writer);
+		
+		Bundle result = parser.parseResource(Bundle.class, writer.toString());
+		
+		assertThat(result.getEntry().size(), equalTo(3));
+		assertThat(result.equalsDeep(parser.parseResource(Bundle.class, parser.encodeResourceToString(expected))),
+		    is(true));
+	}
+	
+	@Test
+	public void writeBundle_shouldWriteBundleWithoutEntries() throws Exception {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		
+		StringWriter writer = new StringWriter();
+		StreamingBundleInterceptor.writeBundle(fhirContext.newJsonParser(), bundle, writer);
+		
+		assertThat(writer.toString(), equalTo("{\"resourceType\":\"Bundle\",\"type\":\"searchset\"}"));
+	}
+}